@@ -0,0 +1,127 @@
+package songs;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A burst of play-history sized requests against a local stub server with a fixed response delay.
+ * The blocking path is the pooled Apache client driven by a fixed worker pool, as the callers
+ * used it before; the async path is AsyncHttpEngine with its default handful of threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AsyncHttpBenchmark {
+
+	private static final int BLOCKING_THREADS = 8;
+	private static final long SERVER_DELAY_MILLIS = 5;
+
+	@Param({ "200" })
+	public int requests;
+
+	private HttpServer server;
+	private URI uri;
+
+	private CloseableHttpClient blockingClient;
+	private ExecutorService blockingWorkers;
+	private AsyncHttpEngine engine;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		byte[] body = RecordedPayloads.PLAY_HISTORY_PAGE.getBytes(StandardCharsets.UTF_8);
+
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.createContext("/playHistory", exchange -> {
+			try {
+				Thread.sleep(SERVER_DELAY_MILLIS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+
+			exchange.sendResponseHeaders(200, body.length);
+
+			try (OutputStream os = exchange.getResponseBody()) {
+				os.write(body);
+			}
+		});
+		server.start();
+
+		uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/playHistory");
+
+		blockingClient = HttpClientSingleton.getInstance();
+		blockingWorkers = Executors.newFixedThreadPool(BLOCKING_THREADS);
+		engine = AsyncHttpEngine.getShared();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		blockingWorkers.shutdownNow();
+		server.stop(0);
+	}
+
+	@Benchmark
+	public int blocking() throws Exception {
+		List<Future<String>> results = new ArrayList<>(requests);
+
+		for (int i = 0; i < requests; i++) {
+			results.add(blockingWorkers.submit(() -> HttpResponses.execute(blockingClient, new HttpGet(uri),
+					response -> EntityUtils.toString(response.getEntity()))));
+		}
+
+		int bytes = 0;
+		for (Future<String> result : results) {
+			bytes += result.get().length();
+		}
+
+		return bytes;
+	}
+
+	@Benchmark
+	public int async() {
+		List<CompletableFuture<AsyncHttpEngine.Response>> results = new ArrayList<>(requests);
+
+		for (int i = 0; i < requests; i++) {
+			results.add(engine.get(uri));
+		}
+
+		int bytes = 0;
+		for (CompletableFuture<AsyncHttpEngine.Response> result : results) {
+			bytes += result.join().getBody().length();
+		}
+
+		return bytes;
+	}
+}
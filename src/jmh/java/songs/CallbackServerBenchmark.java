@@ -0,0 +1,38 @@
+package songs;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Parses the query strings Twitch sends back to the OAuth callback.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CallbackServerBenchmark {
+
+	private final CallbackServer server = new CallbackServer();
+
+	@Benchmark
+	public Map<String, String> authorizationCode() {
+		return server.parseQueryParams(RecordedPayloads.OAUTH_CALLBACK_QUERY);
+	}
+
+	@Benchmark
+	public Map<String, String> authorizationError() {
+		return server.parseQueryParams(RecordedPayloads.OAUTH_ERROR_QUERY);
+	}
+}
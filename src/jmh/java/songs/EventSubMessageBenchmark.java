@@ -0,0 +1,50 @@
+package songs;
+
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares reading message_type by building a JSONObject tree (the old onMessage path)
+ * against the raw-string classifier. Run with -prof gc to see gc.alloc.rate.norm per message.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EventSubMessageBenchmark {
+
+	static final String KEEPALIVE = RecordedPayloads.KEEPALIVE;
+	static final String NOTIFICATION = RecordedPayloads.NOTIFICATION;
+
+	@Benchmark
+	public String keepaliveTree() {
+		return new JSONObject(KEEPALIVE).optJSONObject("metadata").optString("message_type");
+	}
+
+	@Benchmark
+	public EventSubMessage.Type keepaliveFastPath() {
+		return EventSubMessage.classify(KEEPALIVE);
+	}
+
+	@Benchmark
+	public String notificationTree() {
+		return new JSONObject(NOTIFICATION).optJSONObject("metadata").optString("message_type");
+	}
+
+	@Benchmark
+	public EventSubMessage.Type notificationFastPath() {
+		return EventSubMessage.classify(NOTIFICATION);
+	}
+}
@@ -0,0 +1,74 @@
+package songs;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the old LinkedHashMap of recent message ids with the ring-backed window, using ids
+ * that keep the window full so every accept also evicts. Run with -prof gc for allocations.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageDedupBenchmark {
+
+	private static final int WINDOW = 512;
+
+	private final String[] ids = new String[WINDOW * 8];
+	private int next = 0;
+
+	private Map<String, Boolean> linkedHashMap;
+	private MessageDedupWindow window;
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = UUID.randomUUID().toString();
+		}
+
+		linkedHashMap = new LinkedHashMap<String, Boolean>() {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+				return size() > WINDOW;
+			}
+		};
+
+		window = new MessageDedupWindow(WINDOW, Duration.ofMinutes(10));
+	}
+
+	private String nextId() {
+		String id = ids[next];
+		next = (next + 1) % ids.length;
+		return id;
+	}
+
+	@Benchmark
+	public boolean linkedHashMap() {
+		synchronized (linkedHashMap) {
+			return linkedHashMap.put(nextId(), Boolean.TRUE) == null;
+		}
+	}
+
+	@Benchmark
+	public boolean ringWindow() {
+		return window.accept(nextId(), null);
+	}
+}
@@ -0,0 +1,49 @@
+package songs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The parsing half of StreamerSonglistAPI.updateSonglist on a recorded /playHistory page,
+ * without the HTTP fetch.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PlayHistoryParseBenchmark {
+
+	private StreamerSonglistAPI api;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		api = SonglistBenchmarkSupport.createApi();
+	}
+
+	@Benchmark
+	public List<JSONObject> parsePage() {
+		JSONArray songs = api.parsePlayHistoryPage(RecordedPayloads.PLAY_HISTORY_PAGE);
+		List<JSONObject> newPlays = new ArrayList<>();
+
+		api.collectNewPlays(songs, newPlays);
+
+		return newPlays;
+	}
+}
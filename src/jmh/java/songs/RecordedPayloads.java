@@ -0,0 +1,82 @@
+package songs;
+
+/**
+ * Frames and responses captured from Twitch EventSub and StreamerSonglist, shared by the benchmarks
+ * so every run measures against the same inputs.
+ */
+final class RecordedPayloads {
+
+	static final String WELCOME = "{\"metadata\":{\"message_id\":\"96a3f3b5-5dec-4eed-908e-e11ee657416c\","
+			+ "\"message_type\":\"session_welcome\",\"message_timestamp\":\"2023-07-19T14:56:51.634234626Z\"},"
+			+ "\"payload\":{\"session\":{\"id\":\"AQoQILE98gtqShGmLD7AM6yJThAB\",\"status\":\"connected\","
+			+ "\"connected_at\":\"2023-07-19T14:56:51.616329898Z\",\"keepalive_timeout_seconds\":10,"
+			+ "\"reconnect_url\":null,\"recovery_url\":null}}}";
+
+	static final String KEEPALIVE = "{\"metadata\":{\"message_id\":\"84c1e79a-2a4b-4c13-ba0b-4312293e9308\","
+			+ "\"message_type\":\"session_keepalive\",\"message_timestamp\":\"2023-07-19T10:11:12.634234626Z\"},"
+			+ "\"payload\":{}}";
+
+	static final String NOTIFICATION = "{\"metadata\":{\"message_id\":\"befa7b53-d79d-478f-86b9-120f112b044e\","
+			+ "\"message_type\":\"notification\",\"message_timestamp\":\"2022-11-16T10:11:12.464757833Z\","
+			+ "\"subscription_type\":\"stream.online\",\"subscription_version\":\"1\"},"
+			+ "\"payload\":{\"subscription\":{\"id\":\"f1c2a387-161a-49f9-a165-0f21d7a4e1c4\",\"status\":\"enabled\","
+			+ "\"type\":\"stream.online\",\"version\":\"1\",\"cost\":1,"
+			+ "\"condition\":{\"broadcaster_user_id\":\"1337\"},"
+			+ "\"transport\":{\"method\":\"websocket\",\"session_id\":\"AQoQexAWVYKSTIu4ec_2VAxyuhAB\"},"
+			+ "\"created_at\":\"2022-11-16T10:11:12.464757833Z\"},"
+			+ "\"event\":{\"id\":\"9001\",\"broadcaster_user_id\":\"1337\",\"broadcaster_user_login\":\"cool_user\","
+			+ "\"broadcaster_user_name\":\"Cool_User\",\"type\":\"live\",\"started_at\":\"2022-11-16T10:11:12.464757833Z\"}}}";
+
+	static final String OAUTH_CALLBACK_QUERY = "code=gulfwdmys5lsm6qyz4xiz9q32l10&scope=channel%3Amanage%3Apolls+channel%3Aread%3Apolls"
+			+ "&state=c3ab8aa609ea11e793ae92361f002671";
+
+	static final String OAUTH_ERROR_QUERY = "error=access_denied&error_description=The+user+denied+you+access"
+			+ "&state=c3ab8aa609ea11e793ae92361f002671";
+
+	static final String PLAY_HISTORY_START = "2024-01-15T10:30:00Z";
+
+	private static final String[][] PLAYED_SONGS = {
+		{ "Bohemian Rhapsody", "Queen" },
+		{ "Hotel California", "Eagles" },
+		{ "Wonderwall", "Oasis" },
+		{ "Dreams", "Fleetwood Mac" },
+		{ "Africa", "Toto" },
+		{ "Valerie", "Amy Winehouse" },
+		{ "Creep", "Radiohead" },
+		{ "Zombie", "The Cranberries" },
+		{ "Jolene", "Dolly Parton" },
+		{ "Landslide", "Fleetwood Mac" }
+	};
+
+	/**
+	 * One full /playHistory page (newest first), shaped like the StreamerSonglist response.
+	 */
+	static final String PLAY_HISTORY_PAGE = buildPlayHistoryPage();
+
+	private RecordedPayloads() {}
+
+	private static String buildPlayHistoryPage() {
+		StringBuilder page = new StringBuilder("{\"items\":[");
+
+		for (int i = 0; i < PLAYED_SONGS.length; i++) {
+			int minute = 59 - i * 4;
+
+			if (i > 0) {
+				page.append(',');
+			}
+
+			page.append("{\"id\":").append(48213907 - i)
+				.append(",\"playedAt\":\"2024-01-15T11:").append(minute).append(":07.412Z\"")
+				.append(",\"note\":\"\",\"requests\":[{\"id\":").append(99120 - i)
+				.append(",\"name\":\"viewer").append(i).append("\",\"amount\":0,\"source\":\"twitch\",")
+				.append("\"createdAt\":\"2024-01-15T10:").append(40 + i).append(":00.000Z\"}]")
+				.append(",\"song\":{\"id\":").append(771240 + i)
+				.append(",\"title\":\"").append(PLAYED_SONGS[i][0])
+				.append("\",\"artist\":\"").append(PLAYED_SONGS[i][1])
+				.append("\",\"createdAt\":\"2021-03-02T18:22:41.000Z\",\"active\":true,\"timesPlayed\":")
+				.append(12 + i).append(",\"attributes\":[],\"capo\":null,\"tuning\":null}}");
+		}
+
+		return page.append("],\"total\":482}").toString();
+	}
+}
@@ -0,0 +1,30 @@
+package songs;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Builds a StreamerSonglistAPI without any network calls by seeding the id cache first.
+ */
+final class SonglistBenchmarkSupport {
+
+	static final String STREAMER = "cool_user";
+
+	private SonglistBenchmarkSupport() {}
+
+	static StreamerSonglistAPI createApi() throws Exception {
+		Path cacheFile = Files.createTempFile("songlist-benchmark", ".txt");
+		cacheFile.toFile().deleteOnExit();
+
+		BroadcasterIdCache idCache = new BroadcasterIdCache(cacheFile.toString());
+		idCache.getSonglistId(STREAMER, () -> 12345);
+
+		StreamerSonglistAPI api = new StreamerSonglistAPI(STREAMER, idCache);
+
+		// A fresh journal per trial, or the fixed start time would replay the previous trial's songs
+		api.journalDirectory = Files.createTempDirectory("songlist-benchmark-journal");
+		api.setStartTime(RecordedPayloads.PLAY_HISTORY_START);
+
+		return api;
+	}
+}
@@ -0,0 +1,117 @@
+package songs;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the old join-then-write songlist export with SonglistExporter streaming from memory
+ * and from a journal, and runs the exporter for several streamers at once.
+ * Offsets stay under a day so the old LocalTime formatting can take part.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SonglistExportBenchmark {
+
+	private static final long STREAM_SECONDS = 80_000;
+	private static final Instant START = Instant.parse(RecordedPayloads.PLAY_HISTORY_START);
+
+	@Param({ "100000" })
+	public int entries;
+
+	private final Map<String, Duration> songlist = new LinkedHashMap<>();
+	private Path journal;
+
+	/**
+	 * Each benchmark thread writes its own file, as each streamer would.
+	 */
+	@State(Scope.Thread)
+	public static class Output {
+		Path file;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			file = Files.createTempFile("songlist-export", ".txt");
+			file.toFile().deleteOnExit();
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		Path directory = Files.createTempDirectory("songlist-export-journal");
+		journal = directory.resolve("benchmark.journal");
+
+		try (SonglistJournal writer = SonglistJournal.open(journal, SonglistJournal.FsyncPolicy.OS, Duration.ZERO)) {
+			for (int i = 0; i < entries; i++) {
+				Duration offset = Duration.ofSeconds(i * STREAM_SECONDS / entries);
+				songlist.put("Song " + i, offset);
+				writer.append(offset, Integer.toString(i), "Song " + i);
+			}
+		}
+	}
+
+	@Benchmark
+	public boolean joinedString(Output output) throws IOException {
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.of("UTC"));
+		String[] previous = { formatter.format(START) };
+
+		String result = songlist.entrySet().stream().map(e -> {
+			String current = LocalTime.ofSecondOfDay(e.getValue().getSeconds()).format(formatter);
+			String line = String.format("%s: %s", e.getKey(), previous[0]);
+			previous[0] = current;
+			return line;
+		}).collect(Collectors.joining("\n"));
+
+		Files.writeString(output.file, result, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+		return true;
+	}
+
+	@Benchmark
+	public long streamedFromMemory(Output output) throws IOException {
+		return SonglistExporter.export(output.file, START, songs -> {
+			for (Map.Entry<String, Duration> e : songlist.entrySet()) {
+				songs.accept(e.getKey(), e.getValue());
+			}
+		});
+	}
+
+	@Benchmark
+	public long streamedFromJournal(Output output) throws IOException {
+		return SonglistExporter.export(output.file, START, songs ->
+				SonglistJournal.replay(journal, entry -> songs.accept(entry.title, entry.offset)));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public long streamedFromJournalFourStreamers(Output output) throws IOException {
+		return streamedFromJournal(output);
+	}
+}
@@ -0,0 +1,101 @@
+package songs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time spent on the song-ingest path per recorded song with all four formats enabled:
+ * writing and flushing every format inline, against handing the song to the sink pipeline.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SonglistSinkBenchmark {
+
+	private static final Instant START = Instant.parse(RecordedPayloads.PLAY_HISTORY_START);
+
+	private Path directory;
+	private SonglistSinkPipeline pipeline;
+	private SonglistSinkPipeline.Session session;
+
+	private final List<SonglistSink> inlineSinks = new ArrayList<>();
+	private final List<Writer> inlineWriters = new ArrayList<>();
+
+	private long songs = 0;
+
+	@Setup(Level.Iteration)
+	public void setUp() throws IOException {
+		directory = Files.createTempDirectory("songlist-sinks");
+		pipeline = new SonglistSinkPipeline("songlist-sink-benchmark");
+
+		List<SonglistSink> sinks = new ArrayList<>();
+
+		for (SonglistFormat format : SonglistFormat.values()) {
+			sinks.add(format.newSink());
+
+			SonglistSink inline = format.newSink();
+			Writer writer = new BufferedWriter(new OutputStreamWriter(
+					Files.newOutputStream(directory.resolve("inline" + inline.getExtension())), StandardCharsets.UTF_8));
+			inline.writeBegin(writer, START);
+			inlineSinks.add(inline);
+			inlineWriters.add(writer);
+		}
+
+		session = pipeline.open(directory, "pipeline", START, sinks);
+	}
+
+	@TearDown(Level.Iteration)
+	public void tearDown() throws Exception {
+		session.close().get(1, TimeUnit.MINUTES);
+		pipeline.stop();
+
+		for (Writer writer : inlineWriters) {
+			writer.close();
+		}
+
+		inlineSinks.clear();
+		inlineWriters.clear();
+	}
+
+	@Benchmark
+	public void inlineWriteAndFlush() throws IOException {
+		Duration offset = Duration.ofSeconds(songs++);
+
+		for (int i = 0; i < inlineSinks.size(); i++) {
+			Writer writer = inlineWriters.get(i);
+			inlineSinks.get(i).writeSong(writer, START, "Song title", offset);
+			writer.flush();
+		}
+	}
+
+	@Benchmark
+	public void pipelineRecord() {
+		session.record("Song title", Duration.ofSeconds(songs++));
+	}
+}
@@ -0,0 +1,111 @@
+package songs;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One ingest thread appending while three readers walk the whole songlist, as exporters and
+ * status checks would. The locked map is the LinkedHashMap guarded the only safe way it can be;
+ * the store lets readers walk a snapshot without holding up the writer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SonglistStoreBenchmark {
+
+	// A long stream's worth of songs, cleared and refilled so reads stay the same size
+	private static final int SONGS = 2_000;
+
+	private final List<String> titles = new ArrayList<>();
+
+	private SonglistStore store;
+	private Map<String, Duration> lockedMap;
+	private int next = 0;
+
+	@Setup(Level.Iteration)
+	public void setUp() {
+		store = new SonglistStore();
+		lockedMap = new LinkedHashMap<>();
+
+		for (int i = 0; i < SONGS; i++) {
+			titles.add("Song " + i);
+		}
+	}
+
+	@Benchmark
+	@Group("store")
+	@GroupThreads(1)
+	public boolean storeAppend() {
+		int i = next++ % SONGS;
+
+		if (i == 0) {
+			store.clear();
+		}
+
+		return store.add(titles.get(i), Duration.ofSeconds(i));
+	}
+
+	@Benchmark
+	@Group("store")
+	@GroupThreads(3)
+	public long storeRead() {
+		long total = 0;
+
+		for (SonglistStore.Song song : store.snapshot()) {
+			total += song.offset.getSeconds();
+		}
+
+		return total;
+	}
+
+	@Benchmark
+	@Group("lockedMap")
+	@GroupThreads(1)
+	public Duration lockedMapAppend() {
+		int i = next++ % SONGS;
+
+		synchronized (lockedMap) {
+			if (i == 0) {
+				lockedMap.clear();
+			}
+
+			return lockedMap.putIfAbsent(titles.get(i), Duration.ofSeconds(i));
+		}
+	}
+
+	@Benchmark
+	@Group("lockedMap")
+	@GroupThreads(3)
+	public long lockedMapRead() {
+		long total = 0;
+
+		synchronized (lockedMap) {
+			for (Duration offset : lockedMap.values()) {
+				total += offset.getSeconds();
+			}
+		}
+
+		return total;
+	}
+}
@@ -0,0 +1,52 @@
+package songs;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StreamerSonglistAPI.writeSonglistToFile for small, typical and very long streams.
+ * The file lands in the benchmark working directory (target/ when run through the profile).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SonglistWriteBenchmark {
+
+	// A 30 hour marathon, past the day the old LocalTime formatting stopped at
+	private static final long STREAM_SECONDS = 108_000;
+
+	@Param({ "10", "1000", "100000" })
+	public int entries;
+
+	private StreamerSonglistAPI api;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		api = SonglistBenchmarkSupport.createApi();
+
+		for (int i = 0; i < entries; i++) {
+			api.recordSong("Song " + i, Duration.ofSeconds(i * STREAM_SECONDS / entries));
+		}
+	}
+
+	@Benchmark
+	public boolean writeSonglist() throws Exception {
+		return api.writeSonglistToFile();
+	}
+}
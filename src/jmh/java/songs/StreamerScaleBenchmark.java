@@ -0,0 +1,110 @@
+package songs;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * One stream for each of a thousand streamers: every streamer forks a Helix call, a play history
+ * fetch and an export, each blocking for a few milliseconds, then ends its stream. "perSession"
+ * gives every streamer its own small pool of platform threads, as the per-session executors did;
+ * "shared" runs every scope on BlockingWorkExecutor, which is virtual threads where the JDK has
+ * them and the bounded daemon pool otherwise. peakThreads is the JVM's peak live thread count,
+ * summed over the measured iterations.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamerScaleBenchmark {
+
+	private static final int STREAMERS = 1000;
+	private static final int TASKS_PER_STREAM = 3;
+	private static final long BLOCKING_MILLIS = 5;
+	private static final int PER_SESSION_THREADS = 2;
+
+	@Param({ "perSession", "shared" })
+	public String model;
+
+	private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+	private ExecutorService shared;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters {
+		public long peakThreads;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() {
+		if ("shared".equals(model)) {
+			shared = BlockingWorkExecutor.create("streamer-scale");
+		}
+	}
+
+	@Setup(Level.Iteration)
+	public void resetPeak() {
+		threads.resetPeakThreadCount();
+	}
+
+	@Benchmark
+	public long oneStreamEach(Counters counters) throws Exception {
+		List<ExecutorService> pools = new ArrayList<>();
+		List<StreamScope> scopes = new ArrayList<>(STREAMERS);
+
+		for (int i = 0; i < STREAMERS; i++) {
+			ExecutorService executor = shared;
+
+			if (executor == null) {
+				executor = BlockingWorkExecutor.newBoundedPool("streamer-" + i, PER_SESSION_THREADS);
+				pools.add(executor);
+			}
+
+			StreamScope scope = new StreamScope("streamer" + i, executor);
+
+			for (int t = 0; t < TASKS_PER_STREAM; t++) {
+				scope.fork(() -> {
+					Thread.sleep(BLOCKING_MILLIS);
+					return null;
+				});
+			}
+
+			scopes.add(scope);
+		}
+
+		long forked = 0;
+
+		for (StreamScope scope : scopes) {
+			scope.join(1, TimeUnit.MINUTES);
+			scope.close();
+			forked += scope.getForkedCount();
+		}
+
+		for (ExecutorService pool : pools) {
+			pool.shutdown();
+		}
+
+		counters.peakThreads = threads.getPeakThreadCount();
+		return forked;
+	}
+}
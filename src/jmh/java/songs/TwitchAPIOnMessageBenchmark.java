@@ -0,0 +1,71 @@
+package songs;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Feeds recorded EventSub frames through TwitchAPI.onMessage. Subscribing is stubbed out so the
+ * welcome frame measures only parsing, and stdout is discarded so the logging does not swamp the run.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TwitchAPIOnMessageBenchmark {
+
+	private TwitchAPI api;
+	private PrintStream stdout;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+
+		api = new TwitchAPI("cool_user") {
+			@Override
+			CompletableFuture<Boolean> subscribeToSession(String sessionId) {
+				return CompletableFuture.completedFuture(true);
+			}
+		};
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	public String welcome() {
+		api.onMessage(RecordedPayloads.WELCOME);
+		return api.getSessionId();
+	}
+
+	@Benchmark
+	public String keepalive() {
+		api.onMessage(RecordedPayloads.KEEPALIVE);
+		return api.getSessionId();
+	}
+
+	@Benchmark
+	public String notification() {
+		api.onMessage(RecordedPayloads.NOTIFICATION);
+		return api.getStartTime();
+	}
+}
@@ -0,0 +1,153 @@
+package songs;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP for Helix, OAuth and StreamerSonglist calls. Requests are multiplexed over
+ * HTTP/2 where the server supports it and responses are handled on a small shared pool, so
+ * hundreds of requests in flight only need a handful of threads.
+ * The pool size can be set with -Dsongs.http.asyncThreads=N
+ */
+public class AsyncHttpEngine implements AutoCloseable {
+
+	static final String THREADS_PROPERTY = "songs.http.asyncThreads";
+	private static final int DEFAULT_THREADS = 4;
+
+	private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(10);
+	private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+	private static final AsyncHttpEngine SHARED =
+			new AsyncHttpEngine(HttpConnectionPool.readSetting(THREADS_PROPERTY, DEFAULT_THREADS));
+
+	private final HttpClient client;
+	private final ExecutorService executor;
+	// Only a pool the engine created itself is shut down on close
+	private final boolean ownsExecutor;
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	/**
+	 * Status and body of a completed request. The body is read fully before the future completes.
+	 */
+	public static final class Response {
+		private final int statusCode;
+		private final String body;
+
+		Response(int statusCode, String body) {
+			this.statusCode = statusCode;
+			this.body = body == null ? "" : body;
+		}
+
+		public int getStatusCode() {
+			return statusCode;
+		}
+
+		public String getBody() {
+			return body;
+		}
+	}
+
+	AsyncHttpEngine(int threads) {
+		this(threads, BlockingWorkExecutor.isVirtual());
+	}
+
+	private AsyncHttpEngine(int threads, boolean virtual) {
+		this(virtual
+				? BlockingWorkExecutor.getShared()
+				: Executors.newFixedThreadPool(threads, ThreadFactories.daemon("async-http")),
+				!virtual);
+	}
+
+	/**
+	 * Responses are handled on the executor, which stays the caller's to shut down. Handlers
+	 * record songs and append to the journal, so with virtual threads they run with the rest of
+	 * the blocking work.
+	 */
+	AsyncHttpEngine(ExecutorService executor) {
+		this(executor, false);
+	}
+
+	private AsyncHttpEngine(ExecutorService executor, boolean ownsExecutor) {
+		this.executor = executor;
+		this.ownsExecutor = ownsExecutor;
+
+		client = HttpClient.newBuilder()
+				.version(HttpClient.Version.HTTP_2)
+				.connectTimeout(CONNECT_TIMEOUT)
+				.executor(executor)
+				.build();
+	}
+
+	public static AsyncHttpEngine getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Sends a GET. Headers are given as alternating names and values.
+	 */
+	public CompletableFuture<Response> get(URI uri, String... headers) {
+		return send(newRequest(uri, headers).GET().build());
+	}
+
+	/**
+	 * Sends a POST with the given body. Headers are given as alternating names and values.
+	 */
+	public CompletableFuture<Response> post(URI uri, String body, String... headers) {
+		HttpRequest.BodyPublisher publisher = body == null || body.isEmpty()
+				? HttpRequest.BodyPublishers.noBody()
+				: HttpRequest.BodyPublishers.ofString(body);
+
+		return send(newRequest(uri, headers).POST(publisher).build());
+	}
+
+	/**
+	 * Sends a DELETE. Headers are given as alternating names and values.
+	 */
+	public CompletableFuture<Response> delete(URI uri, String... headers) {
+		return send(newRequest(uri, headers).DELETE().build());
+	}
+
+	private HttpRequest.Builder newRequest(URI uri, String... headers) {
+		HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(REQUEST_TIMEOUT);
+
+		if (headers.length > 0) {
+			builder.headers(headers);
+		}
+
+		return builder;
+	}
+
+	CompletableFuture<Response> send(HttpRequest request) {
+		inFlight.incrementAndGet();
+
+		return client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+				.thenApply(response -> new Response(response.statusCode(), response.body()))
+				.whenComplete((response, error) -> inFlight.decrementAndGet());
+	}
+
+	public int getInFlightCount() {
+		return inFlight.get();
+	}
+
+	ExecutorService getExecutor() {
+		return executor;
+	}
+
+	/**
+	 * Shuts down the response pool if the engine created it. The shared engine lives as long as
+	 * the process, so closing it does nothing.
+	 */
+	@Override
+	public void close() {
+		if (ownsExecutor && this != SHARED) {
+			executor.shutdown();
+		}
+	}
+}
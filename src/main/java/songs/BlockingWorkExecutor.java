@@ -0,0 +1,84 @@
+package songs;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where per-streamer blocking work runs: Helix calls, token refreshes, callback requests, play
+ * history handling and file exports. On a JDK with virtual threads every task gets its own virtual
+ * thread, so a thousand streamers blocked on the network hold a handful of carrier threads.
+ * Elsewhere, or with -Dsongs.threads.virtual=false, tasks share a bounded pool of daemon threads
+ * sized with -Dsongs.threads.blockingPoolSize=N
+ */
+final class BlockingWorkExecutor {
+
+	static final String VIRTUAL_PROPERTY = "songs.threads.virtual";
+	static final String POOL_SIZE_PROPERTY = "songs.threads.blockingPoolSize";
+	private static final int DEFAULT_POOL_SIZE = 64;
+
+	private static final ExecutorService SHARED = create("blocking-work");
+
+	private BlockingWorkExecutor() {}
+
+	static ExecutorService getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * True when the shared executor runs tasks on virtual threads.
+	 */
+	static boolean isVirtual() {
+		return useVirtualThreads();
+	}
+
+	private static boolean useVirtualThreads() {
+		return Boolean.parseBoolean(System.getProperty(VIRTUAL_PROPERTY, "true"))
+				&& ThreadFactories.isVirtualThreadSupported();
+	}
+
+	/**
+	 * A new executor following the configured model. Threads are named after the prefix.
+	 */
+	static ExecutorService create(String prefix) {
+		return create(prefix, HttpConnectionPool.readSetting(POOL_SIZE_PROPERTY, DEFAULT_POOL_SIZE));
+	}
+
+	/**
+	 * As create(prefix), with at most poolSize platform threads when virtual threads are off.
+	 */
+	static ExecutorService create(String prefix, int poolSize) {
+		if (useVirtualThreads()) {
+			ExecutorService perTask = newThreadPerTaskExecutor(ThreadFactories.virtualOrDaemon(prefix));
+
+			if (perTask != null) {
+				return perTask;
+			}
+		}
+
+		return newBoundedPool(prefix, poolSize);
+	}
+
+	/**
+	 * Daemon platform threads, at most size of them, that exit after a minute idle.
+	 */
+	static ExecutorService newBoundedPool(String prefix, int size) {
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(), ThreadFactories.daemon(prefix));
+		pool.allowCoreThreadTimeOut(true);
+		return pool;
+	}
+
+	// Executors.newThreadPerTaskExecutor arrived with virtual threads, so it is looked up the same way
+	private static ExecutorService newThreadPerTaskExecutor(ThreadFactory factory) {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					.invoke(null, factory);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package songs;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * On-disk cache of the ids a streamer login resolves to on Twitch and on StreamerSonglist.
+ * Entries older than the TTL are still returned, but are re-resolved in the background.
+ */
+public class BroadcasterIdCache extends FileWriter {
+
+	static final String CACHEFILENAME = "BroadcasterIDs.txt";
+	private static final Duration DEFAULT_TTL = Duration.ofDays(7);
+
+	private static final ExecutorService REVALIDATOR = Executors.newSingleThreadExecutor(r -> {
+		Thread thread = new Thread(r, "broadcaster-id-cache");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Duration ttl;
+	private final Map<String, CachedIds> entries = new ConcurrentHashMap<>();
+	private final Set<String> revalidating = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Immutable ids for one login. An id of -1 has not been resolved yet.
+	 */
+	private static final class CachedIds {
+		final int twitchId;
+		final long twitchResolvedAt;
+		final int songlistId;
+		final long songlistResolvedAt;
+
+		CachedIds(int twitchId, long twitchResolvedAt, int songlistId, long songlistResolvedAt) {
+			this.twitchId = twitchId;
+			this.twitchResolvedAt = twitchResolvedAt;
+			this.songlistId = songlistId;
+			this.songlistResolvedAt = songlistResolvedAt;
+		}
+	}
+
+	private enum IdType { TWITCH, SONGLIST }
+
+	public BroadcasterIdCache(String fileName) {
+		this(fileName, DEFAULT_TTL);
+	}
+
+	public BroadcasterIdCache(String fileName, Duration ttl) {
+		super(fileName);
+
+		if (ttl == null || ttl.isNegative()) {
+			throw new IllegalArgumentException("The TTL must not be negative");
+		}
+
+		this.ttl = ttl;
+		loadEntries();
+	}
+
+	public int getTwitchId(String login, Supplier<Integer> resolver) {
+		return get(login, IdType.TWITCH, resolver);
+	}
+
+	public int getSonglistId(String login, Supplier<Integer> resolver) {
+		return get(login, IdType.SONGLIST, resolver);
+	}
+
+	public boolean hasTwitchId(String login) {
+		CachedIds cached = entries.get(normalize(login));
+		return cached != null && cached.twitchId != -1;
+	}
+
+	private int get(String login, IdType type, Supplier<Integer> resolver) {
+		String key = normalize(login);
+		CachedIds cached = entries.get(key);
+
+		int cachedId = cached == null ? -1 : idOf(cached, type);
+
+		if (cachedId != -1) {
+			if (isStale(resolvedAtOf(cached, type))) {
+				revalidate(key, type, resolver);
+			}
+
+			return cachedId;
+		}
+
+		return resolve(key, type, resolver);
+	}
+
+	private int resolve(String key, IdType type, Supplier<Integer> resolver) {
+		Integer resolved = resolver.get();
+
+		if (resolved == null || resolved == -1) {
+			return -1;
+		}
+
+		put(key, type, resolved);
+		return resolved;
+	}
+
+	private void revalidate(String key, IdType type, Supplier<Integer> resolver) {
+		String task = key + "/" + type;
+
+		if (!revalidating.add(task)) {
+			return;
+		}
+
+		REVALIDATOR.execute(() -> {
+			try {
+				resolve(key, type, resolver);
+			} catch (Exception e) {
+				System.err.println("Unable to revalidate the cached id for " + key + ": " + e.getMessage());
+			} finally {
+				revalidating.remove(task);
+			}
+		});
+	}
+
+	private void put(String key, IdType type, int id) {
+		long now = Instant.now().getEpochSecond();
+
+		entries.compute(key, (k, current) -> {
+			CachedIds base = current != null ? current : new CachedIds(-1, 0, -1, 0);
+
+			if (type == IdType.TWITCH) {
+				return new CachedIds(id, now, base.songlistId, base.songlistResolvedAt);
+			}
+
+			return new CachedIds(base.twitchId, base.twitchResolvedAt, id, now);
+		});
+
+		saveEntries();
+	}
+
+	private boolean isStale(long resolvedAt) {
+		return Instant.now().getEpochSecond() - resolvedAt >= ttl.getSeconds();
+	}
+
+	private int idOf(CachedIds cached, IdType type) {
+		return type == IdType.TWITCH ? cached.twitchId : cached.songlistId;
+	}
+
+	private long resolvedAtOf(CachedIds cached, IdType type) {
+		return type == IdType.TWITCH ? cached.twitchResolvedAt : cached.songlistResolvedAt;
+	}
+
+	private String normalize(String login) {
+		if (login == null || login.isBlank()) {
+			throw new IllegalArgumentException("The login must be supplied");
+		}
+
+		return login.toLowerCase();
+	}
+
+	private synchronized void saveEntries() {
+		String content = entries.entrySet().stream()
+				.map(e -> String.join("\t", e.getKey(),
+						Integer.toString(e.getValue().twitchId),
+						Long.toString(e.getValue().twitchResolvedAt),
+						Integer.toString(e.getValue().songlistId),
+						Long.toString(e.getValue().songlistResolvedAt)))
+				.collect(Collectors.joining("\n"));
+
+		super.writeToFile(content);
+	}
+
+	private void loadEntries() {
+		if (filePath == null || !Files.exists(filePath)) {
+			return;
+		}
+
+		List<String> lines = super.readFromFile();
+
+		if (lines == null) {
+			return;
+		}
+
+		for (String line : lines) {
+			String[] fields = line.split("\t");
+
+			if (fields.length != 5) {
+				continue;
+			}
+
+			try {
+				entries.put(fields[0], new CachedIds(
+						Integer.parseInt(fields[1]), Long.parseLong(fields[2]),
+						Integer.parseInt(fields[3]), Long.parseLong(fields[4])));
+			} catch (NumberFormatException e) {
+				System.err.println("Skipping malformed cache entry: " + line);
+			}
+		}
+	}
+}
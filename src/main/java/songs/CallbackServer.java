@@ -68,6 +68,9 @@ public class CallbackServer {
     	}
     	
         server = HttpServer.create(new InetSocketAddress(port), 0);
+        
+        // Without an executor every exchange runs on the server's single dispatcher thread
+        server.setExecutor(BlockingWorkExecutor.getShared());
 
         server.createContext(callbackPath, new HttpHandler() {
             @Override
@@ -0,0 +1,170 @@
+package songs;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Runs a task on request, collapsing bursts of requests into as few runs as possible.
+ * At most one run is in flight and at most one more is pending. Requests that arrive while
+ * a run is already pending are counted as coalesced and dropped.
+ * An asynchronous task counts as in flight until the stage it returns completes.
+ */
+public class CoalescingTask {
+
+	private final ScheduledExecutorService executor;
+	private final Supplier<? extends CompletionStage<?>> task;
+	private volatile Duration debounce;
+
+	private boolean pending = false;
+	private boolean running = false;
+
+	// The pending run's timer, and whether that run was asked for without the debounce
+	private ScheduledFuture<?> scheduled = null;
+	private boolean immediate = false;
+
+	private final AtomicLong requestCount = new AtomicLong();
+	private final AtomicLong coalescedCount = new AtomicLong();
+
+	public CoalescingTask(ScheduledExecutorService executor, Runnable task, Duration debounce) {
+		this(executor, wrap(task), debounce);
+	}
+
+	public CoalescingTask(ScheduledExecutorService executor, Supplier<? extends CompletionStage<?>> task, Duration debounce) {
+		if (executor == null || task == null) {
+			throw new IllegalArgumentException("The executor and task must be supplied");
+		}
+
+		this.executor = executor;
+		this.task = task;
+		setDebounce(debounce);
+	}
+
+	private static Supplier<CompletionStage<?>> wrap(Runnable task) {
+		if (task == null) {
+			return null;
+		}
+
+		return () -> {
+			task.run();
+			return CompletableFuture.completedFuture(null);
+		};
+	}
+
+	public void setDebounce(Duration debounce) {
+		if (debounce == null || debounce.isNegative()) {
+			throw new IllegalArgumentException("The debounce window must not be negative");
+		}
+
+		this.debounce = debounce;
+	}
+
+	public void request() {
+		request(debounce);
+	}
+
+	/**
+	 * Requests a run without waiting out the debounce window, for when the caller knows no
+	 * burst is coming. A run that is already pending is coalesced with it and brought forward,
+	 * and one pending behind a run in flight starts as soon as that run finishes.
+	 */
+	public void requestNow() {
+		request(Duration.ZERO);
+	}
+
+	private void request(Duration delay) {
+		requestCount.incrementAndGet();
+
+		synchronized (this) {
+			boolean now = delay.isZero();
+
+			if (pending) {
+				coalescedCount.incrementAndGet();
+
+				if (now && !immediate) {
+					bringForward();
+				}
+
+				return;
+			}
+
+			pending = true;
+			immediate = now;
+
+			// A running task schedules the pending run itself when it finishes
+			if (!running) {
+				schedule(delay);
+			}
+		}
+	}
+
+	private void schedule(Duration delay) {
+		scheduled = executor.schedule(this::run, delay.toMillis(), TimeUnit.MILLISECONDS);
+	}
+
+	// Called with the lock held while a run is pending
+	private void bringForward() {
+		immediate = true;
+
+		// A failed cancel means the timer already fired and the run is starting anyway
+		if (!running && scheduled != null && scheduled.cancel(false)) {
+			schedule(Duration.ZERO);
+		}
+	}
+
+	private void run() {
+		synchronized (this) {
+			pending = false;
+			running = true;
+			scheduled = null;
+			immediate = false;
+		}
+
+		CompletionStage<?> stage;
+
+		try {
+			stage = task.get();
+		} catch (Exception e) {
+			e.printStackTrace();
+			finish();
+			return;
+		}
+
+		if (stage == null) {
+			finish();
+			return;
+		}
+
+		stage.whenComplete((result, error) -> {
+			if (error != null) {
+				error.printStackTrace();
+			}
+
+			finish();
+		});
+	}
+
+	private synchronized void finish() {
+		running = false;
+
+		if (pending) {
+			schedule(immediate ? Duration.ZERO : debounce);
+		}
+	}
+
+	public long getRequestCount() {
+		return requestCount.get();
+	}
+
+	/**
+	 * Number of requests that were folded into a run that was already pending.
+	 */
+	public long getCoalescedCount() {
+		return coalescedCount.get();
+	}
+}
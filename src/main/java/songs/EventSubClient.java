@@ -0,0 +1,342 @@
+package songs;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+/**
+ * Handles the EventSub websocket protocol (welcome, keepalive, reconnect, notification)
+ * and leaves what to do with a session or a notification to the subclass.
+ * A reconnect is handed over without a gap: the new socket is opened next to the old one,
+ * which is only closed once the new session is welcomed.
+ */
+public abstract class EventSubClient extends WebClient {
+
+	// Enough to cover the notifications that can be replayed on both sockets during a handover
+	private static final int RECENT_MESSAGE_IDS = 512;
+
+	// Allowance on top of keepalive_timeout_seconds for network jitter and the watchdog tick
+	private static final long KEEPALIVE_GRACE_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+	protected volatile String sessionId = "";
+
+	private final URI serverURI;
+	KeepaliveWatchdog watchdog = KeepaliveWatchdog.getShared();
+
+	// System.nanoTime() of the last frame of any kind, and the timeout negotiated in the welcome
+	private volatile long lastMessageAt = System.nanoTime();
+	private volatile long keepaliveTimeoutNanos = 0;
+	private final AtomicLong expiredSessionCount = new AtomicLong();
+
+	private final SubscriptionPipeline subscriptions = new SubscriptionPipeline();
+
+	// Optional; without it every fresh session subscribes from scratch
+	SubscriptionRegistry registry = null;
+	
+	// System.nanoTime() when the current handover started, or 0 when there is none
+	private volatile long handoverStartedAt = 0;
+	private volatile long lastHandoverMillis = -1;
+	private final AtomicLong handoverCount = new AtomicLong();
+	
+	private final MessageDedupWindow recentMessages = 
+			new MessageDedupWindow(RECENT_MESSAGE_IDS, MessageDedupWindow.DEFAULT_MAX_AGE);
+
+	public EventSubClient(URI serverURI, String tokenFileName, ClientInfo clientInfo) {
+		super(serverURI, tokenFileName, clientInfo);
+		this.serverURI = serverURI;
+	}
+
+	public EventSubClient(URI serverURI, TokenManager tokenManager, ClientInfo clientInfo, CallbackServer callbackServer) {
+		super(serverURI, tokenManager, clientInfo, callbackServer);
+		this.serverURI = serverURI;
+	}
+
+	protected abstract boolean onWelcome(String sessionId);
+
+	protected abstract void onNotification(JSONObject payload);
+
+	private boolean parseForID(JSONObject response) {
+		JSONObject payload = response.optJSONObject("payload");
+
+		if (payload == null) {
+			return false;
+		}
+
+		JSONObject session = payload.optJSONObject("session");
+
+		if (session == null) {
+			return false;
+		}
+
+		sessionId = session.optString("id");
+
+		int keepaliveTimeout = session.optInt("keepalive_timeout_seconds", 0);
+		if (keepaliveTimeout > 0) {
+			keepaliveTimeoutNanos = TimeUnit.SECONDS.toNanos(keepaliveTimeout);
+		}
+
+		return true;
+	}
+
+	private boolean handleReconnect(JSONObject reconnectResponse) {
+
+		JSONObject payload = reconnectResponse.optJSONObject("payload");
+		if (payload == null || payload.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+
+		JSONObject session = payload.optJSONObject("session");
+		if (session == null || session.isEmpty()) {
+			throw new IllegalArgumentException();
+		}
+
+		String reconnectUrl = session.optString("reconnect_url");
+		if (reconnectUrl != null && !reconnectUrl.isEmpty()) {
+			System.out.println("Reconnecting to: " + reconnectUrl);
+			try {
+				URI reconnectUri = new URI(reconnectUrl);
+
+				// Keep reading the old socket until the new one is welcomed
+				handoverStartedAt = System.nanoTime();
+				super.openReplacement(reconnectUri);
+			} catch (Exception e) {
+				handoverStartedAt = 0;
+				e.printStackTrace();
+			}
+		}
+
+		return true;
+	}
+
+	private boolean handleWelcome(JSONObject jsonMessage) {
+		long welcomedAt = System.nanoTime();
+		String previousSessionId = sessionId;
+		boolean parsedID = parseForID(jsonMessage);
+
+		if(parsedID == false) {
+			return false;
+		}
+
+		if (keepaliveTimeoutNanos > 0) {
+			watchdog.watch(this);
+		}
+
+		long startedAt = handoverStartedAt;
+		boolean promoted = super.promoteReplacement();
+
+		if (promoted && startedAt != 0) {
+			handoverStartedAt = 0;
+			lastHandoverMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+			handoverCount.incrementAndGet();
+
+			if (registry != null) {
+				registry.sessionMoved(previousSessionId, sessionId);
+			}
+
+			// Subscriptions move to the new session on their own, so there is nothing to resubscribe
+			System.out.println("Handed over to session " + sessionId + " in " + lastHandoverMillis + " ms");
+			return true;
+		}
+
+		if (promoted) {
+			System.out.println("Recovered with new session " + sessionId);
+		}
+
+		// A fresh session (first connect or recovery from a dead one) has no subscriptions yet
+		if (registry != null) {
+			if (!previousSessionId.isEmpty() && !previousSessionId.equals(sessionId)) {
+				registry.sessionEnded(previousSessionId);
+			}
+
+			registry.sessionStarted(sessionId);
+		}
+
+		subscriptions.onWelcome(welcomedAt);
+		return onWelcome(sessionId);
+	}
+
+	/**
+	 * True once nothing, not even a keepalive, has arrived within the negotiated timeout.
+	 */
+	boolean isKeepaliveExpired(long now) {
+		long timeout = keepaliveTimeoutNanos;
+
+		if (timeout == 0) {
+			return false;
+		}
+
+		return now - lastMessageAt > timeout + KEEPALIVE_GRACE_NANOS;
+	}
+
+	/**
+	 * Called from the watchdog when the session has gone quiet. Opens a fresh session next to
+	 * the silent socket; its welcome closes the old socket and subscribes again.
+	 */
+	void onKeepaliveExpired(long now) {
+		// Give the new socket a full timeout before the watchdog fires again
+		lastMessageAt = now;
+		handoverStartedAt = 0;
+		expiredSessionCount.incrementAndGet();
+
+		System.err.println("No keepalive on session " + sessionId + ", reconnecting");
+		super.openReplacement(serverURI);
+	}
+
+	/**
+	 * True the first time a message id is seen, as long as the message is not too old to trust.
+	 */
+	private boolean accept(String message) {
+		return recentMessages.accept(EventSubMessage.readMessageId(message), EventSubMessage.readMessageTimestamp(message));
+	}
+
+	@Override
+	public void onMessage(String message) {
+		lastMessageAt = System.nanoTime();
+
+		EventSubMessage.Type messageType = EventSubMessage.classify(message);
+
+		switch (messageType) {
+			case SESSION_KEEPALIVE:
+				// Just a message to keep the connection alive, so skip building a JSON tree
+				return;
+
+			case SESSION_RECONNECT:
+				handleReconnect(new JSONObject(message));
+				return;
+
+			case SESSION_WELCOME:
+				System.out.println("Received: " + message);
+				handleWelcome(new JSONObject(message));
+				return;
+
+			case NOTIFICATION:
+				if (!accept(message)) {
+					return;
+				}
+
+				System.out.println("Received: " + message);
+				handleNotification(new JSONObject(message));
+				return;
+
+			case REVOCATION:
+				if (!accept(message)) {
+					return;
+				}
+
+				System.err.println("Subscription revoked: " + message);
+				return;
+
+			default:
+				return;
+		}
+	}
+
+	private void handleNotification(JSONObject jsonMessage) {
+		JSONObject payload = jsonMessage.optJSONObject("payload");
+		if (payload == null || payload.isEmpty()) {
+			return;
+		}
+
+		onNotification(payload);
+	}
+
+	public String getSessionId() {
+		return sessionId;
+	}
+
+	public void setSubscriptionRegistry(SubscriptionRegistry registry) {
+		this.registry = registry;
+	}
+
+	/**
+	 * Cleans up orphaned subscriptions once the welcomed session's own subscriptions are made.
+	 * A new session has nothing to reuse, so subscribing never waits for the listing.
+	 */
+	protected CompletableFuture<Void> reconcileAfter(CompletableFuture<?> subscribed) {
+		if (registry == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		return subscribed.handle((result, error) -> null).thenCompose(ignored -> reconcileSubscriptions());
+	}
+
+	/**
+	 * Lists our subscriptions and deletes the orphans left behind by closed sessions and
+	 * earlier runs. Never completes exceptionally.
+	 */
+	protected CompletableFuture<Void> reconcileSubscriptions() {
+		if (registry == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+
+		try {
+			return getBearerTokenAsync()
+					.thenCompose(token -> registry.reconcile(clientInfo.getClientID(), token))
+					.handle((deleted, error) -> {
+						if (error != null) {
+							System.err.println("Unable to reconcile subscriptions, subscribing from scratch: "
+									+ error.getMessage());
+						}
+
+						return null;
+					});
+		} catch (Exception e) {
+			e.printStackTrace();
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+
+	/**
+	 * Queues and times the subscriptions made for this socket's sessions.
+	 */
+	SubscriptionPipeline getSubscriptionPipeline() {
+		return subscriptions;
+	}
+
+	/**
+	 * Milliseconds from the reconnect message to the new session's welcome for the last
+	 * handover, or -1 if there has not been one. The old socket keeps delivering throughout.
+	 */
+	public long getLastHandoverMillis() {
+		return lastHandoverMillis;
+	}
+
+	public long getHandoverCount() {
+		return handoverCount.get();
+	}
+
+	/**
+	 * Redelivered messages that were dropped.
+	 */
+	public long getDuplicateMessageCount() {
+		return recentMessages.getDuplicateCount();
+	}
+
+	/**
+	 * Messages dropped because their message_timestamp was past the replay limit.
+	 */
+	public long getStaleMessageCount() {
+		return recentMessages.getStaleCount();
+	}
+
+	/**
+	 * Number of times the watchdog found this session silent and reconnected it.
+	 */
+	public long getExpiredSessionCount() {
+		return expiredSessionCount.get();
+	}
+
+	@Override
+	public void close() {
+		watchdog.unwatch(this);
+
+		if (registry != null && !sessionId.isEmpty()) {
+			registry.sessionEnded(sessionId);
+		}
+
+		super.close();
+	}
+}
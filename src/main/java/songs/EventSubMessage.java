@@ -0,0 +1,203 @@
+package songs;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Reads metadata fields straight from a raw EventSub frame without building a JSON tree,
+ * so keepalives can be handled without allocating anything. Only frames that open with the
+ * metadata object take that path; any other order is parsed in full, so a key of the same
+ * name inside the payload is never mistaken for the metadata's.
+ */
+final class EventSubMessage {
+
+	enum Type {
+		SESSION_WELCOME("session_welcome"),
+		SESSION_KEEPALIVE("session_keepalive"),
+		SESSION_RECONNECT("session_reconnect"),
+		NOTIFICATION("notification"),
+		REVOCATION("revocation"),
+		UNKNOWN("");
+
+		private final String wireName;
+
+		Type(String wireName) {
+			this.wireName = wireName;
+		}
+	}
+
+	private static final Type[] KNOWN_TYPES = {
+		Type.SESSION_KEEPALIVE, Type.NOTIFICATION, Type.SESSION_WELCOME, Type.SESSION_RECONNECT, Type.REVOCATION
+	};
+
+	private static final String METADATA_KEY = "\"metadata\"";
+	private static final String MESSAGE_TYPE_KEY = "\"message_type\"";
+	private static final String MESSAGE_ID_KEY = "\"message_id\"";
+	private static final String MESSAGE_TIMESTAMP_KEY = "\"message_timestamp\"";
+
+	private EventSubMessage() {}
+
+	/**
+	 * Returns the frame's metadata.message_type, or UNKNOWN if it is missing or not one we handle.
+	 */
+	static Type classify(String raw) {
+		if (raw == null) {
+			return Type.UNKNOWN;
+		}
+
+		int metadataEnd = findLeadingMetadataEnd(raw);
+
+		if (metadataEnd < 0) {
+			return classifyParsed(parseMetadataValue(raw, MESSAGE_TYPE_KEY));
+		}
+
+		int start = findStringValue(raw, MESSAGE_TYPE_KEY, metadataEnd);
+
+		if (start < 0) {
+			return Type.UNKNOWN;
+		}
+
+		int end = raw.indexOf('"', start);
+
+		if (end < 0 || end > metadataEnd) {
+			return Type.UNKNOWN;
+		}
+
+		int length = end - start;
+
+		for (Type type : KNOWN_TYPES) {
+			if (type.wireName.length() == length && raw.regionMatches(true, start, type.wireName, 0, length)) {
+				return type;
+			}
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	private static Type classifyParsed(String wireName) {
+		if (wireName == null) {
+			return Type.UNKNOWN;
+		}
+
+		for (Type type : KNOWN_TYPES) {
+			if (type.wireName.equalsIgnoreCase(wireName)) {
+				return type;
+			}
+		}
+
+		return Type.UNKNOWN;
+	}
+
+	static String readMessageId(String raw) {
+		return readStringValue(raw, MESSAGE_ID_KEY);
+	}
+
+	static String readMessageTimestamp(String raw) {
+		return readStringValue(raw, MESSAGE_TIMESTAMP_KEY);
+	}
+
+	private static String readStringValue(String raw, String key) {
+		if (raw == null) {
+			return null;
+		}
+
+		int metadataEnd = findLeadingMetadataEnd(raw);
+
+		if (metadataEnd < 0) {
+			return parseMetadataValue(raw, key);
+		}
+
+		int start = findStringValue(raw, key, metadataEnd);
+
+		if (start < 0) {
+			return null;
+		}
+
+		int end = raw.indexOf('"', start);
+
+		if (end < 0 || end > metadataEnd) {
+			return null;
+		}
+
+		return raw.substring(start, end);
+	}
+
+	/**
+	 * Returns the index of the brace that closes the metadata object when the frame opens with
+	 * it, as Twitch sends them, or -1 for any other layout. Metadata holds only flat string
+	 * values, so its first closing brace ends it.
+	 */
+	private static int findLeadingMetadataEnd(String raw) {
+		int i = skipWhitespace(raw, 0);
+
+		if (i >= raw.length() || raw.charAt(i) != '{') {
+			return -1;
+		}
+
+		i = skipWhitespace(raw, i + 1);
+
+		if (!raw.startsWith(METADATA_KEY, i)) {
+			return -1;
+		}
+
+		i = skipWhitespace(raw, i + METADATA_KEY.length());
+
+		if (i >= raw.length() || raw.charAt(i) != ':') {
+			return -1;
+		}
+
+		i = skipWhitespace(raw, i + 1);
+
+		if (i >= raw.length() || raw.charAt(i) != '{') {
+			return -1;
+		}
+
+		return raw.indexOf('}', i);
+	}
+
+	/**
+	 * The slow path for frames whose metadata does not come first.
+	 */
+	private static String parseMetadataValue(String raw, String key) {
+		try {
+			JSONObject metadata = new JSONObject(raw).optJSONObject("metadata");
+			return metadata == null ? null : metadata.optString(key.substring(1, key.length() - 1), null);
+		} catch (JSONException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the first character of the string value that follows the key before the limit, or -1.
+	 * Metadata values are plain identifiers, so escaped quotes are not expected inside them.
+	 */
+	private static int findStringValue(String raw, String key, int limit) {
+		int keyIndex = raw.indexOf(key);
+
+		if (keyIndex < 0 || keyIndex > limit) {
+			return -1;
+		}
+
+		int i = skipWhitespace(raw, keyIndex + key.length());
+
+		if (i >= raw.length() || raw.charAt(i) != ':') {
+			return -1;
+		}
+
+		i = skipWhitespace(raw, i + 1);
+
+		if (i >= raw.length() || raw.charAt(i) != '"') {
+			return -1;
+		}
+
+		return i + 1;
+	}
+
+	private static int skipWhitespace(String raw, int i) {
+		while (i < raw.length() && Character.isWhitespace(raw.charAt(i))) {
+			i++;
+		}
+
+		return i;
+	}
+}
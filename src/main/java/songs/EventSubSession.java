@@ -0,0 +1,114 @@
+package songs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.json.JSONObject;
+
+/**
+ * One EventSub websocket shared by many streamers. Every streamer costs one
+ * stream.online and one stream.offline subscription on the session.
+ */
+public class EventSubSession extends EventSubClient {
+
+	static final int MAX_SUBSCRIPTIONS_PER_SESSION = 300;
+	static final int SUBSCRIPTIONS_PER_STREAMER = 2;
+
+	private final Map<String, TwitchAPI> streamers = new ConcurrentHashMap<>();
+
+	public EventSubSession(URI serverURI, TokenManager tokenManager, ClientInfo clientInfo, CallbackServer callbackServer) {
+		super(serverURI, tokenManager, clientInfo, callbackServer);
+	}
+
+	/**
+	 * Adds the streamer if the session still has room for its subscriptions.
+	 */
+	synchronized boolean tryAdd(String broadcasterId, TwitchAPI streamer) {
+		if (streamers.containsKey(broadcasterId)) {
+			return true;
+		}
+
+		if (!hasCapacity()) {
+			return false;
+		}
+
+		streamers.put(broadcasterId, streamer);
+
+		// Already welcomed, so the streamer will not be picked up by onWelcome
+		if (!sessionId.isEmpty()) {
+			streamer.subscribeToSession(sessionId, getSubscriptionPipeline());
+		}
+
+		return true;
+	}
+
+	synchronized boolean remove(String broadcasterId) {
+		return streamers.remove(broadcasterId) != null;
+	}
+
+	boolean hasCapacity() {
+		return (streamers.size() + 1) * SUBSCRIPTIONS_PER_STREAMER <= MAX_SUBSCRIPTIONS_PER_SESSION;
+	}
+
+	int getStreamerCount() {
+		return streamers.size();
+	}
+
+	@Override
+	protected boolean onWelcome(String sessionId) {
+		// Every streamer's stream.online is queued ahead of any stream.offline
+		List<CompletableFuture<Boolean>> subscribed = new ArrayList<>();
+
+		for (TwitchAPI streamer : streamers.values()) {
+			subscribed.add(streamer.subscribeToSession(sessionId, getSubscriptionPipeline()));
+		}
+
+		reconcileAfter(CompletableFuture.allOf(subscribed.toArray(new CompletableFuture<?>[0])));
+
+		return true;
+	}
+
+	@Override
+	protected void onNotification(JSONObject payload) {
+		String broadcasterId = getBroadcasterId(payload);
+
+		if (broadcasterId.isEmpty()) {
+			return;
+		}
+
+		TwitchAPI streamer = streamers.get(broadcasterId);
+
+		if (streamer == null) {
+			System.err.println("Received a notification for an unknown broadcaster: " + broadcasterId);
+			return;
+		}
+
+		streamer.onNotification(payload);
+	}
+
+	private String getBroadcasterId(JSONObject payload) {
+		JSONObject event = payload.optJSONObject("event");
+
+		if (event != null && event.has("broadcaster_user_id")) {
+			return event.optString("broadcaster_user_id");
+		}
+
+		JSONObject subscription = payload.optJSONObject("subscription");
+
+		if (subscription == null) {
+			return "";
+		}
+
+		JSONObject condition = subscription.optJSONObject("condition");
+
+		if (condition == null) {
+			return "";
+		}
+
+		return condition.optString("broadcaster_user_id");
+	}
+}
@@ -0,0 +1,180 @@
+package songs;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Puts many streamers onto a small pool of EventSub websocket sessions. A new session
+ * is only opened once every existing session is full.
+ */
+public class EventSubSessionManager {
+
+	// Twitch allows three websocket connections per client and user token
+	static final int MAX_SESSIONS = 3;
+
+	private final TokenManager tokenManager;
+	private final ClientInfo clientInfo;
+	private final CallbackServer callbackServer;
+	private final HelixBatcher helixBatcher;
+	private final BroadcasterIdCache idCache;
+	private final SubscriptionRegistry registry;
+
+	private final List<EventSubSession> sessions = new CopyOnWriteArrayList<>();
+
+	public EventSubSessionManager(ClientInfo clientInfo) {
+		this(TwitchAPI.TOKENFILENAME, clientInfo, new CallbackServer(), 
+				new BroadcasterIdCache(BroadcasterIdCache.CACHEFILENAME),
+				new SubscriptionRegistry(SubscriptionRegistry.REGISTRYFILENAME));
+	}
+
+	public EventSubSessionManager(String tokenFileName, ClientInfo clientInfo, CallbackServer callbackServer) {
+		this(tokenFileName, clientInfo, callbackServer, null);
+	}
+
+	public EventSubSessionManager(String tokenFileName, ClientInfo clientInfo, CallbackServer callbackServer, 
+			BroadcasterIdCache idCache) {
+		this(tokenFileName, clientInfo, callbackServer, idCache, null);
+	}
+
+	public EventSubSessionManager(String tokenFileName, ClientInfo clientInfo, CallbackServer callbackServer, 
+			BroadcasterIdCache idCache, SubscriptionRegistry registry) {
+		if (tokenFileName == null || tokenFileName.isBlank()) {
+			throw new IllegalArgumentException();
+		}
+
+		if (clientInfo == null) {
+			throw new IllegalArgumentException("ClientInfo can not be null");
+		}
+
+		this.clientInfo = clientInfo;
+		this.callbackServer = callbackServer;
+		this.tokenManager = new TokenManager(tokenFileName, clientInfo, callbackServer);
+		this.helixBatcher = new HelixBatcher(clientInfo, tokenManager);
+		this.idCache = idCache;
+		this.registry = registry;
+	}
+	
+	/**
+	 * Registers every streamer, resolving their ids together so they share batched Helix lookups.
+	 */
+	public void registerAll(List<TwitchAPI> streamers) {
+		List<CompletableFuture<Integer>> lookups = new ArrayList<>();
+
+		for (TwitchAPI streamer : streamers) {
+			lookups.add(streamer.resolveStreamerIDAsync());
+		}
+
+		CompletableFuture.allOf(lookups.toArray(new CompletableFuture<?>[0])).exceptionally(e -> null).join();
+
+		for (TwitchAPI streamer : streamers) {
+			try {
+				register(streamer);
+			} catch (IllegalArgumentException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+
+	/**
+	 * Resolves the streamer's id, which may wait on a Helix lookup, before taking the lock, so
+	 * other registrations are only held up while the streamer is placed on a session.
+	 */
+	public void register(TwitchAPI streamer) {
+		int streamerID = streamer.resolveStreamerID();
+
+		if (streamerID == -1) {
+			throw new IllegalArgumentException("Unable to resolve the broadcaster id for " + streamer.getBroadcaster());
+		}
+
+		String broadcasterId = Integer.toString(streamerID);
+
+		synchronized (this) {
+			for (EventSubSession session : sessions) {
+				if (session.tryAdd(broadcasterId, streamer)) {
+					return;
+				}
+			}
+
+			if (sessions.size() >= MAX_SESSIONS) {
+				throw new IllegalStateException("Every EventSub session is full");
+			}
+
+			EventSubSession session = createSession();
+			sessions.add(session);
+			session.tryAdd(broadcasterId, streamer);
+			session.connect();
+		}
+	}
+
+	public void unregister(TwitchAPI streamer) {
+		String broadcasterId = Integer.toString(streamer.resolveStreamerID());
+
+		synchronized (this) {
+			for (EventSubSession session : sessions) {
+				if (session.remove(broadcasterId)) {
+					return;
+				}
+			}
+		}
+	}
+
+	EventSubSession createSession() {
+		try {
+			EventSubSession session = new EventSubSession(new URI(TwitchAPI.TWITCHURI), tokenManager, clientInfo, callbackServer);
+			session.setSubscriptionRegistry(registry);
+			return session;
+		} catch (URISyntaxException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	public synchronized void close() {
+		for (EventSubSession session : sessions) {
+			session.close();
+		}
+
+		sessions.clear();
+	}
+
+	public int getSessionCount() {
+		return sessions.size();
+	}
+
+	public int getStreamerCount() {
+		int count = 0;
+
+		for (EventSubSession session : sessions) {
+			count += session.getStreamerCount();
+		}
+
+		return count;
+	}
+
+	TokenManager getTokenManager() {
+		return tokenManager;
+	}
+
+	ClientInfo getClientInfo() {
+		return clientInfo;
+	}
+
+	CallbackServer getCallbackServer() {
+		return callbackServer;
+	}
+
+	HelixBatcher getHelixBatcher() {
+		return helixBatcher;
+	}
+
+	BroadcasterIdCache getIdCache() {
+		return idCache;
+	}
+
+	SubscriptionRegistry getSubscriptionRegistry() {
+		return registry;
+	}
+}
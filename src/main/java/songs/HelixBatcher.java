@@ -0,0 +1,280 @@
+package songs;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.apache.http.client.utils.URIBuilder;
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Collects /users and /streams lookups from many streamers and sends them to Helix
+ * as requests of up to 100 logins each. Every caller gets a future that is completed
+ * from the shared response.
+ */
+public class HelixBatcher {
+
+	static final int MAX_LOGINS_PER_REQUEST = 100;
+	private static final long LINGER_MILLIS = 20;
+
+	private final static String HELIXURI = "https://api.twitch.tv/helix";
+
+	AsyncHttpEngine http = AsyncHttpEngine.getShared();
+
+	private final ClientInfo clientInfo;
+	private final TokenManager tokenManager;
+
+	private final ScheduledExecutorService executor;
+
+	private final Batch<Integer> userBatch = new Batch<>("/users", "login", this::parseUsers, -1);
+	private final Batch<String> streamBatch = new Batch<>("/streams", "user_login", this::parseStreams, null);
+
+	private long requestCount = 0;
+
+	public HelixBatcher(ClientInfo clientInfo, TokenManager tokenManager) {
+		this(clientInfo, tokenManager, Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "helix-batcher");
+			thread.setDaemon(true);
+			return thread;
+		}));
+	}
+
+	HelixBatcher(ClientInfo clientInfo, TokenManager tokenManager, ScheduledExecutorService executor) {
+		if (clientInfo == null) {
+			throw new IllegalArgumentException("ClientInfo can not be null");
+		}
+
+		this.clientInfo = clientInfo;
+		this.tokenManager = tokenManager;
+		this.executor = executor;
+	}
+
+	/**
+	 * Resolves the Twitch user id for a login. Completes with -1 if Twitch does not know the login.
+	 */
+	public CompletableFuture<Integer> lookupUserId(String login) {
+		return userBatch.enqueue(login);
+	}
+
+	/**
+	 * Looks up when the login's stream started. Completes with null if the streamer is not live.
+	 */
+	public CompletableFuture<String> lookupStartTime(String login) {
+		return streamBatch.enqueue(login);
+	}
+
+	public synchronized long getRequestCount() {
+		return requestCount;
+	}
+
+	private synchronized void countRequest() {
+		requestCount++;
+	}
+
+	private CompletableFuture<JSONArray> fetchAsync(String path, String parameter, List<String> logins) throws Exception {
+		URIBuilder builder = new URIBuilder(HELIXURI + path);
+
+		for (String login : logins) {
+			builder.addParameter(parameter, login);
+		}
+
+		URI uri = builder.build();
+
+		countRequest();
+
+		// An expired token is refreshed without holding the batcher thread, so lookups keep queueing
+		return tokenManager.getBearerTokenAsync()
+				.thenCompose(token -> http.get(uri, "Client-Id", clientInfo.getClientID(),
+						"Authorization", "Bearer " + token))
+				.thenApply(response -> {
+					if (response.getStatusCode() == 401) {
+						tokenManager.invalidateValidation();
+					}
+
+					JSONObject responseObject = new JSONObject(response.getBody());
+
+					if (responseObject.has("error")) {
+						throw new IllegalStateException(responseObject.optString("error") + ", "
+								+ responseObject.optString("message"));
+					}
+
+					if (!responseObject.has("data")) {
+						throw new IllegalStateException("Twitch API took a dump on me");
+					}
+
+					return responseObject.optJSONArray("data");
+				});
+	}
+
+	private Map<String, Integer> parseUsers(JSONArray data) {
+		Map<String, Integer> ids = new HashMap<>();
+
+		for (int i = 0; i < data.length(); i++) {
+			JSONObject user = data.optJSONObject(i);
+			String login = user.optString("login");
+			String id = user.optString("id");
+
+			if (login.isBlank() || id.isBlank()) {
+				continue;
+			}
+
+			ids.put(login.toLowerCase(), Integer.parseInt(id));
+		}
+
+		return ids;
+	}
+
+	private Map<String, String> parseStreams(JSONArray data) {
+		Map<String, String> startTimes = new HashMap<>();
+
+		for (int i = 0; i < data.length(); i++) {
+			JSONObject stream = data.optJSONObject(i);
+			String login = stream.optString("user_login");
+			String startedAt = stream.optString("started_at");
+
+			if (login.isBlank() || startedAt.isBlank()) {
+				continue;
+			}
+
+			startTimes.put(login.toLowerCase(), startedAt);
+		}
+
+		return startTimes;
+	}
+
+	/**
+	 * Pending lookups for one endpoint, keyed by lowercase login so duplicate callers share a slot.
+	 */
+	private class Batch<T> {
+		private final String path;
+		private final String parameter;
+		private final Function<JSONArray, Map<String, T>> parser;
+		private final T missingValue;
+
+		private final Map<String, List<CompletableFuture<T>>> pending = new LinkedHashMap<>();
+
+		// At most one linger timer and one immediate flush are outstanding at a time
+		private boolean lingerScheduled = false;
+		private boolean flushQueued = false;
+
+		Batch(String path, String parameter, Function<JSONArray, Map<String, T>> parser, T missingValue) {
+			this.path = path;
+			this.parameter = parameter;
+			this.parser = parser;
+			this.missingValue = missingValue;
+		}
+
+		CompletableFuture<T> enqueue(String login) {
+			if (login == null || login.isBlank()) {
+				throw new IllegalArgumentException("The login must be supplied");
+			}
+
+			CompletableFuture<T> future = new CompletableFuture<>();
+
+			synchronized (this) {
+				pending.computeIfAbsent(login.toLowerCase(), key -> new ArrayList<>()).add(future);
+
+				if (pending.size() >= MAX_LOGINS_PER_REQUEST) {
+					queueFlush();
+				} else {
+					scheduleLinger();
+				}
+			}
+
+			return future;
+		}
+
+		// A full batch goes out right away, with one flush however many more lookups join it
+		private void queueFlush() {
+			if (!flushQueued) {
+				flushQueued = true;
+				executor.execute(this::flush);
+			}
+		}
+
+		private void scheduleLinger() {
+			if (!lingerScheduled) {
+				lingerScheduled = true;
+				executor.schedule(this::lingerExpired, LINGER_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}
+
+		private void lingerExpired() {
+			synchronized (this) {
+				lingerScheduled = false;
+			}
+
+			flush();
+		}
+
+		private synchronized Map<String, List<CompletableFuture<T>>> drain() {
+			Map<String, List<CompletableFuture<T>>> drained = new LinkedHashMap<>();
+			flushQueued = false;
+
+			for (String login : new ArrayList<>(pending.keySet())) {
+				if (drained.size() == MAX_LOGINS_PER_REQUEST) {
+					break;
+				}
+
+				drained.put(login, pending.remove(login));
+			}
+
+			// Another full batch goes straight out; a partial one waits for more lookups to join it
+			if (pending.size() >= MAX_LOGINS_PER_REQUEST) {
+				queueFlush();
+			} else if (!pending.isEmpty()) {
+				scheduleLinger();
+			}
+
+			return drained;
+		}
+
+		private void flush() {
+			Map<String, List<CompletableFuture<T>>> drained = drain();
+
+			if (drained.isEmpty()) {
+				return;
+			}
+
+			try {
+				// The response is handled on the HTTP engine, so the batcher thread is free for the next flush
+				fetchAsync(path, parameter, new ArrayList<>(drained.keySet()))
+						.thenApply(parser)
+						.whenComplete((results, error) -> {
+							if (error != null) {
+								fail(drained, error);
+								return;
+							}
+
+							for (Map.Entry<String, List<CompletableFuture<T>>> entry : drained.entrySet()) {
+								T result = results.getOrDefault(entry.getKey(), missingValue);
+
+								for (CompletableFuture<T> future : entry.getValue()) {
+									future.complete(result);
+								}
+							}
+						});
+
+			} catch (Exception e) {
+				fail(drained, e);
+			}
+		}
+
+		private void fail(Map<String, List<CompletableFuture<T>>> drained, Throwable error) {
+			for (List<CompletableFuture<T>> futures : drained.values()) {
+				for (CompletableFuture<T> future : futures) {
+					future.completeExceptionally(error);
+				}
+			}
+		}
+	}
+}
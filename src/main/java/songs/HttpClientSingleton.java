@@ -1,5 +1,7 @@
 package songs;
 
+import java.util.concurrent.TimeUnit;
+
 import org.apache.http.client.config.CookieSpecs;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -13,6 +15,10 @@ public final class HttpClientSingleton {
                 .setCookieSpec(CookieSpecs.STANDARD)
                 .build()
         )
+        .setConnectionManager(HttpConnectionPool.getManager())
+        .setKeepAliveStrategy(HttpConnectionPool.keepAliveStrategy())
+        .evictExpiredConnections()
+        .evictIdleConnections(HttpConnectionPool.getIdleTimeoutSeconds(), TimeUnit.SECONDS)
         .build();
 
     private HttpClientSingleton() {}
@@ -20,4 +26,4 @@ public final class HttpClientSingleton {
     public static CloseableHttpClient getInstance() {
         return HTTPCLIENT;
     }
-}
\ No newline at end of file
+}
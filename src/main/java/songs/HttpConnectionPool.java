@@ -0,0 +1,104 @@
+package songs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * The pooled connection manager behind HttpClientSingleton, and its per-route metrics.
+ * Limits and timeouts are read once from system properties, e.g. -Dsongs.http.maxPerRoute=20
+ */
+public final class HttpConnectionPool {
+
+	static final String MAX_TOTAL_PROPERTY = "songs.http.maxTotal";
+	static final String MAX_PER_ROUTE_PROPERTY = "songs.http.maxPerRoute";
+	static final String IDLE_TIMEOUT_PROPERTY = "songs.http.idleTimeoutSeconds";
+	static final String KEEP_ALIVE_PROPERTY = "songs.http.keepAliveSeconds";
+
+	private static final int DEFAULT_MAX_TOTAL = 50;
+	private static final int DEFAULT_MAX_PER_ROUTE = 10;
+	private static final int DEFAULT_IDLE_TIMEOUT_SECONDS = 30;
+	private static final int DEFAULT_KEEP_ALIVE_SECONDS = 30;
+
+	// Connections idle longer than this are checked before they are handed out again
+	private static final int VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+	private static final PoolingHttpClientConnectionManager MANAGER = createManager();
+
+	private HttpConnectionPool() {}
+
+	private static PoolingHttpClientConnectionManager createManager() {
+		PoolingHttpClientConnectionManager manager = new PoolingHttpClientConnectionManager();
+		manager.setMaxTotal(readSetting(MAX_TOTAL_PROPERTY, DEFAULT_MAX_TOTAL));
+		manager.setDefaultMaxPerRoute(readSetting(MAX_PER_ROUTE_PROPERTY, DEFAULT_MAX_PER_ROUTE));
+		manager.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY_MILLIS);
+
+		return manager;
+	}
+
+	static int readSetting(String property, int defaultValue) {
+		String value = System.getProperty(property);
+
+		if (value == null || value.isBlank()) {
+			return defaultValue;
+		}
+
+		try {
+			int parsed = Integer.parseInt(value.trim());
+
+			if (parsed > 0) {
+				return parsed;
+			}
+		} catch (NumberFormatException e) {
+			// Fall through to the default
+		}
+
+		System.err.println("Ignoring invalid value for " + property + ": " + value);
+		return defaultValue;
+	}
+
+	static PoolingHttpClientConnectionManager getManager() {
+		return MANAGER;
+	}
+
+	static long getIdleTimeoutSeconds() {
+		return readSetting(IDLE_TIMEOUT_PROPERTY, DEFAULT_IDLE_TIMEOUT_SECONDS);
+	}
+
+	/**
+	 * Uses the server's Keep-Alive header when it sends one, otherwise a fixed keep-alive,
+	 * so connections are not kept open indefinitely.
+	 */
+	static ConnectionKeepAliveStrategy keepAliveStrategy() {
+		long fallbackMillis = TimeUnit.SECONDS.toMillis(readSetting(KEEP_ALIVE_PROPERTY, DEFAULT_KEEP_ALIVE_SECONDS));
+
+		return (response, context) -> {
+			long serverMillis = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+
+			return serverMillis > 0 ? serverMillis : fallbackMillis;
+		};
+	}
+
+	/**
+	 * Leased, pending and available connections for every route the pool has seen, keyed by target host.
+	 */
+	public static Map<String, PoolStats> getRouteStats() {
+		Map<String, PoolStats> stats = new LinkedHashMap<>();
+
+		for (HttpRoute route : MANAGER.getRoutes()) {
+			stats.put(route.getTargetHost().toURI(), MANAGER.getStats(route));
+		}
+
+		return stats;
+	}
+
+	public static PoolStats getTotalStats() {
+		return MANAGER.getTotalStats();
+	}
+}
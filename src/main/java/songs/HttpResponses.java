@@ -0,0 +1,48 @@
+package songs;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Runs a request and always gives its connection back to the pool, whether the
+ * reader finishes, throws, or never touches the entity.
+ */
+final class HttpResponses {
+
+	interface Reader<T> {
+		T read(HttpResponse response) throws IOException;
+	}
+
+	private HttpResponses() {}
+
+	static <T> T execute(HttpClient client, HttpUriRequest request, Reader<T> reader) throws IOException {
+		HttpResponse response = client.execute(request);
+
+		try {
+			return reader.read(response);
+		} finally {
+			release(response);
+		}
+	}
+
+	static void release(HttpResponse response) {
+		if (response == null) {
+			return;
+		}
+
+		EntityUtils.consumeQuietly(response.getEntity());
+
+		if (response instanceof Closeable) {
+			try {
+				((Closeable) response).close();
+			} catch (IOException e) {
+				System.err.println("Unable to close HTTP response: " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package songs;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One timer that checks every watched EventSub session for a missed keepalive, so watching
+ * hundreds of sessions costs one thread and one sweep per tick rather than a timer each.
+ */
+final class KeepaliveWatchdog {
+
+	private static final long TICK_MILLIS = 500;
+
+	private static final KeepaliveWatchdog SHARED = new KeepaliveWatchdog(TICK_MILLIS);
+
+	private final Set<EventSubClient> sessions = ConcurrentHashMap.newKeySet();
+
+	KeepaliveWatchdog(long tickMillis) {
+		ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(
+				ThreadFactories.daemon("eventsub-watchdog"));
+
+		timer.scheduleAtFixedRate(() -> sweep(System.nanoTime()), tickMillis, tickMillis, TimeUnit.MILLISECONDS);
+	}
+
+	static KeepaliveWatchdog getShared() {
+		return SHARED;
+	}
+
+	void watch(EventSubClient session) {
+		sessions.add(session);
+	}
+
+	void unwatch(EventSubClient session) {
+		sessions.remove(session);
+	}
+
+	boolean isWatching(EventSubClient session) {
+		return sessions.contains(session);
+	}
+
+	int getWatchedCount() {
+		return sessions.size();
+	}
+
+	void sweep(long now) {
+		for (EventSubClient session : sessions) {
+			try {
+				if (session.isKeepaliveExpired(now)) {
+					session.onKeepaliveExpired(now);
+				}
+			} catch (Exception e) {
+				// One broken session must not stop the sweep for the rest
+				e.printStackTrace();
+			}
+		}
+	}
+}
@@ -11,9 +11,20 @@ public class Main implements StreamObserver {
 	private TwitchAPI twitchAPI;
 	private StreamerSonglistAPI songlistAPI;
 	
+	private final BroadcasterIdCache idCache = new BroadcasterIdCache(BroadcasterIdCache.CACHEFILENAME);
+	private final SubscriptionRegistry registry = new SubscriptionRegistry(SubscriptionRegistry.REGISTRYFILENAME);
+	
+	// Keep the songlist room joined between streams so going live only flips to recording
+	private final boolean warmStandby = Boolean.parseBoolean(System.getProperty("songs.songlist.warmStandby", "true"));
+	
 	public Main() {
 		try {
-			twitchAPI = new TwitchAPI(streamerName);
+			if (warmStandby) {
+				songlistAPI = new StreamerSonglistAPI(streamerName, idCache);
+				songlistAPI.standby();
+			}
+			
+			twitchAPI = new TwitchAPI(streamerName, idCache, registry);
 			
 			twitchAPI.clientInfo.setClientId(clientId);
 			twitchAPI.clientInfo.setClientSecret(clientSecret);
@@ -31,9 +42,12 @@ public class Main implements StreamObserver {
 	@Override
 	public void onStreamStart(String startTime) {
 		System.out.println("Stream is starting at " + startTime);
-		songlistAPI = new StreamerSonglistAPI(streamerName);
-		songlistAPI.setStartTime(startTime);
-		songlistAPI.listenForUpdates();
+		
+		if (songlistAPI == null) {
+			songlistAPI = new StreamerSonglistAPI(streamerName, idCache);
+		}
+		
+		songlistAPI.startRecording(startTime);
 	}
 	
 	@Override
@@ -42,9 +56,17 @@ public class Main implements StreamObserver {
 
 		try {
 
-			songlistAPI.writeSonglistToFile();
-			songlistAPI.stopListening();
-			songlistAPI.clearSonglist();
+			// Runs on the stream's scope; stopRecording and clearSonglist wait for it
+			songlistAPI.exportSonglistAsync();
+			System.out.println("First song was recorded " + songlistAPI.getFirstSongLatencyMillis() + " ms after going live");
+			
+			if (warmStandby) {
+				songlistAPI.stopRecording();
+			} else {
+				songlistAPI.stopListening();
+				songlistAPI.clearSonglist();
+				songlistAPI = null;
+			}
 
 		} catch (Exception e) {
 			// TODO Auto-generated catch block
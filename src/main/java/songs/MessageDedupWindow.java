@@ -0,0 +1,186 @@
+package songs;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the last few message ids so a redelivered EventSub message is handled once, and
+ * rejects messages older than Twitch's replay limit. Ids live in a fixed ring; an
+ * open-addressing table of ring slots makes lookups constant time, so accepting a message
+ * allocates nothing beyond the id itself.
+ */
+final class MessageDedupWindow {
+
+	// Twitch asks that messages with a message_timestamp older than ten minutes be dropped
+	static final Duration DEFAULT_MAX_AGE = Duration.ofMinutes(10);
+
+	private final String[] ring;
+	private int next = 0;
+
+	// Ring slot + 1 for each id, or 0 for an empty bucket. Linear probing over a power-of-two table.
+	// Each bucket's hash is kept alongside so probing rarely has to touch the id itself
+	private final int[] table;
+	private final int[] hashes;
+	private final int mask;
+
+	private final long maxAgeMillis;
+
+	private final AtomicLong duplicateCount = new AtomicLong();
+	private final AtomicLong staleCount = new AtomicLong();
+
+	MessageDedupWindow(int capacity, Duration maxAge) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The window must hold at least one id");
+		}
+
+		if (maxAge == null || maxAge.isNegative()) {
+			throw new IllegalArgumentException("The maximum age must not be negative");
+		}
+
+		ring = new String[capacity];
+
+		// At most a quarter full, so probe runs and the shifts on eviction stay short
+		int tableSize = Integer.highestOneBit(capacity * 2 - 1) << 2;
+		table = new int[tableSize];
+		hashes = new int[tableSize];
+		mask = tableSize - 1;
+
+		maxAgeMillis = maxAge.toMillis();
+	}
+
+	boolean accept(String messageId, String messageTimestamp) {
+		// No timestamp means no age check, so the clock is not read
+		long now = messageTimestamp == null || messageTimestamp.isEmpty() ? 0 : System.currentTimeMillis();
+		return accept(messageId, messageTimestamp, now);
+	}
+
+	/**
+	 * True if the message should be handled: it is not older than the maximum age and its id
+	 * has not been seen within the window. A missing id or timestamp skips that check.
+	 */
+	boolean accept(String messageId, String messageTimestamp, long nowMillis) {
+		if (isStale(messageTimestamp, nowMillis)) {
+			staleCount.incrementAndGet();
+			return false;
+		}
+
+		if (messageId == null || messageId.isEmpty()) {
+			return true;
+		}
+
+		synchronized (this) {
+			if (indexOf(messageId) >= 0) {
+				duplicateCount.incrementAndGet();
+				return false;
+			}
+
+			add(messageId);
+		}
+
+		return true;
+	}
+
+	private boolean isStale(String messageTimestamp, long nowMillis) {
+		if (messageTimestamp == null || messageTimestamp.isEmpty()) {
+			return false;
+		}
+
+		try {
+			return nowMillis - Instant.parse(messageTimestamp).toEpochMilli() > maxAgeMillis;
+		} catch (DateTimeParseException e) {
+			System.err.println("Unreadable message_timestamp: " + messageTimestamp);
+			return false;
+		}
+	}
+
+	/**
+	 * Fibonacci hashing spreads the id's hash code across every bit, so masking the low bits
+	 * does not cluster ids into long probe runs.
+	 */
+	private static int hash(String messageId) {
+		int h = messageId.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * Table bucket holding the id, or -1.
+	 */
+	private int indexOf(String messageId) {
+		int hash = hash(messageId);
+
+		for (int i = hash & mask; table[i] != 0; i = (i + 1) & mask) {
+			if (hashes[i] == hash && ring[table[i] - 1].equals(messageId)) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	private void add(String messageId) {
+		String evicted = ring[next];
+
+		if (evicted != null) {
+			remove(bucketOfSlot(hash(evicted), next));
+		}
+
+		ring[next] = messageId;
+
+		int hash = hash(messageId);
+		int i = hash & mask;
+		while (table[i] != 0) {
+			i = (i + 1) & mask;
+		}
+
+		table[i] = next + 1;
+		hashes[i] = hash;
+
+		if (++next == ring.length) {
+			next = 0;
+		}
+	}
+
+	/**
+	 * Bucket pointing at the ring slot. Matching on the slot avoids comparing the id itself.
+	 */
+	private int bucketOfSlot(int hash, int slot) {
+		int i = hash & mask;
+
+		while (table[i] != slot + 1) {
+			i = (i + 1) & mask;
+		}
+
+		return i;
+	}
+
+	/**
+	 * Empties the bucket and shifts later entries of the probe run back, so lookups never
+	 * stop early at the hole.
+	 */
+	private void remove(int hole) {
+		table[hole] = 0;
+
+		for (int j = (hole + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+			// Move the entry back unless its home lies cyclically between the hole and j
+			int fromHome = (j - hashes[j]) & mask;
+			int fromHole = (j - hole) & mask;
+
+			if (fromHome >= fromHole) {
+				table[hole] = table[j];
+				hashes[hole] = hashes[j];
+				table[j] = 0;
+				hole = j;
+			}
+		}
+	}
+
+	long getDuplicateCount() {
+		return duplicateCount.get();
+	}
+
+	long getStaleCount() {
+		return staleCount.get();
+	}
+}
@@ -0,0 +1,390 @@
+package songs;
+
+import java.net.URISyntaxException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.JSONObject;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+
+/**
+ * Shares a few Socket.IO connections to StreamerSonglist between every tracked streamer.
+ * Each streamer's room is joined on one connection (picked by broadcaster id), new-playhistory
+ * events are routed to the streamers they belong to, and after a reconnect every room on the
+ * connection is joined again in one go.
+ * The number of connections can be set with -Dsongs.songlist.hubConnections=N
+ */
+public class SonglistEventHub {
+
+	static final String CONNECTIONS_PROPERTY = "songs.songlist.hubConnections";
+	private static final int DEFAULT_CONNECTIONS = 1;
+
+	private static final String SOCKET_URI = "https://api.streamersonglist.com";
+
+	private static final SonglistEventHub SHARED = new SonglistEventHub(SonglistRuntime.getShared(),
+			HttpConnectionPool.readSetting(CONNECTIONS_PROPERTY, DEFAULT_CONNECTIONS));
+
+	// Keys the room id has been seen under in new-playhistory payloads
+	private static final String[] ROOM_KEYS = { "streamerId", "streamer_id", "roomId", "room" };
+
+	private final SonglistRuntime runtime;
+	private final Connection[] connections;
+
+	private final AtomicLong deliveredCount = new AtomicLong();
+	private final AtomicLong unroutedCount = new AtomicLong();
+	private final AtomicLong foreignCount = new AtomicLong();
+	private final AtomicLong rejoinCount = new AtomicLong();
+
+	/**
+	 * A streamer's interest in its room. Closing it leaves the room once nobody else is listening.
+	 */
+	public final class Registration implements AutoCloseable {
+		private final int broadcasterId;
+		private final Runnable onNewPlayHistory;
+
+		private Registration(int broadcasterId, Runnable onNewPlayHistory) {
+			this.broadcasterId = broadcasterId;
+			this.onNewPlayHistory = onNewPlayHistory;
+		}
+
+		public int getBroadcasterId() {
+			return broadcasterId;
+		}
+
+		@Override
+		public void close() {
+			leave(this);
+		}
+	}
+
+	/**
+	 * One socket and the rooms joined on it. Joins, leaves and reconnects for the connection are
+	 * serialized on it; routing only reads the room map.
+	 */
+	final class Connection {
+		final int index;
+		final Map<Integer, List<Registration>> rooms = new ConcurrentHashMap<>();
+
+		SonglistRuntime.Handle handle = null;
+		Socket socket = null;
+		volatile boolean connected = false;
+		volatile int lastRejoinSize = 0;
+
+		Connection(int index) {
+			this.index = index;
+		}
+	}
+
+	public SonglistEventHub(SonglistRuntime runtime, int connectionCount) {
+		if (runtime == null || connectionCount < 1) {
+			throw new IllegalArgumentException("A runtime and at least one connection are required");
+		}
+
+		this.runtime = runtime;
+		this.connections = new Connection[connectionCount];
+
+		for (int i = 0; i < connectionCount; i++) {
+			connections[i] = new Connection(i);
+		}
+	}
+
+	public static SonglistEventHub getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Joins the broadcaster's room and calls onNewPlayHistory for every new-playhistory event in it.
+	 * The handler runs on the socket's event thread, so it should only hand the work off.
+	 */
+	public Registration join(int broadcasterId, Runnable onNewPlayHistory) {
+		if (broadcasterId < 0 || onNewPlayHistory == null) {
+			throw new IllegalArgumentException("A valid broadcaster ID and handler are required");
+		}
+
+		Registration registration = new Registration(broadcasterId, onNewPlayHistory);
+		Connection connection = connectionFor(broadcasterId);
+
+		synchronized (connection) {
+			List<Registration> room = connection.rooms.get(broadcasterId);
+
+			if (room == null) {
+				room = new CopyOnWriteArrayList<>();
+				connection.rooms.put(broadcasterId, room);
+
+				// A connection that is still coming up joins every room once it connects
+				if (connection.connected) {
+					connection.socket.emit("join-room", broadcasterId);
+					System.out.println("Joined room with Streamer ID: " + broadcasterId);
+				}
+			}
+
+			room.add(registration);
+
+			if (connection.socket == null) {
+				connect(connection);
+			}
+		}
+
+		return registration;
+	}
+
+	private void leave(Registration registration) {
+		Connection connection = connectionFor(registration.broadcasterId);
+
+		synchronized (connection) {
+			List<Registration> room = connection.rooms.get(registration.broadcasterId);
+
+			if (room == null || !room.remove(registration) || !room.isEmpty()) {
+				return;
+			}
+
+			connection.rooms.remove(registration.broadcasterId);
+
+			if (connection.rooms.isEmpty()) {
+				disconnect(connection);
+			} else if (connection.connected) {
+				connection.socket.emit("leave-room", registration.broadcasterId);
+			}
+		}
+	}
+
+	Connection connectionFor(int broadcasterId) {
+		return connections[Math.floorMod(broadcasterId, connections.length)];
+	}
+
+	// Caller holds the connection
+	private void connect(Connection connection) {
+		IO.Options options = new IO.Options();
+		options.transports = new String[] { "websocket" };
+		options.reconnection = true; // Enable reconnection attempts
+		options.timeout = 5000; // 5 seconds timeout
+
+		Socket socket;
+
+		try {
+			socket = openSocket(connection, options);
+		} catch (Exception e) {
+			e.printStackTrace();
+			return;
+		}
+
+		connection.socket = socket;
+
+		socket.on(Socket.EVENT_CONNECT_ERROR, args -> {
+			System.err.println("Connection error: " + args[0]);
+		});
+
+		socket.on(Socket.EVENT_DISCONNECT, args -> {
+			connection.connected = false;
+			System.out.println("Disconnected from Songlist server: " + args[0]);
+		});
+
+		// Fires again after every reconnect, which is when the server has forgotten our rooms
+		socket.on(Socket.EVENT_CONNECT, args -> onConnect(connection));
+
+		socket.on("new-playhistory", args -> onNewPlayHistory(connection, args));
+
+		System.out.println("Connecting Songlist Socket " + connection.index);
+		socket.connect();
+	}
+
+	/**
+	 * Creates the socket for a connection through a runtime handle owned by the hub.
+	 */
+	Socket openSocket(Connection connection, IO.Options options) throws URISyntaxException {
+		connection.handle = runtime.lease(this, "songlist-hub-" + connection.index);
+		return connection.handle.openSocket(SOCKET_URI, options);
+	}
+
+	// Caller holds the connection
+	private void disconnect(Connection connection) {
+		connection.connected = false;
+
+		if (connection.handle != null) {
+			connection.handle.close();
+		} else if (connection.socket != null) {
+			connection.socket.off();
+			connection.socket.close();
+		}
+
+		connection.handle = null;
+		connection.socket = null;
+	}
+
+	void onConnect(Connection connection) {
+		synchronized (connection) {
+			if (connection.socket == null) {
+				return;
+			}
+
+			connection.connected = true;
+
+			int joined = 0;
+
+			for (Integer broadcasterId : connection.rooms.keySet()) {
+				connection.socket.emit("join-room", broadcasterId);
+				joined++;
+			}
+
+			connection.lastRejoinSize = joined;
+			rejoinCount.incrementAndGet();
+			System.out.println("Connected to Songlist server, joined " + joined + " rooms");
+		}
+	}
+
+	void onNewPlayHistory(Connection connection, Object... args) {
+		int roomId = readRoomId(args);
+
+		if (roomId < 0) {
+			// Nothing says whose history changed, so every room here refetches; the fetches are coalesced
+			unroutedCount.incrementAndGet();
+
+			for (List<Registration> room : connection.rooms.values()) {
+				deliver(room);
+			}
+
+			return;
+		}
+
+		List<Registration> room = connection.rooms.get(roomId);
+
+		if (room == null) {
+			foreignCount.incrementAndGet();
+			return;
+		}
+
+		deliver(room);
+	}
+
+	private void deliver(List<Registration> room) {
+		for (Registration registration : room) {
+			try {
+				registration.onNewPlayHistory.run();
+				deliveredCount.incrementAndGet();
+			} catch (Exception e) {
+				// One broken handler must not starve the other streamers on the socket
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * Finds the streamer id in an event's arguments, or -1 if none of them carry one.
+	 */
+	static int readRoomId(Object... args) {
+		if (args == null) {
+			return -1;
+		}
+
+		for (Object arg : args) {
+			int id = readRoomId(arg);
+
+			if (id >= 0) {
+				return id;
+			}
+		}
+
+		return -1;
+	}
+
+	private static int readRoomId(Object arg) {
+		if (arg instanceof Number) {
+			return ((Number) arg).intValue();
+		}
+
+		if (arg instanceof String) {
+			String text = ((String) arg).trim();
+
+			if (text.startsWith("{")) {
+				try {
+					return readRoomId(new JSONObject(text));
+				} catch (Exception e) {
+					return -1;
+				}
+			}
+
+			try {
+				return Integer.parseInt(text);
+			} catch (NumberFormatException e) {
+				return -1;
+			}
+		}
+
+		if (arg instanceof JSONObject) {
+			JSONObject payload = (JSONObject) arg;
+
+			for (String key : ROOM_KEYS) {
+				int id = payload.optInt(key, -1);
+
+				if (id >= 0) {
+					return id;
+				}
+			}
+
+			JSONObject streamer = payload.optJSONObject("streamer");
+
+			if (streamer != null) {
+				return streamer.optInt("id", -1);
+			}
+		}
+
+		return -1;
+	}
+
+	public int getRoomCount() {
+		int rooms = 0;
+
+		for (Connection connection : connections) {
+			rooms += connection.rooms.size();
+		}
+
+		return rooms;
+	}
+
+	/**
+	 * Connections that currently have a socket, connected or still connecting.
+	 */
+	public int getOpenConnectionCount() {
+		int open = 0;
+
+		for (Connection connection : connections) {
+			synchronized (connection) {
+				if (connection.socket != null) {
+					open++;
+				}
+			}
+		}
+
+		return open;
+	}
+
+	public long getDeliveredCount() {
+		return deliveredCount.get();
+	}
+
+	/**
+	 * Events without a streamer id, which were handed to every room on their connection.
+	 */
+	public long getUnroutedCount() {
+		return unroutedCount.get();
+	}
+
+	/**
+	 * Events for a room nobody here is listening to any more.
+	 */
+	public long getForeignCount() {
+		return foreignCount.get();
+	}
+
+	/**
+	 * Number of times a connection (re)connected and joined all of its rooms.
+	 */
+	public long getRejoinCount() {
+		return rejoinCount.get();
+	}
+}
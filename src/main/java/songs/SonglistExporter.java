@@ -0,0 +1,150 @@
+package songs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Writes a songlist as "title: time" lines, each song stamped with the time the song before it
+ * was played and the first with the stream's start time (UTC). Songs are streamed from the
+ * source straight into a buffered writer, so memory stays flat however long the stream ran,
+ * and hours keep counting past 24. Exports share no state, so many can run at once.
+ */
+public final class SonglistExporter {
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final long SECONDS_PER_DAY = 86_400;
+
+	// Each exporting thread reuses its own line buffer
+	private static final ThreadLocal<LineBuffer> LINE = ThreadLocal.withInitial(LineBuffer::new);
+
+	/**
+	 * Builds a line and copies it out as chars, since Writer.append(CharSequence) would make a
+	 * String of every line. The sinks write through one as well.
+	 */
+	static final class LineBuffer {
+		final StringBuilder line = new StringBuilder(256);
+		char[] chars = new char[256];
+
+		void writeTo(Writer writer) throws IOException {
+			int length = line.length();
+
+			if (chars.length < length) {
+				chars = new char[Math.max(length, chars.length * 2)];
+			}
+
+			line.getChars(0, length, chars, 0);
+			writer.write(chars, 0, length);
+		}
+	}
+
+	/**
+	 * Renders the lines of one text songlist in play order. export() drives one, and so does the
+	 * text sink, so both produce the same file.
+	 */
+	static final class TextLines {
+		private long previousSeconds;
+		private long written = 0;
+
+		TextLines(Instant startTime) {
+			previousSeconds = Math.floorMod(startTime.getEpochSecond(), SECONDS_PER_DAY);
+		}
+
+		void appendSong(StringBuilder line, String title, Duration offset) {
+			if (written > 0) {
+				line.append('\n');
+			}
+
+			line.append(title).append(": ");
+			appendTime(line, previousSeconds);
+
+			previousSeconds = Math.max(0, offset.getSeconds());
+			written++;
+		}
+
+		long getWritten() {
+			return written;
+		}
+	}
+
+	/**
+	 * Hands every song to the consumer in play order.
+	 */
+	@FunctionalInterface
+	public interface SongSource {
+		void forEachSong(SongConsumer consumer) throws IOException;
+	}
+
+	@FunctionalInterface
+	public interface SongConsumer {
+		void accept(String title, Duration offset) throws IOException;
+	}
+
+	private SonglistExporter() {}
+
+	/**
+	 * Replaces the file at output with the rendered songlist. Returns the number of songs written.
+	 */
+	public static long export(Path output, Instant startTime, SongSource songs) throws IOException {
+		if (output == null || startTime == null || songs == null) {
+			throw new IllegalArgumentException("The output, start time and songs must be supplied");
+		}
+
+		try (Writer writer = new BufferedWriter(
+				new OutputStreamWriter(Files.newOutputStream(output), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+			return export(writer, startTime, songs);
+		}
+	}
+
+	/**
+	 * Renders the songlist into the writer, which is left open.
+	 */
+	public static long export(Writer writer, Instant startTime, SongSource songs) throws IOException {
+		LineBuffer buffer = LINE.get();
+		StringBuilder line = buffer.line;
+
+		// Local to this export, which is what keeps concurrent exports independent
+		TextLines lines = new TextLines(startTime);
+
+		songs.forEachSong((title, offset) -> {
+			line.setLength(0);
+			lines.appendSong(line, title, offset);
+			buffer.writeTo(writer);
+		});
+
+		return lines.getWritten();
+	}
+
+	/**
+	 * Appends HH:mm:ss, with the hours growing past two digits rather than wrapping at a day.
+	 */
+	static void appendTime(StringBuilder line, long totalSeconds) {
+		long hours = totalSeconds / 3600;
+		int minutes = (int) (totalSeconds / 60 % 60);
+		int seconds = (int) (totalSeconds % 60);
+
+		if (hours < 10) {
+			line.append('0');
+		}
+
+		line.append(hours).append(':');
+
+		if (minutes < 10) {
+			line.append('0');
+		}
+
+		line.append(minutes).append(':');
+
+		if (seconds < 10) {
+			line.append('0');
+		}
+
+		line.append(seconds);
+	}
+}
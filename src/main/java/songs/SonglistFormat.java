@@ -0,0 +1,74 @@
+package songs;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * The built-in songlist sinks, chosen by name with -Dsongs.sinks=text,csv,jsonl,chapters
+ */
+public enum SonglistFormat {
+	TEXT("text"),
+	CSV("csv"),
+	JSONL("jsonl"),
+	YOUTUBE_CHAPTERS("chapters");
+
+	private final String settingName;
+
+	SonglistFormat(String settingName) {
+		this.settingName = settingName;
+	}
+
+	public SonglistSink newSink() {
+		switch (this) {
+			case CSV:
+				return new SonglistSink.Csv();
+			case JSONL:
+				return new SonglistSink.JsonLines();
+			case YOUTUBE_CHAPTERS:
+				return new SonglistSink.YouTubeChapters();
+			case TEXT:
+			default:
+				return new SonglistSink.Text();
+		}
+	}
+
+	/**
+	 * Reads a comma separated list of format names. Unknown names are reported and skipped.
+	 */
+	public static List<SonglistFormat> parse(String setting) {
+		List<SonglistFormat> formats = new ArrayList<>();
+
+		if (setting == null) {
+			return formats;
+		}
+
+		for (String name : setting.split(",")) {
+			String trimmed = name.trim().toLowerCase(Locale.ROOT);
+
+			if (trimmed.isEmpty()) {
+				continue;
+			}
+
+			SonglistFormat format = forName(trimmed);
+
+			if (format == null) {
+				System.err.println("Unknown songlist format: " + trimmed);
+			} else if (!formats.contains(format)) {
+				formats.add(format);
+			}
+		}
+
+		return formats;
+	}
+
+	private static SonglistFormat forName(String name) {
+		for (SonglistFormat format : values()) {
+			if (format.settingName.equals(name)) {
+				return format;
+			}
+		}
+
+		return null;
+	}
+}
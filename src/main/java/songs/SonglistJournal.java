@@ -0,0 +1,323 @@
+package songs;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Append-only record of the songs played in one stream, one line per song, so a crash loses
+ * at most the song being written. Appends are not buffered: each song is one write to the
+ * channel, which at a song every few minutes costs nothing and keeps the process-crash
+ * guarantee. Opening an existing journal drops a torn last line and the entries can then be
+ * replayed to rebuild the songlist.
+ * The fsync policy can be set with -Dsongs.journal.fsync=always|interval|os and the
+ * interval with -Dsongs.journal.fsyncIntervalMillis=N
+ */
+final class SonglistJournal implements Closeable {
+
+	static final String FSYNC_PROPERTY = "songs.journal.fsync";
+	static final String FSYNC_INTERVAL_PROPERTY = "songs.journal.fsyncIntervalMillis";
+	private static final int DEFAULT_FSYNC_INTERVAL_MILLIS = 1000;
+
+	// Chunk size for scanning back to the last complete line and for reading on replay
+	private static final int BUFFER_SIZE = 8192;
+
+	/**
+	 * Every policy hands each song to the OS before append returns, so killing the process
+	 * loses nothing; the policy decides how much a power loss can take.
+	 */
+	enum FsyncPolicy {
+		// Forced to disk before append returns
+		ALWAYS,
+		// Forced at most once per interval, and on close
+		INTERVAL,
+		// Left to the OS until close
+		OS;
+
+		static FsyncPolicy fromProperty() {
+			String value = System.getProperty(FSYNC_PROPERTY, INTERVAL.name());
+
+			try {
+				return valueOf(value.trim().toUpperCase(Locale.ROOT));
+			} catch (IllegalArgumentException e) {
+				System.err.println("Unknown " + FSYNC_PROPERTY + " '" + value + "', using " + INTERVAL);
+				return INTERVAL;
+			}
+		}
+	}
+
+	/**
+	 * One recorded song, offset from the start of the stream.
+	 */
+	static final class Entry {
+		final Duration offset;
+		final String itemId;
+		final String title;
+
+		Entry(Duration offset, String itemId, String title) {
+			this.offset = offset;
+			this.itemId = itemId;
+			this.title = title;
+		}
+	}
+
+	/**
+	 * Receives replayed entries, and may write them out as it goes.
+	 */
+	interface EntryHandler {
+		void accept(Entry entry) throws IOException;
+	}
+
+	private final Path path;
+	private final FileChannel channel;
+	private final FsyncPolicy policy;
+	private final long intervalNanos;
+
+	private long lastSyncAt = System.nanoTime();
+	private boolean dirty = false;
+	private boolean closed = false;
+
+	private final AtomicLong appendCount = new AtomicLong();
+	private final AtomicLong syncCount = new AtomicLong();
+
+	private SonglistJournal(Path path, FileChannel channel, FsyncPolicy policy, Duration interval) {
+		this.path = path;
+		this.channel = channel;
+		this.policy = policy;
+		this.intervalNanos = interval.toNanos();
+	}
+
+	static SonglistJournal open(Path path) throws IOException {
+		return open(path, FsyncPolicy.fromProperty(),
+				Duration.ofMillis(HttpConnectionPool.readSetting(FSYNC_INTERVAL_PROPERTY, DEFAULT_FSYNC_INTERVAL_MILLIS)));
+	}
+
+	/**
+	 * Opens the journal for appending, creating it if needed. A line left unfinished by a
+	 * crash is cut off so new entries start on a clean line.
+	 */
+	static SonglistJournal open(Path path, FsyncPolicy policy, Duration interval) throws IOException {
+		Path parent = path.toAbsolutePath().getParent();
+
+		if (parent != null) {
+			Files.createDirectories(parent);
+		}
+
+		FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE);
+
+		try {
+			long validLength = findEndOfLastLine(channel);
+
+			if (validLength < channel.size()) {
+				System.err.println("Dropping a torn entry at the end of " + path);
+				channel.truncate(validLength);
+			}
+
+			channel.position(validLength);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		return new SonglistJournal(path, channel, policy, interval);
+	}
+
+	private static long findEndOfLastLine(FileChannel channel) throws IOException {
+		ByteBuffer chunk = ByteBuffer.allocate(BUFFER_SIZE);
+		long end = channel.size();
+
+		while (end > 0) {
+			long start = Math.max(0, end - chunk.capacity());
+
+			chunk.clear();
+			chunk.limit((int) (end - start));
+			channel.read(chunk, start);
+
+			for (int i = chunk.position() - 1; i >= 0; i--) {
+				if (chunk.get(i) == '\n') {
+					return start + i + 1;
+				}
+			}
+
+			end = start;
+		}
+
+		return 0;
+	}
+
+	/**
+	 * Reads every complete entry in order without loading the file into memory.
+	 */
+	static void replay(Path path, EntryHandler handler) throws IOException {
+		if (!Files.exists(path)) {
+			return;
+		}
+
+		try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+			boolean torn = findEndOfLastLine(channel) < channel.size();
+			BufferedReader reader = new BufferedReader(new InputStreamReader(
+					Channels.newInputStream(channel), StandardCharsets.UTF_8), BUFFER_SIZE);
+
+			String line = reader.readLine();
+
+			while (line != null) {
+				String nextLine = reader.readLine();
+
+				// A last line without its newline was cut short by a crash
+				if (nextLine == null && torn) {
+					break;
+				}
+
+				Entry entry = decode(line);
+
+				if (entry != null) {
+					handler.accept(entry);
+				}
+
+				line = nextLine;
+			}
+		}
+	}
+
+	synchronized void append(Duration offset, String itemId, String title) throws IOException {
+		if (closed) {
+			throw new IOException("The journal " + path + " is closed");
+		}
+
+		String line = offset.toMillis() + "\t" + escape(itemId) + "\t" + escape(title) + "\n";
+		ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+
+		appendCount.incrementAndGet();
+		dirty = true;
+
+		if (policy == FsyncPolicy.ALWAYS
+				|| (policy == FsyncPolicy.INTERVAL && System.nanoTime() - lastSyncAt >= intervalNanos)) {
+			sync();
+		}
+	}
+
+	/**
+	 * Forces everything appended so far to disk.
+	 */
+	synchronized void sync() throws IOException {
+		if (closed || !dirty) {
+			return;
+		}
+
+		channel.force(false);
+		dirty = false;
+		lastSyncAt = System.nanoTime();
+		syncCount.incrementAndGet();
+	}
+
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		try {
+			sync();
+		} finally {
+			closed = true;
+			channel.close();
+		}
+	}
+
+	Path getPath() {
+		return path;
+	}
+
+	long getAppendCount() {
+		return appendCount.get();
+	}
+
+	long getSyncCount() {
+		return syncCount.get();
+	}
+
+	private static Entry decode(String line) {
+		int first = line.indexOf('\t');
+		int second = first < 0 ? -1 : line.indexOf('\t', first + 1);
+
+		if (second < 0) {
+			System.err.println("Skipping malformed journal entry: " + line);
+			return null;
+		}
+
+		try {
+			long offsetMillis = Long.parseLong(line.substring(0, first));
+			return new Entry(Duration.ofMillis(offsetMillis), unescape(line.substring(first + 1, second)),
+					unescape(line.substring(second + 1)));
+		} catch (NumberFormatException e) {
+			System.err.println("Skipping malformed journal entry: " + line);
+			return null;
+		}
+	}
+
+	// Titles are free text, so the field and line separators are escaped
+	private static String escape(String value) {
+		if (value == null) {
+			return "";
+		}
+
+		StringBuilder escaped = null;
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			String replacement = c == '\\' ? "\\\\" : c == '\t' ? "\\t" : c == '\n' ? "\\n" : c == '\r' ? "\\r" : null;
+
+			if (replacement != null && escaped == null) {
+				escaped = new StringBuilder(value.length() + 8).append(value, 0, i);
+			}
+
+			if (escaped != null) {
+				if (replacement != null) {
+					escaped.append(replacement);
+				} else {
+					escaped.append(c);
+				}
+			}
+		}
+
+		return escaped == null ? value : escaped.toString();
+	}
+
+	private static String unescape(String value) {
+		if (value.indexOf('\\') < 0) {
+			return value;
+		}
+
+		StringBuilder unescaped = new StringBuilder(value.length());
+
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+
+			if (c != '\\' || i + 1 == value.length()) {
+				unescaped.append(c);
+				continue;
+			}
+
+			char next = value.charAt(++i);
+			unescaped.append(next == 't' ? '\t' : next == 'n' ? '\n' : next == 'r' ? '\r' : next);
+		}
+
+		return unescaped.toString();
+	}
+}
@@ -0,0 +1,244 @@
+package songs;
+
+import java.io.Closeable;
+import java.lang.ref.Cleaner;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+
+/**
+ * Owns the threads and Socket.IO connections used by every StreamerSonglistAPI in the process.
+ * All sessions share one small scheduler, and each session borrows a Handle that holds its
+ * socket or its place on a shared one. Closing the handle releases them; a handle whose owner
+ * is garbage collected without closing it is closed for it and counted as leaked.
+ * The scheduler size can be set with -Dsongs.songlist.schedulerThreads=N
+ */
+public final class SonglistRuntime {
+
+	static final String THREADS_PROPERTY = "songs.songlist.schedulerThreads";
+	private static final int DEFAULT_THREADS = 2;
+
+	private static final SonglistRuntime SHARED =
+			new SonglistRuntime(HttpConnectionPool.readSetting(THREADS_PROPERTY, DEFAULT_THREADS));
+
+	// One thread for every runtime's leak checks
+	private static final Cleaner CLEANER = Cleaner.create(ThreadFactories.daemon("songlist-cleaner"));
+
+	private final ScheduledThreadPoolExecutor scheduler;
+	private final Set<Handle> handles = ConcurrentHashMap.newKeySet();
+
+	private final AtomicLong leasedCount = new AtomicLong();
+	private final AtomicLong leakedCount = new AtomicLong();
+	private final AtomicLong openSocketCount = new AtomicLong();
+
+	/**
+	 * One streamer's share of the runtime. Cheap to lease: it holds nothing but a socket and
+	 * whatever has been attached to it.
+	 */
+	public final class Handle implements Closeable {
+		private final String streamer;
+		private final Release release;
+		private final Cleaner.Cleanable cleanable;
+
+		private Socket socket = null;
+		private final List<AutoCloseable> attached = new ArrayList<>();
+		private boolean closed = false;
+
+		private Handle(Object owner, String streamer) {
+			this.streamer = streamer;
+			this.release = new Release(this);
+			this.cleanable = CLEANER.register(owner, release);
+		}
+
+		public String getStreamer() {
+			return streamer;
+		}
+
+		/**
+		 * Creates the handle's socket, closing any socket it already had. The socket is not connected.
+		 */
+		public synchronized Socket openSocket(String uri, IO.Options options) throws URISyntaxException {
+			if (closed) {
+				throw new IllegalStateException("The handle for " + streamer + " is closed");
+			}
+
+			closeSocket();
+
+			socket = IO.socket(uri, options);
+			openSocketCount.incrementAndGet();
+			return socket;
+		}
+
+		/**
+		 * Closes the resource along with the handle, including when the handle is found leaked.
+		 * The resource must not refer back to the handle's owner.
+		 */
+		public void attach(AutoCloseable resource) {
+			synchronized (this) {
+				if (!closed) {
+					attached.add(resource);
+					return;
+				}
+			}
+
+			closeQuietly(resource);
+		}
+
+		public synchronized Socket getSocket() {
+			return socket;
+		}
+
+		public synchronized void closeSocket() {
+			if (socket == null) {
+				return;
+			}
+
+			try {
+				socket.off();
+				socket.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			} finally {
+				socket = null;
+				openSocketCount.decrementAndGet();
+			}
+		}
+
+		public synchronized boolean isClosed() {
+			return closed;
+		}
+
+		/**
+		 * Closes the socket and attached resources and hands the handle back. Safe to call more than once.
+		 */
+		@Override
+		public void close() {
+			release.explicit = true;
+			cleanable.clean();
+		}
+
+		private void release(boolean leaked) {
+			List<AutoCloseable> resources;
+
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+
+				closed = true;
+				closeSocket();
+
+				resources = new ArrayList<>(attached);
+				attached.clear();
+			}
+
+			for (AutoCloseable resource : resources) {
+				closeQuietly(resource);
+			}
+
+			handles.remove(this);
+
+			if (leaked) {
+				leakedCount.incrementAndGet();
+				System.err.println("Songlist session for " + streamer + " was dropped without being stopped");
+			}
+		}
+	}
+
+	private static void closeQuietly(AutoCloseable resource) {
+		try {
+			resource.close();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	// Must not reach the owner, or the owner could never be collected
+	private static final class Release implements Runnable {
+		private final Handle handle;
+		volatile boolean explicit = false;
+
+		Release(Handle handle) {
+			this.handle = handle;
+		}
+
+		@Override
+		public void run() {
+			handle.release(!explicit);
+		}
+	}
+
+	SonglistRuntime(int threads) {
+		scheduler = new ScheduledThreadPoolExecutor(threads, ThreadFactories.daemon("songlist-scheduler"));
+		scheduler.setRemoveOnCancelPolicy(true);
+	}
+
+	public static SonglistRuntime getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * The scheduler every session runs its debounced fetches on.
+	 */
+	public ScheduledExecutorService getScheduler() {
+		return scheduler;
+	}
+
+	/**
+	 * Leases a handle for the streamer. The handle is released when closed, or when the owner
+	 * becomes unreachable while it is still open.
+	 */
+	public Handle lease(Object owner, String streamer) {
+		if (owner == null || streamer == null) {
+			throw new IllegalArgumentException("The owner and streamer must be supplied");
+		}
+
+		Handle handle = new Handle(owner, streamer);
+		handles.add(handle);
+		leasedCount.incrementAndGet();
+		return handle;
+	}
+
+	public int getOpenHandleCount() {
+		return handles.size();
+	}
+
+	public long getOpenSocketCount() {
+		return openSocketCount.get();
+	}
+
+	public long getLeasedCount() {
+		return leasedCount.get();
+	}
+
+	/**
+	 * Handles whose owner was collected while they were still open.
+	 */
+	public long getLeakedCount() {
+		return leakedCount.get();
+	}
+
+	/**
+	 * Threads the scheduler has started. Never more than the configured size, however many
+	 * sessions come and go.
+	 */
+	public int getThreadCount() {
+		return scheduler.getPoolSize();
+	}
+
+	void shutdown() {
+		for (Handle handle : handles) {
+			handle.close();
+		}
+
+		scheduler.shutdownNow();
+	}
+}
@@ -0,0 +1,192 @@
+package songs;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.time.Duration;
+import java.time.Instant;
+
+import org.json.JSONObject;
+
+/**
+ * One output format for a songlist. The sink pipeline opens a file per sink and calls begin once,
+ * song for every recorded song in play order and end when the songlist is finished. Each call
+ * only renders into the line it is given; the pipeline does the writing and flushing.
+ * A sink instance belongs to a single songlist, so it may keep state between songs.
+ */
+public abstract class SonglistSink {
+
+	private final SonglistExporter.LineBuffer buffer = new SonglistExporter.LineBuffer();
+	private final StringBuilder line = buffer.line;
+
+	/**
+	 * Suffix added to the songlist's base name, such as ".csv".
+	 */
+	public abstract String getExtension();
+
+	protected void begin(StringBuilder line, Instant startTime) {
+	}
+
+	protected abstract void song(StringBuilder line, Instant startTime, String title, Duration offset);
+
+	protected void end(StringBuilder line) {
+	}
+
+	final void writeBegin(Writer writer, Instant startTime) throws IOException {
+		line.setLength(0);
+		begin(line, startTime);
+		writeLine(writer);
+	}
+
+	final void writeSong(Writer writer, Instant startTime, String title, Duration offset) throws IOException {
+		line.setLength(0);
+		song(line, startTime, title, offset);
+		writeLine(writer);
+	}
+
+	final void writeEnd(Writer writer) throws IOException {
+		line.setLength(0);
+		end(line);
+		writeLine(writer);
+	}
+
+	private void writeLine(Writer writer) throws IOException {
+		if (line.length() > 0) {
+			buffer.writeTo(writer);
+		}
+	}
+
+	/**
+	 * The "title: time" list that writeSonglistToFile produces, rendered by SonglistExporter.
+	 */
+	static final class Text extends SonglistSink {
+		private SonglistExporter.TextLines lines;
+
+		@Override
+		public String getExtension() {
+			return ".txt";
+		}
+
+		@Override
+		protected void begin(StringBuilder line, Instant startTime) {
+			lines = new SonglistExporter.TextLines(startTime);
+		}
+
+		@Override
+		protected void song(StringBuilder line, Instant startTime, String title, Duration offset) {
+			lines.appendSong(line, title, offset);
+		}
+	}
+
+	/**
+	 * RFC 4180 CSV with a header row.
+	 */
+	static final class Csv extends SonglistSink {
+
+		@Override
+		public String getExtension() {
+			return ".csv";
+		}
+
+		@Override
+		protected void begin(StringBuilder line, Instant startTime) {
+			line.append("offset,offset_seconds,played_at,title\r\n");
+		}
+
+		@Override
+		protected void song(StringBuilder line, Instant startTime, String title, Duration offset) {
+			long seconds = Math.max(0, offset.getSeconds());
+
+			SonglistExporter.appendTime(line, seconds);
+			line.append(',').append(seconds).append(',').append(startTime.plus(offset)).append(',');
+
+			if (title.indexOf(',') < 0 && title.indexOf('"') < 0 && title.indexOf('\n') < 0 && title.indexOf('\r') < 0) {
+				line.append(title);
+			} else {
+				line.append('"');
+
+				for (int i = 0; i < title.length(); i++) {
+					char c = title.charAt(i);
+
+					if (c == '"') {
+						line.append('"');
+					}
+
+					line.append(c);
+				}
+
+				line.append('"');
+			}
+
+			line.append("\r\n");
+		}
+	}
+
+	/**
+	 * One JSON object per line.
+	 */
+	static final class JsonLines extends SonglistSink {
+
+		@Override
+		public String getExtension() {
+			return ".jsonl";
+		}
+
+		@Override
+		protected void song(StringBuilder line, Instant startTime, String title, Duration offset) {
+			line.append("{\"title\":").append(JSONObject.quote(title))
+					.append(",\"offset_seconds\":").append(Math.max(0, offset.getSeconds()))
+					.append(",\"played_at\":\"").append(startTime.plus(offset)).append("\"}\n");
+		}
+	}
+
+	/**
+	 * Chapter markers to paste into a YouTube description. YouTube needs the first chapter at
+	 * 0:00, so one is added for the start of the stream when the first song comes later.
+	 */
+	static final class YouTubeChapters extends SonglistSink {
+		private boolean first = true;
+
+		@Override
+		public String getExtension() {
+			return ".chapters.txt";
+		}
+
+		@Override
+		protected void song(StringBuilder line, Instant startTime, String title, Duration offset) {
+			long seconds = Math.max(0, offset.getSeconds());
+
+			if (first && seconds > 0) {
+				line.append("0:00 Stream start\n");
+			}
+
+			first = false;
+			appendChapterTime(line, seconds);
+			line.append(' ').append(title).append('\n');
+		}
+
+		/**
+		 * H:MM:SS, or M:SS before the first hour, which is how YouTube writes chapter times.
+		 */
+		static void appendChapterTime(StringBuilder line, long totalSeconds) {
+			long hours = totalSeconds / 3600;
+			int minutes = (int) (totalSeconds / 60 % 60);
+			int seconds = (int) (totalSeconds % 60);
+
+			if (hours > 0) {
+				line.append(hours).append(':');
+
+				if (minutes < 10) {
+					line.append('0');
+				}
+			}
+
+			line.append(minutes).append(':');
+
+			if (seconds < 10) {
+				line.append('0');
+			}
+
+			line.append(seconds);
+		}
+	}
+}
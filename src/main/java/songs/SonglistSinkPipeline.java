@@ -0,0 +1,371 @@
+package songs;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Feeds recorded songs to every sink of every songlist from one writer thread, so recording a
+ * song only costs a queue offer however many formats are written. The writer takes whatever has
+ * queued up as one batch and flushes each songlist it touched once at the end of the batch,
+ * so a burst of songs across many streamers is committed together.
+ */
+public final class SonglistSinkPipeline {
+
+	private static final int MAX_BATCH = 1024;
+	private static final int BUFFER_SIZE = 16 * 1024;
+
+	private static final SonglistSinkPipeline SHARED = new SonglistSinkPipeline("songlist-sink");
+
+	private enum Kind { OPEN, SONG, FLUSH, CLOSE, STOP }
+
+	private static final class Event {
+		final Kind kind;
+		final Session session;
+		final String title;
+		final Duration offset;
+		final CompletableFuture<Void> done;
+
+		Event(Kind kind, Session session, String title, Duration offset, CompletableFuture<Void> done) {
+			this.kind = kind;
+			this.session = session;
+			this.title = title;
+			this.offset = offset;
+			this.done = done;
+		}
+	}
+
+	private static final class Output {
+		final SonglistSink sink;
+		final Path path;
+		Writer writer;
+
+		Output(SonglistSink sink, Path path) {
+			this.sink = sink;
+			this.path = path;
+		}
+	}
+
+	/**
+	 * The sinks of one songlist. Only the writer thread touches the outputs.
+	 */
+	public final class Session {
+		private final Instant startTime;
+		private final List<Output> outputs = new ArrayList<>();
+
+		// Writer thread only
+		private boolean dirty = false;
+		private boolean closed = false;
+		private final List<CompletableFuture<Void>> flushWaiters = new ArrayList<>();
+
+		private Session(Path directory, String baseName, Instant startTime, List<? extends SonglistSink> sinks) {
+			this.startTime = startTime;
+
+			for (SonglistSink sink : sinks) {
+				outputs.add(new Output(sink, directory.resolve(baseName + sink.getExtension())));
+			}
+		}
+
+		/**
+		 * Queues a song for every sink. Never blocks and never touches the disk.
+		 */
+		public void record(String title, Duration offset) {
+			enqueue(new Event(Kind.SONG, this, title, offset, null));
+		}
+
+		/**
+		 * Completes once every song recorded so far has been written and flushed.
+		 */
+		public CompletableFuture<Void> flush() {
+			CompletableFuture<Void> done = new CompletableFuture<>();
+			enqueue(new Event(Kind.FLUSH, this, null, null, done));
+			return done;
+		}
+
+		/**
+		 * Finishes every sink and closes its file. Completes once the files are closed.
+		 */
+		public CompletableFuture<Void> close() {
+			CompletableFuture<Void> done = new CompletableFuture<>();
+			enqueue(new Event(Kind.CLOSE, this, null, null, done));
+			return done;
+		}
+
+		public List<Path> getPaths() {
+			List<Path> paths = new ArrayList<>();
+
+			for (Output output : outputs) {
+				paths.add(output.path);
+			}
+
+			return paths;
+		}
+	}
+
+	private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+	private final Thread writerThread;
+
+	private final AtomicLong songCount = new AtomicLong();
+	private final AtomicLong batchCount = new AtomicLong();
+	private final AtomicLong flushCount = new AtomicLong();
+	private final AtomicLong errorCount = new AtomicLong();
+	private volatile int maxBatchSize = 0;
+
+	SonglistSinkPipeline(String threadName) {
+		writerThread = ThreadFactories.daemon(threadName).newThread(this::drain);
+		writerThread.start();
+	}
+
+	public static SonglistSinkPipeline getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * Opens one file per sink in the directory, named baseName plus the sink's extension.
+	 * Existing files are replaced. The files are created on the writer thread.
+	 */
+	public Session open(Path directory, String baseName, Instant startTime, List<? extends SonglistSink> sinks) {
+		if (directory == null || baseName == null || startTime == null || sinks == null) {
+			throw new IllegalArgumentException("The directory, base name, start time and sinks must be supplied");
+		}
+
+		Session session = new Session(directory, baseName, startTime, sinks);
+		enqueue(new Event(Kind.OPEN, session, null, null, null));
+		return session;
+	}
+
+	private void enqueue(Event event) {
+		queue.add(event);
+	}
+
+	/**
+	 * Stops the writer thread once everything queued before this call has been handled.
+	 * Songlists that are still open are left unflushed.
+	 */
+	void stop() {
+		enqueue(new Event(Kind.STOP, null, null, null, null));
+	}
+
+	private void drain() {
+		List<Event> batch = new ArrayList<>(MAX_BATCH);
+		List<Session> touched = new ArrayList<>();
+
+		while (true) {
+			try {
+				batch.add(queue.take());
+			} catch (InterruptedException e) {
+				return;
+			}
+
+			queue.drainTo(batch, MAX_BATCH - 1);
+			batchCount.incrementAndGet();
+
+			if (batch.size() > maxBatchSize) {
+				maxBatchSize = batch.size();
+			}
+
+			boolean stop = false;
+
+			for (Event event : batch) {
+				if (event.kind == Kind.STOP) {
+					stop = true;
+					continue;
+				}
+
+				Session session = event.session;
+
+				if (session.closed) {
+					// Nothing to write to any more, but nobody should be left waiting
+					if (event.done != null) {
+						event.done.complete(null);
+					}
+
+					continue;
+				}
+
+				if (!session.dirty) {
+					session.dirty = true;
+					touched.add(session);
+				}
+
+				handle(event);
+			}
+
+			// Group commit: one flush per songlist per batch, however many songs it received
+			for (Session session : touched) {
+				commit(session);
+			}
+
+			batch.clear();
+			touched.clear();
+
+			if (stop) {
+				return;
+			}
+		}
+	}
+
+	private void handle(Event event) {
+		Session session = event.session;
+
+		switch (event.kind) {
+			case OPEN:
+				for (Output output : session.outputs) {
+					openOutput(session, output);
+				}
+				break;
+
+			case SONG:
+				songCount.incrementAndGet();
+
+				for (Output output : session.outputs) {
+					if (output.writer == null) {
+						continue;
+					}
+
+					try {
+						output.sink.writeSong(output.writer, session.startTime, event.title, event.offset);
+					} catch (IOException | RuntimeException e) {
+						fail(output, e);
+					}
+				}
+				break;
+
+			case FLUSH:
+				session.flushWaiters.add(event.done);
+				break;
+
+			case CLOSE:
+				for (Output output : session.outputs) {
+					closeOutput(output);
+				}
+
+				session.closed = true;
+				session.flushWaiters.add(event.done);
+				break;
+
+			default:
+				break;
+		}
+	}
+
+	private void openOutput(Session session, Output output) {
+		try {
+			Path parent = output.path.toAbsolutePath().getParent();
+
+			if (parent != null) {
+				Files.createDirectories(parent);
+			}
+
+			output.writer = new BufferedWriter(
+					new OutputStreamWriter(Files.newOutputStream(output.path), StandardCharsets.UTF_8), BUFFER_SIZE);
+			output.sink.writeBegin(output.writer, session.startTime);
+		} catch (IOException | RuntimeException e) {
+			fail(output, e);
+		}
+	}
+
+	private void closeOutput(Output output) {
+		if (output.writer == null) {
+			return;
+		}
+
+		try {
+			output.sink.writeEnd(output.writer);
+			output.writer.close();
+		} catch (IOException | RuntimeException e) {
+			fail(output, e);
+		}
+
+		output.writer = null;
+	}
+
+	private void commit(Session session) {
+		session.dirty = false;
+
+		if (!session.closed) {
+			for (Output output : session.outputs) {
+				if (output.writer == null) {
+					continue;
+				}
+
+				try {
+					output.writer.flush();
+				} catch (IOException e) {
+					fail(output, e);
+				}
+			}
+
+			flushCount.incrementAndGet();
+		}
+
+		for (CompletableFuture<Void> waiter : session.flushWaiters) {
+			waiter.complete(null);
+		}
+
+		session.flushWaiters.clear();
+	}
+
+	// A broken sink is dropped so the other formats keep being written
+	private void fail(Output output, Exception e) {
+		errorCount.incrementAndGet();
+		System.err.println("Unable to write songlist " + output.path + ", dropping it");
+		e.printStackTrace();
+
+		if (output.writer != null) {
+			try {
+				output.writer.close();
+			} catch (IOException ignored) {
+				// Already failing
+			}
+
+			output.writer = null;
+		}
+	}
+
+	public long getSongCount() {
+		return songCount.get();
+	}
+
+	/**
+	 * Number of times the writer woke up and drained the queue.
+	 */
+	public long getBatchCount() {
+		return batchCount.get();
+	}
+
+	/**
+	 * Number of songlist flushes. Well below the song count when songs arrive in bursts.
+	 */
+	public long getFlushCount() {
+		return flushCount.get();
+	}
+
+	public int getMaxBatchSize() {
+		return maxBatchSize;
+	}
+
+	public int getQueuedCount() {
+		return queue.size();
+	}
+
+	public long getErrorCount() {
+		return errorCount.get();
+	}
+
+	boolean isRunning() {
+		return writerThread.isAlive();
+	}
+}
@@ -0,0 +1,170 @@
+package songs;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The songs of one stream in the order they were played. Songs live in fixed size chunks that
+ * are only ever appended to, and the count is published after the song is in place, so readers
+ * take a snapshot with a single volatile read and walk it without locking while the ingest
+ * thread keeps appending. Writers (appends and clears) are serialized; readers never wait on them.
+ * Looking a title up goes through the writer lock, since only the ingest path needs it.
+ */
+final class SonglistStore {
+
+	private static final int CHUNK_BITS = 8;
+	private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	static final class Song {
+		final String title;
+		final Duration offset;
+
+		Song(String title, Duration offset) {
+			this.title = title;
+			this.offset = offset;
+		}
+	}
+
+	/**
+	 * Everything between two clears. A clear swaps in a fresh generation, so snapshots of the
+	 * old one stay whole.
+	 */
+	private static final class Generation {
+		// Writer lock only
+		final HashMap<String, Song> byTitle = new HashMap<>();
+
+		// Written before size, so a reader that has seen size also sees the chunk holding the song
+		volatile Song[][] chunks = new Song[4][];
+		volatile int size = 0;
+	}
+
+	/**
+	 * The first size songs of a generation, as they were when the snapshot was taken.
+	 */
+	static final class Snapshot implements Iterable<Song> {
+		private final Song[][] chunks;
+		private final int size;
+
+		private Snapshot(Generation generation) {
+			// Size first: the chunks read afterwards are at least as new
+			this.size = generation.size;
+			this.chunks = generation.chunks;
+		}
+
+		int size() {
+			return size;
+		}
+
+		boolean isEmpty() {
+			return size == 0;
+		}
+
+		Song get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+			}
+
+			return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+		}
+
+		/**
+		 * Hands every song to the consumer in play order, so a snapshot can be exported directly.
+		 */
+		void forEachSong(SonglistExporter.SongConsumer consumer) throws IOException {
+			for (int i = 0; i < size; i++) {
+				Song song = chunks[i >>> CHUNK_BITS][i & CHUNK_MASK];
+				consumer.accept(song.title, song.offset);
+			}
+		}
+
+		@Override
+		public Iterator<Song> iterator() {
+			return new Iterator<Song>() {
+				private int next = 0;
+
+				@Override
+				public boolean hasNext() {
+					return next < size;
+				}
+
+				@Override
+				public Song next() {
+					if (next >= size) {
+						throw new NoSuchElementException();
+					}
+
+					int index = next++;
+					return chunks[index >>> CHUNK_BITS][index & CHUNK_MASK];
+				}
+			};
+		}
+	}
+
+	private volatile Generation current = new Generation();
+
+	/**
+	 * Appends the song unless one with the same title was already played. Returns true if it was added.
+	 */
+	synchronized boolean add(String title, Duration offset) {
+		Generation generation = current;
+
+		if (generation.byTitle.containsKey(title)) {
+			return false;
+		}
+
+		Song song = new Song(title, offset);
+		int index = generation.size;
+		int chunk = index >>> CHUNK_BITS;
+		Song[][] chunks = generation.chunks;
+
+		if (chunk == chunks.length) {
+			Song[][] grown = new Song[chunks.length * 2][];
+			System.arraycopy(chunks, 0, grown, 0, chunks.length);
+			chunks = grown;
+		}
+
+		if (chunks[chunk] == null) {
+			chunks[chunk] = new Song[CHUNK_SIZE];
+
+			// Only a new chunk needs publishing; the size write below covers the slot itself
+			generation.chunks = chunks;
+		}
+
+		chunks[chunk][index & CHUNK_MASK] = song;
+		generation.byTitle.put(title, song);
+		generation.size = index + 1;
+		return true;
+	}
+
+	synchronized void clear() {
+		current = new Generation();
+	}
+
+	synchronized boolean contains(String title) {
+		return current.byTitle.containsKey(title);
+	}
+
+	/**
+	 * Offset of the song with this title, or null if it has not been played.
+	 */
+	synchronized Duration get(String title) {
+		Song song = current.byTitle.get(title);
+		return song == null ? null : song.offset;
+	}
+
+	int size() {
+		return current.size;
+	}
+
+	boolean isEmpty() {
+		return size() == 0;
+	}
+
+	Snapshot snapshot() {
+		return new Snapshot(current);
+	}
+}
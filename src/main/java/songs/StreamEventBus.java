@@ -0,0 +1,254 @@
+package songs;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Delivers stream events to each observer on its own thread with its own bounded queue,
+ * so publishing only enqueues and one slow observer can not hold up the socket or the others.
+ * Stream start and end are never dropped unless a dropping policy is chosen explicitly.
+ * The default bus reads -Dsongs.observers.queueCapacity, -Dsongs.observers.slowPolicy and
+ * -Dsongs.observers.virtualThreads
+ */
+class StreamEventBus {
+
+	static final int DEFAULT_QUEUE_CAPACITY = 64;
+
+	static final String QUEUE_CAPACITY_PROPERTY = "songs.observers.queueCapacity";
+	static final String SLOW_POLICY_PROPERTY = "songs.observers.slowPolicy";
+	static final String VIRTUAL_THREADS_PROPERTY = "songs.observers.virtualThreads";
+
+	/**
+	 * What to do with an event when an observer's queue is already full.
+	 */
+	enum SlowObserverPolicy {
+		/** Keep queueing past the capacity, which only marks when the observer is reported as lagging */
+		KEEP_ALL,
+		/** Discard the oldest queued event to make room, so the observer sees the latest state */
+		DROP_OLDEST,
+		/** Discard the event being published */
+		DROP_NEWEST,
+		/** Stop delivering to the observer altogether */
+		UNSUBSCRIBE
+	}
+
+	private final int queueCapacity;
+	private final SlowObserverPolicy policy;
+	private final boolean virtualThreads;
+
+	private final Map<StreamObserver, Subscriber> subscribers = new ConcurrentHashMap<>();
+
+	/**
+	 * Delivery metrics for one observer at the time they were read.
+	 */
+	static final class ObserverStats {
+		private final int queueDepth;
+		private final long delivered;
+		private final long dropped;
+		private final long lastLagMillis;
+		private final long maxLagMillis;
+
+		ObserverStats(int queueDepth, long delivered, long dropped, long lastLagMillis, long maxLagMillis) {
+			this.queueDepth = queueDepth;
+			this.delivered = delivered;
+			this.dropped = dropped;
+			this.lastLagMillis = lastLagMillis;
+			this.maxLagMillis = maxLagMillis;
+		}
+
+		int getQueueDepth() {
+			return queueDepth;
+		}
+
+		long getDelivered() {
+			return delivered;
+		}
+
+		long getDropped() {
+			return dropped;
+		}
+
+		/** Time the most recent event waited in the queue before the observer started on it */
+		long getLastLagMillis() {
+			return lastLagMillis;
+		}
+
+		long getMaxLagMillis() {
+			return maxLagMillis;
+		}
+	}
+
+	StreamEventBus() {
+		this(HttpConnectionPool.readSetting(QUEUE_CAPACITY_PROPERTY, DEFAULT_QUEUE_CAPACITY),
+				readPolicy(), Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY));
+	}
+
+	private static SlowObserverPolicy readPolicy() {
+		String value = System.getProperty(SLOW_POLICY_PROPERTY);
+
+		// A dropped start or end would leave a stream recorded forever or never recorded
+		if (value == null || value.isBlank()) {
+			return SlowObserverPolicy.KEEP_ALL;
+		}
+
+		try {
+			return SlowObserverPolicy.valueOf(value.trim().toUpperCase());
+		} catch (IllegalArgumentException e) {
+			System.err.println("Ignoring invalid value for " + SLOW_POLICY_PROPERTY + ": " + value);
+			return SlowObserverPolicy.KEEP_ALL;
+		}
+	}
+
+	StreamEventBus(int queueCapacity, SlowObserverPolicy policy, boolean virtualThreads) {
+		if (queueCapacity < 1) {
+			throw new IllegalArgumentException("The queue capacity must be at least 1");
+		}
+
+		if (policy == null) {
+			throw new IllegalArgumentException("A slow observer policy must be supplied");
+		}
+
+		this.queueCapacity = queueCapacity;
+		this.policy = policy;
+		this.virtualThreads = virtualThreads;
+	}
+
+	void subscribe(StreamObserver observer) {
+		subscribers.computeIfAbsent(observer, Subscriber::new);
+	}
+
+	void unsubscribe(StreamObserver observer) {
+		Subscriber subscriber = subscribers.remove(observer);
+
+		if (subscriber != null) {
+			subscriber.executor.shutdown();
+		}
+	}
+
+	SlowObserverPolicy getPolicy() {
+		return policy;
+	}
+
+	boolean isSubscribed(StreamObserver observer) {
+		return subscribers.containsKey(observer);
+	}
+
+	/**
+	 * Queues the event for every subscribed observer and returns without waiting on any of them.
+	 */
+	void publish(Consumer<StreamObserver> event) {
+		for (Subscriber subscriber : subscribers.values()) {
+			subscriber.enqueue(event);
+		}
+	}
+
+	ObserverStats getStats(StreamObserver observer) {
+		Subscriber subscriber = subscribers.get(observer);
+		return subscriber == null ? null : subscriber.stats();
+	}
+
+	Map<StreamObserver, ObserverStats> getAllStats() {
+		Map<StreamObserver, ObserverStats> stats = new LinkedHashMap<>();
+
+		for (Subscriber subscriber : subscribers.values()) {
+			stats.put(subscriber.observer, subscriber.stats());
+		}
+
+		return stats;
+	}
+
+	void close() {
+		for (StreamObserver observer : subscribers.keySet()) {
+			unsubscribe(observer);
+		}
+	}
+
+	private class Subscriber {
+		private final StreamObserver observer;
+		private final ThreadPoolExecutor executor;
+
+		private final AtomicLong delivered = new AtomicLong();
+		private final AtomicLong dropped = new AtomicLong();
+		private volatile long lastLagMillis = 0;
+		private volatile long maxLagMillis = 0;
+
+		Subscriber(StreamObserver observer) {
+			this.observer = observer;
+
+			ThreadFactory threadFactory = virtualThreads
+					? ThreadFactories.virtualOrDaemon("stream-observer")
+					: ThreadFactories.daemon("stream-observer");
+
+			BlockingQueue<Runnable> queue = policy == SlowObserverPolicy.KEEP_ALL
+					? new LinkedBlockingQueue<>()
+					: new ArrayBlockingQueue<>(queueCapacity);
+
+			executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, queue, threadFactory, rejectionHandler());
+		}
+
+		private RejectedExecutionHandler rejectionHandler() {
+			return (task, pool) -> {
+				if (pool.isShutdown()) {
+					return;
+				}
+
+				switch (policy) {
+					case DROP_OLDEST:
+						if (pool.getQueue().poll() != null) {
+							dropped.incrementAndGet();
+						}
+						pool.execute(task);
+						return;
+
+					case UNSUBSCRIBE:
+						System.err.println("Observer fell " + queueCapacity + " events behind, unsubscribing it: " + observer);
+						dropped.incrementAndGet();
+						unsubscribe(observer);
+						return;
+
+					case DROP_NEWEST:
+					default:
+						dropped.incrementAndGet();
+						return;
+				}
+			};
+		}
+
+		void enqueue(Consumer<StreamObserver> event) {
+			long enqueuedAt = System.nanoTime();
+
+			if (policy == SlowObserverPolicy.KEEP_ALL && executor.getQueue().size() == queueCapacity) {
+				System.err.println("Observer is " + queueCapacity + " events behind, still queueing: " + observer);
+			}
+
+			executor.execute(() -> {
+				long lag = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - enqueuedAt);
+				lastLagMillis = lag;
+				maxLagMillis = Math.max(maxLagMillis, lag);
+
+				try {
+					event.accept(observer);
+				} catch (Exception e) {
+					System.err.println("Observer failed to handle a stream event: " + e.getMessage());
+					e.printStackTrace();
+				} finally {
+					delivered.incrementAndGet();
+				}
+			});
+		}
+
+		ObserverStats stats() {
+			return new ObserverStats(executor.getQueue().size(), delivered.get(), dropped.get(), lastLagMillis, maxLagMillis);
+		}
+	}
+}
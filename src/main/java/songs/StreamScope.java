@@ -0,0 +1,199 @@
+package songs;
+
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * The tasks of one stream session. Everything forked here ends with the scope: join waits for
+ * the outstanding tasks, and close interrupts whatever is still running, so no task outlives
+ * the stream it was started for. This is the shape of StructuredTaskScope, which is still a
+ * preview API and out of reach of this build.
+ */
+final class StreamScope implements AutoCloseable {
+
+	private final String name;
+	private final Executor executor;
+	private final Set<Future<?>> running = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean closed = false;
+
+	private final AtomicLong forkedCount = new AtomicLong();
+	private final AtomicLong cancelledCount = new AtomicLong();
+
+	StreamScope(String name) {
+		this(name, BlockingWorkExecutor.getShared());
+	}
+
+	StreamScope(String name, Executor executor) {
+		if (name == null || executor == null) {
+			throw new IllegalArgumentException("The name and executor must be supplied");
+		}
+
+		this.name = name;
+		this.executor = executor;
+	}
+
+	/**
+	 * Runs the task on the scope's executor. The future fails with IllegalStateException if the
+	 * scope is already closed, and is cancelled if the scope closes before the task finishes.
+	 */
+	<T> CompletableFuture<T> fork(Callable<T> task) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+
+		if (closed) {
+			result.completeExceptionally(new IllegalStateException("The scope for " + name + " is closed"));
+			return result;
+		}
+
+		FutureTask<T> work = new FutureTask<T>(task) {
+			@Override
+			protected void done() {
+				running.remove(this);
+
+				if (isCancelled()) {
+					result.cancel(false);
+					return;
+				}
+
+				try {
+					result.complete(get());
+				} catch (Exception e) {
+					result.completeExceptionally(e.getCause() != null ? e.getCause() : e);
+				}
+			}
+		};
+
+		running.add(work);
+		forkedCount.incrementAndGet();
+
+		// A close that raced with this fork would have missed the task
+		if (closed) {
+			cancel(work);
+			return result;
+		}
+
+		try {
+			executor.execute(work);
+		} catch (RejectedExecutionException e) {
+			running.remove(work);
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Makes work that is already running asynchronously, such as a chain of HTTP requests, part
+	 * of the scope: join waits for it and close cancels it. Returns the same future.
+	 */
+	<T> CompletableFuture<T> track(CompletableFuture<T> work) {
+		running.add(work);
+		forkedCount.incrementAndGet();
+		work.whenComplete((result, error) -> running.remove(work));
+
+		if (closed) {
+			cancel(work);
+		}
+
+		return work;
+	}
+
+	/**
+	 * Starts asynchronous work, such as a chain of HTTP requests, only once the scope already
+	 * holds its future, so a join that begins while the work is being started still waits for it.
+	 */
+	<T> CompletableFuture<T> forkAsync(Supplier<? extends CompletableFuture<T>> start) {
+		CompletableFuture<T> result = track(new CompletableFuture<>());
+
+		if (result.isDone()) {
+			return result;
+		}
+
+		try {
+			start.get().whenComplete((value, error) -> {
+				if (error != null) {
+					result.completeExceptionally(error);
+				} else {
+					result.complete(value);
+				}
+			});
+		} catch (RuntimeException e) {
+			result.completeExceptionally(e);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Waits for every task forked so far. Returns false if some were still running at the timeout.
+	 */
+	boolean join(long timeout, TimeUnit unit) throws InterruptedException {
+		long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+		for (Future<?> work : running) {
+			long remaining = deadline - System.nanoTime();
+
+			if (remaining <= 0) {
+				return running.isEmpty();
+			}
+
+			try {
+				work.get(remaining, TimeUnit.NANOSECONDS);
+			} catch (InterruptedException e) {
+				throw e;
+			} catch (Exception e) {
+				// Failures belong to the task's own future; join only waits
+			}
+		}
+
+		return running.isEmpty();
+	}
+
+	/**
+	 * Stops new forks and interrupts every task that has not finished.
+	 */
+	@Override
+	public void close() {
+		closed = true;
+
+		for (Future<?> work : running) {
+			cancel(work);
+		}
+	}
+
+	private void cancel(Future<?> work) {
+		if (work.cancel(true)) {
+			cancelledCount.incrementAndGet();
+		}
+
+		running.remove(work);
+	}
+
+	boolean isClosed() {
+		return closed;
+	}
+
+	int getActiveCount() {
+		return running.size();
+	}
+
+	long getForkedCount() {
+		return forkedCount.get();
+	}
+
+	/**
+	 * Tasks that were still running, or had not started, when the scope closed.
+	 */
+	long getCancelledCount() {
+		return cancelledCount.get();
+	}
+}
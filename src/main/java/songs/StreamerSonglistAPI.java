@@ -1,11 +1,11 @@
 package songs;
 
-import java.util.LinkedHashMap;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.client.ClientProtocolException;
 import org.apache.http.client.methods.HttpGet;
@@ -14,15 +14,14 @@ import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-import io.socket.client.IO;
-import io.socket.client.Socket;
-import io.socket.emitter.Emitter;
-
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.Instant;
-import java.time.LocalTime;
 import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
@@ -32,52 +31,128 @@ import org.apache.http.impl.client.CloseableHttpClient;
 public class StreamerSonglistAPI extends FileWriter {
 	final CloseableHttpClient httpclient = HttpClientSingleton.getInstance();
 
-	private final ExecutorService executor = Executors.newSingleThreadExecutor(); 
+	// Process-wide, so stream sessions borrow threads and sockets instead of each starting their own
+	final SonglistRuntime runtime;
+	private final ScheduledExecutorService executor; 
 
-	private static final String SOCKET_URI = "https://api.streamersonglist.com";
 	private static final String API_PREFIX = "https://api.streamersonglist.com/v1/streamers";
 	private static final int HISTORY_SIZE = 10;
+	private static final Duration DEFAULT_DEBOUNCE = Duration.ofMillis(500);
+	
+	static final String JOURNAL_DIR_PROPERTY = "songs.journal.dir";
+	static final String SINKS_PROPERTY = "songs.sinks";
+	static final String SINK_DIR_PROPERTY = "songs.sinks.dir";
+	private static final long SINK_FLUSH_TIMEOUT_SECONDS = 10;
+	private static final long SCOPE_JOIN_TIMEOUT_SECONDS = 30;
+	
+	private final CoalescingTask playHistoryUpdates;
+	
+	AsyncHttpEngine http = AsyncHttpEngine.getShared();
 
-	private LinkedHashMap<String, Duration> songlist = new LinkedHashMap<String, Duration>();
-	private Instant startTime = null; 
-	private String previousPlayedAt = null;
+	// Appended to by the ingest thread, read and cleared from whichever thread ends the stream
+	private final SonglistStore songlist = new SonglistStore();
+	
+	// Guards the current stream: its start time, journal, sinks and play history cursor. Fetches
+	// complete on HTTP threads while the observer thread starts and ends streams.
+	private final Object streamLock = new Object();
+	
+	// Bumped whenever a stream starts or is cleared, so a fetch that was in flight across the
+	// change drops its plays instead of recording them into the next stream
+	private long streamGeneration = 0;
+	
+	// Every accepted song is appended here as well, so a crash mid-stream loses nothing
+	private SonglistJournal journal = null;
+	// Appends the journal held when the songlist file was last written from it, or -1
+	private long journalExportedAt = -1;
+	Path journalDirectory = Path.of(System.getProperty(JOURNAL_DIR_PROPERTY, "journal"));
+	
+	// Extra output formats, written off the ingest path by the shared sink pipeline
+	SonglistSinkPipeline sinkPipeline = SonglistSinkPipeline.getShared();
+	List<SonglistFormat> sinkFormats = SonglistFormat.parse(System.getProperty(SINKS_PROPERTY, ""));
+	Path sinkDirectory = Path.of(System.getProperty(SINK_DIR_PROPERTY, "songlists"));
+	private SonglistSinkPipeline.Session sinks = null;
+	
+	// Volatile as well, so isRecording and the standby check can read it without the lock
+	private volatile Instant startTime = null; 
+	
+	// High-water mark of the play history already recorded
+	private Instant cursorPlayedAt = null;
+	private String cursorItemId = null;
+	
+	// Work for the current stream, the export and the play history fetches; none of it outlives the stream
+	private volatile StreamScope scope = null;
+	
+	// System.nanoTime() when the current stream went online, or 0 while on standby
+	private volatile long onlineAt = 0;
+	private volatile long firstSongLatencyMillis = -1;
 	
 	private String broadcaster = null; 
 	private int broadcasterID = -1;
 	
-	Socket socket;
+	private BroadcasterIdCache idCache = null;
+	
+	private SonglistRuntime.Handle handle = null;
+	private final SonglistEventHub eventHub;
 
 	public StreamerSonglistAPI(String streamerName) throws IllegalArgumentException {
+		this(streamerName, null);
+	}
+	
+	public StreamerSonglistAPI(String streamerName, BroadcasterIdCache idCache) throws IllegalArgumentException {
+		this(streamerName, idCache, SonglistRuntime.getShared());
+	}
+	
+	public StreamerSonglistAPI(String streamerName, BroadcasterIdCache idCache, SonglistRuntime runtime) throws IllegalArgumentException {
+		this(streamerName, idCache, runtime, SonglistEventHub.getShared());
+	}
+	
+	public StreamerSonglistAPI(String streamerName, BroadcasterIdCache idCache, SonglistRuntime runtime, 
+			SonglistEventHub eventHub) throws IllegalArgumentException {
+		this.runtime = runtime;
+		this.eventHub = eventHub;
+		this.executor = runtime.getScheduler();
+		this.playHistoryUpdates = new CoalescingTask(executor, this::refreshPlayHistory, DEFAULT_DEBOUNCE);
+		
 		if(streamerName == null || streamerName.isBlank()) {
 			throw new IllegalArgumentException("The provided broadcaster is not a valid twitch user");
 		}
 		broadcaster = streamerName.toLowerCase();
+		this.idCache = idCache;
 		
 		setBroadcasterID(broadcaster);
 	}
 	
 	private int setBroadcasterID(String streamerName) throws IllegalArgumentException {
+		if(idCache == null) {
+			return fetchBroadcasterID(streamerName);
+		}
+		
+		broadcasterID = idCache.getSonglistId(streamerName, () -> fetchBroadcasterID(streamerName));
+		return broadcasterID;
+	}
+	
+	private int fetchBroadcasterID(String streamerName) throws IllegalArgumentException {
 		try {
 			URIBuilder builder = new URIBuilder(API_PREFIX + "/" + streamerName + "?platform=twitch");
 			HttpGet get = new HttpGet(builder.build());
 			
-			HttpResponse response = httpclient.execute(get);
-			
-			StatusLine status = response.getStatusLine();
-			System.out.println(status.getStatusCode());
-			if(status.getStatusCode() == 400) {
-				throw new IllegalArgumentException("The provided broadcaster is not found in streamersonglist");
-			}
-			if(status.getStatusCode() != 200) {
-				return -1;
-			}
-			
-			String responseMessage = EntityUtils.toString(response.getEntity());
-			JSONObject jsonresponse = new JSONObject(responseMessage);
-			
-			int id = jsonresponse.optInt("id");
-			broadcasterID = id;
-			return broadcasterID;
+			return HttpResponses.execute(httpclient, get, response -> {
+				StatusLine status = response.getStatusLine();
+				System.out.println(status.getStatusCode());
+				if(status.getStatusCode() == 400) {
+					throw new IllegalArgumentException("The provided broadcaster is not found in streamersonglist");
+				}
+				if(status.getStatusCode() != 200) {
+					return -1;
+				}
+				
+				String responseMessage = EntityUtils.toString(response.getEntity());
+				JSONObject jsonresponse = new JSONObject(responseMessage);
+				
+				int id = jsonresponse.optInt("id");
+				broadcasterID = id;
+				return broadcasterID;
+			});
 
 		} catch(URISyntaxException e) {
 			e.printStackTrace();
@@ -96,64 +171,101 @@ public class StreamerSonglistAPI extends FileWriter {
 				throw new IllegalArgumentException("Broadcaster ID is invalid");
 			}
 
-			// Connect to the Socket.IO server
-			IO.Options options = new IO.Options();
-			options.transports = new String[] { "websocket" };
-			options.reconnection = true; // Enable reconnection attempts
-			options.timeout = 5000; // 5 seconds timeout
-
-			socket = IO.socket(SOCKET_URI, options);
-			socket.on(Socket.EVENT_CONNECT_ERROR, args -> {
-				System.err.println("Connection error: " + args[0]);
-			});
-
-			socket.on(Socket.EVENT_DISCONNECT, args -> {
-				System.out.println("Disconnected from Songlist server: " + args[0]);
-			});
-			// Event: When connected
-			socket.on(Socket.EVENT_CONNECT, new Emitter.Listener() {
-				@Override
-				public void call(Object... args) {
-					System.out.println("Connected to Songlist server");
-
-					// Emit the 'join-room' event with the streamer ID
-					socket.emit("join-room", broadcasterID);
-					System.out.println("Joined room with Streamer ID: " + broadcasterID);
-				}
-			});
-
-			// Event: update-playhistory (re-fetch play history)
-			socket.on("new-playhistory", new Emitter.Listener() {
-				@Override
-				public void call(Object... args) {
-
-					executor.submit(() -> { updateSonglist(); });
+			if (handle != null && !handle.isClosed()) {
+				return;
+			}
+			
+			handle = runtime.lease(this, broadcaster);
+			
+			// Only a weak reference, so a session dropped without stopListening can still be collected
+			// and its room left by the runtime's leak check
+			WeakReference<CoalescingTask> updates = new WeakReference<>(playHistoryUpdates);
+			
+			handle.attach(eventHub.join(broadcasterID, () -> {
+				CoalescingTask task = updates.get();
+				
+				if (task != null) {
+					task.request();
 				}
-			});
-
-			// Connect to the server
-			System.out.println("Connecting Songlist Socket");
-			socket.connect();
-
+			}));
+			
 		} catch (Exception e) {
 			e.printStackTrace();
 		}
 	}
+	/**
+	 * Warm standby: joins the room and opens the HTTP connection ahead of the stream, so going
+	 * live only has to fetch the new plays. Play history events are ignored until startRecording.
+	 */
+	public void standby() {
+		listenForUpdates();
+		
+		if (broadcasterID == -1) {
+			return;
+		}
+		
+		// Nothing to record yet; this only sets up the connection (and TLS) for the first real fetch
+		fetchPlayHistoryPageAsync(0).exceptionally(e -> {
+			System.err.println("Unable to pre-warm the songlist connection: " + e.getMessage());
+			return null;
+		});
+	}
+	
+	/**
+	 * Starts recording the stream that went online at startTime. Fetches the play history right
+	 * away rather than waiting for the next event, since songs may already have been played.
+	 */
+	public boolean startRecording(String startTimeString) {
+		long wentOnlineAt = System.nanoTime();
+		
+		if (!setStartTime(startTimeString)) {
+			return false;
+		}
+		
+		firstSongLatencyMillis = -1;
+		onlineAt = wentOnlineAt;
+		
+		listenForUpdates();
+		playHistoryUpdates.requestNow();
+		return true;
+	}
+	
+	/**
+	 * Finishes the current stream and goes back to standby, still joined to the room.
+	 */
+	public void stopRecording() {
+		clearSonglist();
+		
+		synchronized (streamLock) {
+			startTime = null;
+		}
+		
+		onlineAt = 0;
+	}
+	
+	public boolean isRecording() {
+		return startTime != null;
+	}
+	
+	/**
+	 * Milliseconds from startRecording (the stream.online event) to the first song recorded for
+	 * the stream, or -1 until there is one.
+	 */
+	public long getFirstSongLatencyMillis() {
+		return firstSongLatencyMillis;
+	}
+	
 	public void stopListening() { 
 		try { 
-			if (socket == null) return; 
-			
-			socket.off("new-playhistory"); 
-			socket.off(Socket.EVENT_CONNECT); 
-			socket.off(Socket.EVENT_CONNECT_ERROR); 
-			socket.off(Socket.EVENT_DISCONNECT);
-			socket.disconnect(); 
-			socket.close(); 
+			if (handle == null) return; 
+			
+			// Closing the handle leaves the room on the shared connection
+			handle.close();
 
 		} catch (Exception e) { 
 			e.printStackTrace(); 
 		} finally { 
-			socket = null; 
+			handle = null;
 		} 
 	}
 	
@@ -165,83 +277,364 @@ public class StreamerSonglistAPI extends FileWriter {
 		return parsedTime;
 	}
 		
-	private void updateSonglist(int current) {
-		if(startTime == null) {
-			throw new IllegalArgumentException("Please provide a start time before attempting to update the songlist");
-		}
+	private CompletableFuture<JSONArray> fetchPlayHistoryPageAsync(int current) {
+		URI uri;
 		
 		try {
-
-			URIBuilder builder = new URIBuilder(API_PREFIX + "/" + broadcaster + "/playHistory")
+			uri = new URIBuilder(API_PREFIX + "/" + broadcaster + "/playHistory")
 					.addParameter("current", Integer.toString(current))
-					.addParameter("size", Integer.toString(HISTORY_SIZE));
+					.addParameter("size", Integer.toString(HISTORY_SIZE))
+					.build();
+		} catch (URISyntaxException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+		
+		return http.get(uri).thenApply(response -> {
+			String responseMessage = response.getBody();
 			
-			HttpGet get = new HttpGet(builder.build());
-
-			HttpResponse response = httpclient.execute(get);
-
-			String responseMessage = EntityUtils.toString(response.getEntity());
-
 			System.out.println(responseMessage);
+			
+			return parsePlayHistoryPage(responseMessage);
+		});
+	}
+	
+	JSONArray parsePlayHistoryPage(String responseMessage) {
+		JSONObject jsonresponse = new JSONObject(responseMessage);
 
-			JSONObject jsonresponse = new JSONObject(responseMessage);
-
-			JSONArray songs = jsonresponse.optJSONArray("items");
-
-			for (int i = 0; i < songs.length(); i++) {
-				JSONObject songInfo = songs.optJSONObject(i);
-
-				if (!songInfo.has("playedAt") || !songInfo.has("song")) {
-					continue;
-				}
-
-				JSONObject song = songInfo.optJSONObject("song");
-
-				String songTitle = song.optString("title");
-				//TODO: Handle same titled songs/replayed songs
-				if (songlist.containsKey(songTitle)) {
-					continue;
-				}
-				
-				
-				String playedAt = songInfo.optString("playedAt");
-
-				Instant playedAtInstant = convertStringToInstant(playedAt);
-				
-				if(playedAtInstant.isBefore(startTime)) {
-					continue;
-				}
+		return jsonresponse.optJSONArray("items");
+	}
+	
+	/**
+	 * True once the walk through history reaches a play we already recorded or one from before the stream.
+	 */
+	private boolean isKnownPlay(String itemId, Instant playedAtInstant) {
+		synchronized (streamLock) {
+			// The stream ended mid-walk, so nothing further is new to it
+			if (startTime == null || playedAtInstant.isBefore(startTime)) {
+				return true;
+			}
+			
+			if (cursorPlayedAt == null) {
+				return false;
+			}
+			
+			if (itemId.equals(cursorItemId)) {
+				return true;
+			}
+			
+			return !playedAtInstant.isAfter(cursorPlayedAt);
+		}
+	}
+		
+	// Play history events also arrive on standby, before there is a stream to record
+	private CompletableFuture<Void> refreshPlayHistory() {
+		StreamScope current = scope;
+		
+		if (startTime == null || current == null) {
+			return CompletableFuture.completedFuture(null);
+		}
+		
+		// In the scope before the request goes out, so ending the stream waits for the fetch; a
+		// cancelled fetch is not an error here
+		return current.forkAsync(this::updateSonglistAsync).handle((result, error) -> null);
+	}
+	
+	/**
+	 * Fetches play history without holding a thread while the requests are in flight.
+	 * Completes once every new play has been recorded.
+	 */
+	CompletableFuture<Void> updateSonglistAsync() {
+		long generation;
+		
+		synchronized (streamLock) {
+			if(startTime == null) {
+				throw new IllegalArgumentException("Please provide a start time before attempting to update the songlist");
+			}
+			
+			generation = streamGeneration;
+		}
+		
+		// History is newest first, so collect until the cursor and then record oldest first
+		List<JSONObject> newPlays = new ArrayList<>();
+		
+		return collectNewPlaysFrom(0, newPlays)
+				.thenRun(() -> {
+					for (int i = newPlays.size() - 1; i >= 0; i--) {
+						recordPlay(newPlays.get(i), generation);
+					}
+				})
+				.exceptionally(e -> {
+					e.printStackTrace();
+					return null;
+				});
+	}
+	
+	private CompletableFuture<Void> collectNewPlaysFrom(int current, List<JSONObject> newPlays) {
+		return fetchPlayHistoryPageAsync(current).thenCompose(songs -> {
+			if (songs == null) {
+				return CompletableFuture.completedFuture(null);
+			}
+			
+			boolean reachedKnownPlay = collectNewPlays(songs, newPlays);
+			
+			if (reachedKnownPlay || songs.length() < HISTORY_SIZE) {
+				return CompletableFuture.completedFuture(null);
+			}
+			
+			return collectNewPlaysFrom(current + 1, newPlays);
+		});
+	}
+	
+	/**
+	 * Adds the plays on one history page that come after the cursor, newest first.
+	 * Returns true once a known play is reached, so no older pages need to be fetched.
+	 */
+	boolean collectNewPlays(JSONArray songs, List<JSONObject> newPlays) {
+		for (int i = 0; i < songs.length(); i++) {
+			JSONObject songInfo = songs.optJSONObject(i);
+
+			if (!songInfo.has("playedAt") || !songInfo.has("song")) {
+				continue;
+			}
+			
+			Instant playedAtInstant = convertStringToInstant(songInfo.optString("playedAt"));
+			
+			if (isKnownPlay(songInfo.optString("id"), playedAtInstant)) {
+				return true;
+			}
+			
+			newPlays.add(songInfo);
+		}
+		
+		return false;
+	}
+	
+	private void recordPlay(JSONObject songInfo, long generation) {
+		Instant playedAtInstant = convertStringToInstant(songInfo.optString("playedAt"));
+		String itemId = songInfo.optString("id");
+		
+		JSONObject song = songInfo.optJSONObject("song");
 
-				Duration timeElapsed = Duration.between(startTime,  playedAtInstant);
-				
-				System.out.printf("%s: %s%n", playedAtInstant, songTitle);
-				songlist.put(songTitle, timeElapsed);
-								
-				if(i == songs.length() - 1) {
-					updateSonglist(current + 1);
+		String songTitle = song.optString("title");
+		boolean recorded;
+		
+		synchronized (streamLock) {
+			// The stream this fetch was for has ended or been replaced
+			if (generation != streamGeneration) {
+				return;
+			}
+			
+			cursorPlayedAt = playedAtInstant;
+			cursorItemId = itemId;
+			
+			Duration timeElapsed = Duration.between(startTime,  playedAtInstant);
+			recorded = recordSong(songTitle, timeElapsed, itemId);
+		}
+		
+		if (recorded) {
+			System.out.printf("%s: %s%n", playedAtInstant, songTitle);
+		}
+	}
+	
+	boolean recordSong(String songTitle, Duration timeElapsed) {
+		return recordSong(songTitle, timeElapsed, null);
+	}
+	
+	private boolean recordSong(String songTitle, Duration timeElapsed, String itemId) {
+		synchronized (streamLock) {
+			//TODO: Handle same titled songs/replayed songs
+			if (!songlist.add(songTitle, timeElapsed)) {
+				return false;
+			}
+			
+			if (journal != null) {
+				try {
+					journal.append(timeElapsed, itemId, songTitle);
+				} catch (IOException e) {
+					e.printStackTrace();
 				}
 			}
+			
+			if (sinks != null) {
+				sinks.record(songTitle, timeElapsed);
+			}
+		}
+		
+		long wentOnlineAt = onlineAt;
+		
+		if (firstSongLatencyMillis < 0 && wentOnlineAt != 0) {
+			firstSongLatencyMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wentOnlineAt);
+			System.out.println("First song recorded " + firstSongLatencyMillis + " ms after the stream went online");
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Opens the journal for the current stream. If one already exists, the process restarted
+	 * mid-stream, so the songlist and the play history cursor are rebuilt from it.
+	 * Called with streamLock held.
+	 */
+	private void openJournal() {
+		closeJournal();
+		
+		Path journalPath = journalDirectory.resolve(broadcaster + "-" + startTime.getEpochSecond() + ".journal");
+		
+		try {
+			SonglistJournal.replay(journalPath, entry -> {
+				songlist.add(entry.title, entry.offset);
+				cursorPlayedAt = startTime.plus(entry.offset);
+				cursorItemId = entry.itemId.isEmpty() ? null : entry.itemId;
+			});
+			
+			if (!songlist.isEmpty()) {
+				System.out.println("Recovered " + songlist.size() + " songs from " + journalPath);
+			}
+			
+			journal = SonglistJournal.open(journalPath);
+			journalExportedAt = -1;
+		} catch (IOException e) {
+			System.err.println("Unable to open the songlist journal, keeping the songlist in memory only");
+			e.printStackTrace();
+		}
+		
+		openSinks();
+	}
+	
+	/**
+	 * Starts the configured output formats for the current stream, replaying any songs
+	 * recovered from the journal so the files are complete.
+	 */
+	private void openSinks() {
+		closeSinks();
+		
+		if (sinkFormats.isEmpty()) {
+			return;
+		}
+		
+		List<SonglistSink> formats = new ArrayList<>();
+		
+		for (SonglistFormat format : sinkFormats) {
+			formats.add(format.newSink());
+		}
+		
+		sinks = sinkPipeline.open(sinkDirectory, broadcaster + "-" + startTime.getEpochSecond(), startTime, formats);
+		
+		for (SonglistStore.Song song : songlist.snapshot()) {
+			sinks.record(song.title, song.offset);
+		}
+	}
+	
+	/**
+	 * Finishes the sink files. Waits for them since this only happens once a stream is over.
+	 */
+	private void closeSinks() {
+		SonglistSinkPipeline.Session closing;
+		
+		synchronized (streamLock) {
+			closing = sinks;
+			sinks = null;
+		}
+		
+		if (closing == null) {
+			return;
+		}
+		
+		try {
+			closing.close().get(SINK_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
 		} catch (Exception e) {
+			System.err.println("Songlist sinks did not finish in time");
 			e.printStackTrace();
 		}
 	}
 	
-	private void updateSonglist() {
-		updateSonglist(0);
+	private void flushSinks() {
+		SonglistSinkPipeline.Session current;
+		
+		synchronized (streamLock) {
+			current = sinks;
+		}
+		
+		if (current == null) {
+			return;
+		}
+		
+		try {
+			current.flush().get(SINK_FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		} catch (Exception e) {
+			System.err.println("Songlist sinks did not flush in time");
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Files written by the configured sinks for the current stream, empty when there are none.
+	 */
+	List<Path> getSinkPaths() {
+		synchronized (streamLock) {
+			return sinks == null ? new ArrayList<>() : sinks.getPaths();
+		}
+	}
+	
+	/**
+	 * Closes the journal, and deletes it if the songlist file was written from it after the
+	 * last song was appended. Otherwise it is kept so a restart can still recover the stream.
+	 */
+	private void closeJournal() {
+		synchronized (streamLock) {
+			if (journal == null) {
+				return;
+			}
+			
+			boolean exported = journalExportedAt == journal.getAppendCount();
+			
+			try {
+				journal.close();
+				
+				if (exported) {
+					Files.deleteIfExists(journal.getPath());
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			
+			journal = null;
+			journalExportedAt = -1;
+		}
+	}
+	
+	Path getJournalPath() {
+		synchronized (streamLock) {
+			return journal == null ? null : journal.getPath();
+		}
 	}
 	
 	public boolean setStartTime(String startTimeString) {
 		try {
-			startTime = convertStringToInstant(startTimeString);
+			Instant parsedStartTime = convertStringToInstant(startTimeString);
 
 			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss")
 					.withZone(ZoneId.of("UTC"));
 			
 			String filePath = "\\";
-			String fileName = formatter.format(startTime);
+			String fileName = formatter.format(parsedStartTime);
 			String fileType = ".txt";
 			
 			super.setPath(filePath + fileName + fileType);
+			
+			// The previous stream's work finishes against the previous stream
+			closeScope();
+			
+			synchronized (streamLock) {
+				startTime = parsedStartTime;
+				streamGeneration++;
+				songlist.clear();
+				cursorPlayedAt = null;
+				cursorItemId = null;
+				openJournal();
+			}
+			
+			openScope();
 			return true;
 			
 		} catch(Exception e) {
@@ -252,6 +645,14 @@ public class StreamerSonglistAPI extends FileWriter {
 	}
 	
 	public boolean writeSonglistToFile() throws Exception {
+		Instant startTime;
+		SonglistJournal current;
+		
+		synchronized (streamLock) {
+			startTime = this.startTime;
+			current = journal;
+		}
+		
 		if(startTime == null) {
 			throw new Exception("Please initialize startTime before attempting to write the songlist to file");
 		}
@@ -263,29 +664,25 @@ public class StreamerSonglistAPI extends FileWriter {
 			
 			String fileName = broadcaster + "-" + startTimeFormatter.format(startTime);
 			super.setPath(fileName);
-			DateTimeFormatter formatter = DateTimeFormatter.ofPattern("HH:mm:ss")
-					.withZone(ZoneId.of("UTC"));
 			
-
-			String result = songlist.entrySet().stream()
-	        .map(e -> {
-	            Duration value = e.getValue();
-	            long seconds = value.getSeconds();
-	            LocalTime currentTime = LocalTime.ofSecondOfDay(seconds);
-	            
-	            String currentTimeString = currentTime.format(formatter);
-	
-	            if(previousPlayedAt == null || previousPlayedAt.isBlank()) {
-	            	previousPlayedAt = formatter.format(startTime);
-	            }
-	            String returnVal = String.format("%s: %s", e.getKey(), previousPlayedAt);
-            	previousPlayedAt = currentTimeString;
-	            return returnVal;
-	        })
-	        .collect(Collectors.joining("\n"));
-			
-			super.writeToFile(result);
-						
+			Path output = Path.of(fileName);
+			flushSinks();
+			
+			if (current != null) {
+				long appends = current.getAppendCount();
+				current.sync();
+				SonglistExporter.export(output, startTime, songs -> 
+						SonglistJournal.replay(current.getPath(), entry -> songs.accept(entry.title, entry.offset)));
+				
+				synchronized (streamLock) {
+					if (journal == current) {
+						journalExportedAt = appends;
+					}
+				}
+			} else {
+				SonglistExporter.export(output, startTime, songlist.snapshot()::forEachSong);
+			}
+			
 			return true;
 		} catch(Exception e) {
 			System.out.println(e);
@@ -293,8 +690,76 @@ public class StreamerSonglistAPI extends FileWriter {
 		return false;
 	}
 
+	/**
+	 * Writes the songlist on the stream's scope, off the caller's thread. clearSonglist and
+	 * stopRecording wait for it before tearing the stream down.
+	 */
+	public CompletableFuture<Boolean> exportSonglistAsync() {
+		StreamScope current = scope;
+		
+		if (current == null) {
+			return CompletableFuture.failedFuture(
+					new IllegalStateException("Please initialize startTime before attempting to write the songlist to file"));
+		}
+		
+		return current.fork(this::writeSonglistToFile);
+	}
+	
+	private void openScope() {
+		scope = new StreamScope(broadcaster + "-" + startTime.getEpochSecond());
+	}
+	
+	/**
+	 * Lets the stream's outstanding work finish, then cancels whatever is left.
+	 */
+	private void closeScope() {
+		StreamScope current = scope;
+		
+		if (current == null) {
+			return;
+		}
+		
+		scope = null;
+		
+		try {
+			if (!current.join(SCOPE_JOIN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+				System.err.println("Stream work still running after " + SCOPE_JOIN_TIMEOUT_SECONDS + "s, cancelling it");
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} finally {
+			current.close();
+		}
+	}
+	
+	StreamScope getScope() {
+		return scope;
+	}
+	
+	public void setDebounceWindow(Duration debounce) {
+		playHistoryUpdates.setDebounce(debounce);
+	}
+	
+	/**
+	 * Number of new-playhistory events that were folded into an already pending fetch.
+	 */
+	public long getCoalescedEventCount() {
+		return playHistoryUpdates.getCoalescedCount();
+	}
+	
 	public boolean clearSonglist() {
-		songlist.clear();
+		// Waits for the export and any play history fetch still in flight
+		closeScope();
+		
+		synchronized (streamLock) {
+			streamGeneration++;
+			closeJournal();
+			songlist.clear();
+			cursorPlayedAt = null;
+			cursorItemId = null;
+		}
+		
+		closeSinks();
 
 		return true;
 	}
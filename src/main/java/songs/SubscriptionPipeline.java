@@ -0,0 +1,227 @@
+package songs;
+
+import java.time.Duration;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Creates the subscriptions for one EventSub session. Requests run concurrently up to a limit,
+ * most important first, and are timed against the deadline Twitch gives a welcomed session
+ * to receive its first subscription before it is closed.
+ * The limit can be set with -Dsongs.eventsub.subscribeConcurrency=N
+ */
+final class SubscriptionPipeline {
+
+	static final String CONCURRENCY_PROPERTY = "songs.eventsub.subscribeConcurrency";
+	private static final int DEFAULT_CONCURRENCY = 16;
+
+	static final Duration WELCOME_DEADLINE = Duration.ofSeconds(10);
+
+	// Lower runs first. stream.online is the event we can not afford to miss
+	static final int PRIORITY_ONLINE = 0;
+	static final int PRIORITY_OFFLINE = 1;
+
+	private final int maxConcurrent;
+	private final long deadlineNanos;
+
+	private final PriorityQueue<Pending> queue = new PriorityQueue<>();
+	private int inFlight = 0;
+	private long sequence = 0;
+
+	// System.nanoTime() of the current session's welcome, and whether a subscription has landed since
+	private long welcomedAt = System.nanoTime();
+	private boolean firstSubscribed = false;
+
+	private final AtomicLong completedCount = new AtomicLong();
+	private final AtomicLong failedCount = new AtomicLong();
+	private final AtomicLong missedDeadlineCount = new AtomicLong();
+	private volatile long lastLatencyMillis = -1;
+	private volatile long maxLatencyMillis = -1;
+	private volatile long firstSubscriptionMillis = -1;
+
+	private final class Pending implements Comparable<Pending> {
+		final String name;
+		final int priority;
+		final long order;
+		final long submittedAt;
+		final long deadlineAt;
+		final Supplier<CompletableFuture<Boolean>> task;
+		final CompletableFuture<Boolean> result = new CompletableFuture<>();
+
+		Pending(String name, int priority, Supplier<CompletableFuture<Boolean>> task) {
+			this.name = name;
+			this.priority = priority;
+			this.order = sequence++;
+			this.submittedAt = System.nanoTime();
+			this.deadlineAt = welcomedAt + deadlineNanos;
+			this.task = task;
+		}
+
+		@Override
+		public int compareTo(Pending other) {
+			if (priority != other.priority) {
+				return Integer.compare(priority, other.priority);
+			}
+
+			return Long.compare(order, other.order);
+		}
+	}
+
+	SubscriptionPipeline() {
+		this(HttpConnectionPool.readSetting(CONCURRENCY_PROPERTY, DEFAULT_CONCURRENCY), WELCOME_DEADLINE);
+	}
+
+	SubscriptionPipeline(int maxConcurrent, Duration deadline) {
+		if (maxConcurrent < 1) {
+			throw new IllegalArgumentException("At least one subscription must be allowed in flight");
+		}
+
+		this.maxConcurrent = maxConcurrent;
+		this.deadlineNanos = deadline.toNanos();
+	}
+
+	/**
+	 * Starts the deadline for a newly welcomed session.
+	 */
+	synchronized void onWelcome(long welcomedAtNanos) {
+		welcomedAt = welcomedAtNanos;
+		firstSubscribed = false;
+	}
+
+	/**
+	 * Queues a subscription. The task is started once a slot is free and nothing more important
+	 * is waiting; the returned future completes with its result, or false if it failed.
+	 */
+	CompletableFuture<Boolean> submit(String name, int priority, Supplier<CompletableFuture<Boolean>> task) {
+		Pending pending;
+
+		synchronized (this) {
+			pending = new Pending(name, priority, task);
+			queue.add(pending);
+		}
+
+		drain();
+		return pending.result;
+	}
+
+	private void drain() {
+		while (true) {
+			Pending next;
+
+			synchronized (this) {
+				if (inFlight >= maxConcurrent || queue.isEmpty()) {
+					return;
+				}
+
+				next = queue.poll();
+				inFlight++;
+			}
+
+			start(next);
+		}
+	}
+
+	private void start(Pending pending) {
+		if (System.nanoTime() > pending.deadlineAt) {
+			System.err.println("Subscribing to " + pending.name + " after the welcome deadline has passed");
+		}
+
+		CompletableFuture<Boolean> stage;
+
+		try {
+			stage = pending.task.get();
+		} catch (Exception e) {
+			stage = CompletableFuture.failedFuture(e);
+		}
+
+		if (stage == null) {
+			stage = CompletableFuture.completedFuture(false);
+		}
+
+		stage.whenComplete((subscribed, error) -> finish(pending, error == null && Boolean.TRUE.equals(subscribed), error));
+	}
+
+	private void finish(Pending pending, boolean subscribed, Throwable error) {
+		long now = System.nanoTime();
+		long latencyMillis = TimeUnit.NANOSECONDS.toMillis(now - pending.submittedAt);
+		boolean late = now > pending.deadlineAt;
+
+		synchronized (this) {
+			inFlight--;
+
+			if (subscribed && !firstSubscribed && pending.deadlineAt == welcomedAt + deadlineNanos) {
+				firstSubscribed = true;
+				firstSubscriptionMillis = TimeUnit.NANOSECONDS.toMillis(now - welcomedAt);
+			}
+
+			lastLatencyMillis = latencyMillis;
+			if (latencyMillis > maxLatencyMillis) {
+				maxLatencyMillis = latencyMillis;
+			}
+		}
+
+		if (subscribed) {
+			completedCount.incrementAndGet();
+		} else {
+			failedCount.incrementAndGet();
+		}
+
+		if (late) {
+			missedDeadlineCount.incrementAndGet();
+		}
+
+		if (error != null) {
+			error.printStackTrace();
+		}
+
+		System.out.println((subscribed ? "Subscribed to " : "Failed to subscribe to ") + pending.name
+				+ " in " + latencyMillis + " ms" + (late ? " (past the welcome deadline)" : ""));
+
+		pending.result.complete(subscribed);
+		drain();
+	}
+
+	synchronized int getQueuedCount() {
+		return queue.size();
+	}
+
+	synchronized int getInFlightCount() {
+		return inFlight;
+	}
+
+	long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	long getFailedCount() {
+		return failedCount.get();
+	}
+
+	/**
+	 * Subscriptions that finished after their session's welcome deadline.
+	 */
+	long getMissedDeadlineCount() {
+		return missedDeadlineCount.get();
+	}
+
+	/**
+	 * Milliseconds from queueing to completion of the most recent subscription, or -1.
+	 */
+	long getLastLatencyMillis() {
+		return lastLatencyMillis;
+	}
+
+	long getMaxLatencyMillis() {
+		return maxLatencyMillis;
+	}
+
+	/**
+	 * Milliseconds from the latest welcome to its first successful subscription, or -1.
+	 */
+	long getFirstSubscriptionMillis() {
+		return firstSubscriptionMillis;
+	}
+}
@@ -0,0 +1,347 @@
+package songs;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+/**
+ * Remembers which EventSub subscriptions exist on our live websocket sessions, so a streamer
+ * that is already subscribed is not subscribed again. The ids of the subscriptions this
+ * registry created are kept on disk, so after a restart reconcile() can tell what an earlier
+ * run left behind from what other clients sharing the client id still use. It only deletes
+ * our own subscriptions that are no longer enabled on a live session, and subscriptions whose
+ * websocket transport Twitch has already reported dead.
+ */
+public class SubscriptionRegistry extends FileWriter {
+
+	static final String REGISTRYFILENAME = "Subscriptions.txt";
+	private static final String SUBSCRIPTIONSURI = "https://api.twitch.tv/helix/eventsub/subscriptions";
+
+	AsyncHttpEngine http = AsyncHttpEngine.getShared();
+
+	// Keyed by type and broadcaster id, since each streamer needs one of each event
+	private final Map<String, Subscription> subscriptions = new ConcurrentHashMap<>();
+	private final Set<String> liveSessions = ConcurrentHashMap.newKeySet();
+
+	// Every subscription this registry created, by id, until Helix no longer lists it
+	private final Map<String, Subscription> owned = new ConcurrentHashMap<>();
+
+	// Statuses of websocket subscriptions whose session is gone, whoever created them
+	private static final Set<String> DEAD_TRANSPORT_STATUSES = Set.of("websocket_disconnected",
+			"websocket_failed_ping_pong", "websocket_received_inbound_traffic", "websocket_connection_unused",
+			"websocket_internal_error", "websocket_network_timeout", "websocket_network_error",
+			"websocket_failed_to_reconnect", "websocket_session_timeout");
+
+	private volatile int totalCost = -1;
+	private volatile int maxTotalCost = -1;
+
+	private final AtomicLong reusedCount = new AtomicLong();
+	private final AtomicLong deletedCount = new AtomicLong();
+
+	static final class Subscription {
+		final String id;
+		final String sessionId;
+		final String type;
+		final String broadcasterId;
+
+		Subscription(String id, String sessionId, String type, String broadcasterId) {
+			this.id = id;
+			this.sessionId = sessionId;
+			this.type = type;
+			this.broadcasterId = broadcasterId;
+		}
+	}
+
+	/**
+	 * Keeps nothing on disk, so a restart cannot recognise its earlier subscriptions.
+	 */
+	public SubscriptionRegistry() {
+	}
+
+	public SubscriptionRegistry(String fileName) {
+		super(fileName);
+		loadEntries();
+	}
+
+	private static String key(String type, String broadcasterId) {
+		return type + "/" + broadcasterId;
+	}
+
+	void sessionStarted(String sessionId) {
+		liveSessions.add(sessionId);
+	}
+
+	/**
+	 * Twitch disables every subscription on a closed session, so they are forgotten with it.
+	 */
+	void sessionEnded(String sessionId) {
+		liveSessions.remove(sessionId);
+
+		subscriptions.values().removeIf(s -> s.sessionId.equals(sessionId));
+	}
+
+	/**
+	 * A reconnect carries the subscriptions over to the new session.
+	 */
+	void sessionMoved(String oldSessionId, String newSessionId) {
+		liveSessions.remove(oldSessionId);
+		liveSessions.add(newSessionId);
+
+		subscriptions.replaceAll((k, s) -> s.sessionId.equals(oldSessionId)
+				? new Subscription(s.id, newSessionId, s.type, s.broadcasterId)
+				: s);
+		owned.replaceAll((id, s) -> s.sessionId.equals(oldSessionId)
+				? new Subscription(s.id, newSessionId, s.type, s.broadcasterId)
+				: s);
+		saveEntries();
+	}
+
+	/**
+	 * True if the event is already subscribed for the broadcaster on the given live session.
+	 */
+	boolean isSubscribed(String sessionId, String type, String broadcasterId) {
+		Subscription existing = subscriptions.get(key(type, broadcasterId));
+
+		if (existing == null || !existing.sessionId.equals(sessionId) || !liveSessions.contains(sessionId)) {
+			return false;
+		}
+
+		reusedCount.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Records a subscription created from the response to the create request.
+	 */
+	void recordCreated(String sessionId, String type, String broadcasterId, JSONObject response) {
+		updateCost(response);
+
+		JSONArray data = response.optJSONArray("data");
+		JSONObject created = data == null ? null : data.optJSONObject(0);
+
+		if (created == null || created.optString("id").isEmpty()) {
+			return;
+		}
+
+		Subscription subscription = new Subscription(created.optString("id"), sessionId, type, broadcasterId);
+		subscriptions.put(key(type, broadcasterId), subscription);
+		owned.put(subscription.id, subscription);
+		saveEntries();
+	}
+
+	private void updateCost(JSONObject response) {
+		if (response.has("total_cost")) {
+			totalCost = response.optInt("total_cost", totalCost);
+		}
+
+		if (response.has("max_total_cost")) {
+			maxTotalCost = response.optInt("max_total_cost", maxTotalCost);
+		}
+	}
+
+	/**
+	 * Lists every subscription in a single paginated pass and keeps the enabled ones on live
+	 * sessions. Deletes our own subscriptions that are disabled or on a session that has closed,
+	 * and any websocket subscription with a dead transport; other clients' subscriptions are left
+	 * alone. Completes with the number deleted. Subscriptions created while the listing runs are
+	 * left alone.
+	 */
+	public CompletableFuture<Integer> reconcile(String clientId, String bearerToken) {
+		String[] headers = { "Client-Id", clientId, "Authorization", "Bearer " + bearerToken };
+
+		return listFrom(null, headers, new ArrayList<>()).thenCompose(listed -> {
+			List<Subscription> orphans = new ArrayList<>();
+			Set<String> listedIds = new HashSet<>();
+
+			for (JSONObject entry : listed) {
+				Subscription subscription = readSubscription(entry);
+
+				if (subscription == null) {
+					continue;
+				}
+
+				listedIds.add(subscription.id);
+
+				// Session ids are unique to the connection, so anything on a live session is ours
+				boolean live = liveSessions.contains(subscription.sessionId);
+				boolean ours = live || owned.containsKey(subscription.id);
+				String status = entry.optString("status");
+
+				if (live && "enabled".equals(status)) {
+					subscriptions.put(key(subscription.type, subscription.broadcasterId), subscription);
+					owned.put(subscription.id, subscription);
+				} else if (ours || DEAD_TRANSPORT_STATUSES.contains(status)) {
+					orphans.add(subscription);
+				}
+			}
+
+			subscriptions.values().removeIf(s -> !liveSessions.contains(s.sessionId));
+
+			// Ours that Helix no longer lists are gone, unless created since the listing began
+			owned.values().removeIf(s -> !listedIds.contains(s.id) && !liveSessions.contains(s.sessionId));
+			saveEntries();
+
+			return deleteAll(orphans, headers);
+		});
+	}
+
+	private CompletableFuture<List<JSONObject>> listFrom(String cursor, String[] headers, List<JSONObject> listed) {
+		URI uri = URI.create(cursor == null ? SUBSCRIPTIONSURI : SUBSCRIPTIONSURI + "?after=" + cursor);
+
+		return http.get(uri, headers).thenCompose(response -> {
+			if (response.getStatusCode() != 200) {
+				throw new IllegalStateException("Unable to list subscriptions: " + response.getStatusCode()
+						+ " " + response.getBody());
+			}
+
+			JSONObject page = new JSONObject(response.getBody());
+			updateCost(page);
+
+			JSONArray data = page.optJSONArray("data");
+
+			if (data != null) {
+				for (int i = 0; i < data.length(); i++) {
+					listed.add(data.optJSONObject(i));
+				}
+			}
+
+			JSONObject pagination = page.optJSONObject("pagination");
+			String next = pagination == null ? "" : pagination.optString("cursor");
+
+			if (next.isEmpty() || data == null || data.length() == 0) {
+				return CompletableFuture.completedFuture(listed);
+			}
+
+			return listFrom(next, headers, listed);
+		});
+	}
+
+	/**
+	 * Only websocket subscriptions are ours to manage; anything else is skipped.
+	 */
+	private Subscription readSubscription(JSONObject entry) {
+		if (entry == null) {
+			return null;
+		}
+
+		JSONObject transport = entry.optJSONObject("transport");
+
+		if (transport == null || !"websocket".equals(transport.optString("method"))) {
+			return null;
+		}
+
+		JSONObject condition = entry.optJSONObject("condition");
+		String broadcasterId = condition == null ? "" : condition.optString("broadcaster_user_id");
+
+		return new Subscription(entry.optString("id"), transport.optString("session_id"),
+				entry.optString("type"), broadcasterId);
+	}
+
+	private CompletableFuture<Integer> deleteAll(List<Subscription> orphans, String[] headers) {
+		List<CompletableFuture<Boolean>> deletes = new ArrayList<>();
+
+		for (Subscription orphan : orphans) {
+			deletes.add(http.delete(URI.create(SUBSCRIPTIONSURI + "?id=" + orphan.id), headers)
+					.thenApply(response -> {
+						boolean gone = response.getStatusCode() == 204 || response.getStatusCode() == 404;
+
+						if (gone) {
+							owned.remove(orphan.id);
+						}
+
+						return gone;
+					})
+					.exceptionally(e -> {
+						e.printStackTrace();
+						return false;
+					}));
+		}
+
+		return CompletableFuture.allOf(deletes.toArray(new CompletableFuture<?>[0])).thenApply(ignored -> {
+			int deleted = (int) deletes.stream().filter(CompletableFuture::join).count();
+			deletedCount.addAndGet(deleted);
+			saveEntries();
+
+			if (deleted > 0) {
+				System.out.println("Deleted " + deleted + " orphaned EventSub subscriptions");
+			}
+
+			return deleted;
+		});
+	}
+
+	/**
+	 * Cost of every subscription as last reported by Helix, or -1 before the first response.
+	 */
+	public int getTotalCost() {
+		return totalCost;
+	}
+
+	/**
+	 * The max_total_cost Helix allows, or -1 before the first response.
+	 */
+	public int getMaxTotalCost() {
+		return maxTotalCost;
+	}
+
+	public long getReusedCount() {
+		return reusedCount.get();
+	}
+
+	public long getDeletedCount() {
+		return deletedCount.get();
+	}
+
+	int getSubscriptionCount() {
+		return subscriptions.size();
+	}
+
+	int getOwnedCount() {
+		return owned.size();
+	}
+
+	private synchronized void saveEntries() {
+		String content = owned.values().stream()
+				.map(s -> String.join("\t", s.sessionId, s.type, s.broadcasterId, s.id))
+				.collect(Collectors.joining("\n"));
+
+		super.writeToFile(content);
+	}
+
+	/**
+	 * Entries from a previous run name sessions that have since closed. They are never reused;
+	 * they only mark which subscriptions reconcile() may delete.
+	 */
+	private void loadEntries() {
+		if (filePath == null || !Files.exists(filePath)) {
+			return;
+		}
+
+		List<String> lines = super.readFromFile();
+
+		if (lines == null) {
+			return;
+		}
+
+		for (String line : lines) {
+			String[] fields = line.split("\t");
+
+			if (fields.length != 4) {
+				continue;
+			}
+
+			owned.put(fields[3], new Subscription(fields[3], fields[0], fields[1], fields[2]));
+		}
+	}
+}
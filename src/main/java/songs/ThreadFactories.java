@@ -0,0 +1,48 @@
+package songs;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Named thread factories. Virtual threads are looked up reflectively so the project still
+ * builds and runs on JDKs without them, where platform daemon threads are used instead.
+ */
+final class ThreadFactories {
+
+	private ThreadFactories() {}
+
+	static ThreadFactory daemon(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+
+		return r -> {
+			Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Virtual threads when the running JDK has them, otherwise daemon platform threads.
+	 */
+	static ThreadFactory virtualOrDaemon(String prefix) {
+		ThreadFactory virtual = virtual(prefix);
+		return virtual != null ? virtual : daemon(prefix);
+	}
+
+	static boolean isVirtualThreadSupported() {
+		return virtual("probe") != null;
+	}
+
+	private static ThreadFactory virtual(String prefix) {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+
+			builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 1L);
+			return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			// Not available on this JDK (or still a preview feature)
+			return null;
+		}
+	}
+}
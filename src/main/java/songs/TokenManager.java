@@ -7,8 +7,6 @@ import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URLDecoder;
 import java.net.URLEncoder;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -20,12 +18,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
-import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
@@ -42,13 +43,18 @@ import songs.CallbackServer.OAuthCallbackListener;
 
 public class TokenManager extends FileWriter implements OAuthCallbackListener {
 	private final CloseableHttpClient httpclient = HttpClientSingleton.getInstance();
+	AsyncHttpEngine http = AsyncHttpEngine.getShared();
 
 	private final Path filePath;
 	
-	//Access Token
-	private String bearerToken;
-	private String refreshToken;
-	private Long expiresAt;
+	//Access Token. Readers take the current snapshot without locking.
+	private final AtomicReference<TokenSnapshot> tokens = new AtomicReference<>(TokenSnapshot.EMPTY);
+	
+	//The one refresh that is currently running. Concurrent callers join it instead of starting their own.
+	private final AtomicReference<CompletableFuture<Boolean>> refreshInFlight = new AtomicReference<>();
+	
+	private ScheduledFuture<?> revalidationTask;
+	private ScheduledFuture<?> proactiveRefreshTask;
 	
 	//OAUTH flow
 	private CompletableFuture<Boolean> authFuture;
@@ -60,6 +66,56 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
 	private final String ENDPOINT = "https://id.twitch.tv/oauth2/";
 	
     private static final long EXPIRY_BUFFER_SECONDS = 300;
+    private static final long REFRESH_AHEAD_SECONDS = 60;
+    private static final long REVALIDATION_INTERVAL_SECONDS = 3600;
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "token-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    
+    // Refreshes get their own threads: callers on the shared blocking executor wait for them,
+    // and a refresh queued behind those same callers would never start
+    private static final int REFRESHER_THREADS = 2;
+    private static final ExecutorService REFRESHER = BlockingWorkExecutor.create("token-refresher", REFRESHER_THREADS);
+    
+    /**
+     * Immutable view of the tokens. A new snapshot is swapped in whenever anything changes.
+     */
+    private static final class TokenSnapshot {
+        static final TokenSnapshot EMPTY = new TokenSnapshot(null, null, null, 0);
+
+        final String bearerToken;
+        final String refreshToken;
+        final Long expiresAt;
+        
+        //The token is trusted without a network call until this epoch second.
+        final long validatedUntil;
+        
+        TokenSnapshot(String bearerToken, String refreshToken, Long expiresAt, long validatedUntil) {
+            this.bearerToken = bearerToken;
+            this.refreshToken = refreshToken;
+            this.expiresAt = expiresAt;
+            this.validatedUntil = validatedUntil;
+        }
+        
+        TokenSnapshot withValidatedUntil(long newValidatedUntil) {
+            return new TokenSnapshot(bearerToken, refreshToken, expiresAt, newValidatedUntil);
+        }
+        
+        boolean hasBearerToken() {
+            return bearerToken != null && !bearerToken.isEmpty();
+        }
+        
+        boolean isTrusted(long now) {
+            return hasBearerToken() && now < validatedUntil;
+        }
+        
+        boolean isUsable(long now) {
+            return hasBearerToken() && validatedUntil > 0 && expiresAt != null && now < expiresAt;
+        }
+    }
 
     public TokenManager(String fileName, ClientInfo clientInfo, CallbackServer callbackServer) {
         super(fileName);
@@ -83,43 +139,44 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
     }
     
     private synchronized void setTokens(String newBearer, Long newExpiresAt, String newRefreshToken) {
-        this.bearerToken = newBearer;
-        this.expiresAt = newExpiresAt;
-        this.refreshToken = newRefreshToken;
+        tokens.set(new TokenSnapshot(newBearer, newRefreshToken, newExpiresAt, 0));
 
         String content = String.join("\n", 
-            bearerToken != null ? bearerToken : "", 
-            refreshToken != null ? refreshToken : "", 
-            String.valueOf(expiresAt != null ? expiresAt : -1)
+            newBearer != null ? newBearer : "", 
+            newRefreshToken != null ? newRefreshToken : "", 
+            String.valueOf(newExpiresAt != null ? newExpiresAt : -1)
         );
 
         super.writeToFile(content);
+        scheduleProactiveRefresh(newExpiresAt);
     }
     
     private void readTokenFile() throws IOException {
         List<String> content = super.readFromFile();
         
         if (content.size() < 3) {
-            this.bearerToken = null;
-            this.refreshToken = null;
-            this.expiresAt = null;
+            tokens.set(TokenSnapshot.EMPTY);
 
             return;
         }
 
-        this.bearerToken = content.get(0).isEmpty() ? null : content.get(0);
-        this.refreshToken = content.get(1).isEmpty() ? null : content.get(1);
+        String newBearerToken = content.get(0).isEmpty() ? null : content.get(0);
+        String newRefreshToken = content.get(1).isEmpty() ? null : content.get(1);
+        Long newExpiresAt;
         
         try {
-            this.expiresAt = Long.parseLong(content.get(2));
+            newExpiresAt = Long.parseLong(content.get(2));
 
-            if (this.expiresAt < 0) {
-                this.expiresAt = null;
+            if (newExpiresAt < 0) {
+                newExpiresAt = null;
             }
 
         } catch (NumberFormatException e) {
-            this.expiresAt = null;
+            newExpiresAt = null;
         }
+        
+        tokens.set(new TokenSnapshot(newBearerToken, newRefreshToken, newExpiresAt, 0));
+        scheduleProactiveRefresh(newExpiresAt);
     }
 
     private void loadTokens() {
@@ -132,9 +189,7 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
         } catch (IOException e) {
             System.err.println("Error reading token file: " + e.getMessage());
 
-            this.bearerToken = null;
-            this.refreshToken = null;
-            this.expiresAt = null;
+            tokens.set(TokenSnapshot.EMPTY);
         }
     }
 
@@ -144,31 +199,37 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
                 return false;
             }
             
-            if (bearerToken == null || bearerToken.isEmpty()) {
+            TokenSnapshot current = tokens.get();
+            
+            if (!current.hasBearerToken()) {
                 return false;
             }
             
-            if (expiresAt == null) {
+            if (current.expiresAt == null) {
                 return false;
             }
             
             Long currentEpochSeconds = Instant.now().getEpochSecond();
-            if (currentEpochSeconds >= (expiresAt - EXPIRY_BUFFER_SECONDS)) {
+            if (currentEpochSeconds >= (current.expiresAt - EXPIRY_BUFFER_SECONDS)) {
                 return false;
             }
             
             URI uri = new URI(ENDPOINT + "validate");
             HttpGet get = new HttpGet(uri);
-            get.addHeader("Authorization", "OAuth " + bearerToken);
+            get.addHeader("Authorization", "OAuth " + current.bearerToken);
 
-            CloseableHttpResponse response = httpclient.execute(get);
-            JSONObject responseObject = new JSONObject(EntityUtils.toString(response.getEntity()));
+            JSONObject responseObject = HttpResponses.execute(httpclient, get,
+                response -> new JSONObject(EntityUtils.toString(response.getEntity())));
 
             if (responseObject.has("status")) {
                 int status = responseObject.optInt("status", 200);
-                return status == 200;
+                
+                if (status != 200) {
+                    return false;
+                }
             }
 
+            markValidated(current);
             return true;
 
         } catch (Exception e) {
@@ -196,7 +257,7 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
                 "client_id=" + URLEncoder.encode(clientInfo.getClientID(), StandardCharsets.UTF_8),
                 "client_secret=" + URLEncoder.encode(clientInfo.getClientSecret(), StandardCharsets.UTF_8),
                 "grant_type=refresh_token",
-                "refresh_token=" + URLEncoder.encode(refreshToken, StandardCharsets.UTF_8)
+                "refresh_token=" + URLEncoder.encode(tokens.get().refreshToken, StandardCharsets.UTF_8)
             );
             
             String body = String.join("&", params);
@@ -204,8 +265,8 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
             post.setEntity(new StringEntity(body, StandardCharsets.UTF_8));
             
             Long requestTime = Instant.now().getEpochSecond();
-            CloseableHttpResponse httpresponse = httpclient.execute(post);
-            JSONObject response = new JSONObject(EntityUtils.toString(httpresponse.getEntity()));
+            JSONObject response = HttpResponses.execute(httpclient, post,
+                httpresponse -> new JSONObject(EntityUtils.toString(httpresponse.getEntity())));
 
             return handleTokenResponse(response, requestTime);
 
@@ -222,19 +283,159 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
     }
     
     private boolean doesRefreshTokenExist() {
+        String refreshToken = tokens.get().refreshToken;
         return refreshToken != null && !refreshToken.isBlank();
     }
     
 
+    /**
+     * Returns the bearer token without blocking whenever the current one can still be used.
+     * Only a missing, expired or rejected token makes the caller wait, and then it joins the
+     * single refresh that is already in flight.
+     */
     public String getBearerToken() {
-        if (updateTokens()) {
-            return bearerToken;
+        TokenSnapshot current = tokens.get();
+        long now = Instant.now().getEpochSecond();
+        
+        if (current.isTrusted(now)) {
+            return current.bearerToken;
+        }
+        
+        if (current.isUsable(now)) {
+            // Inside the expiry buffer but not expired yet, so refresh in the background
+            refreshAsync();
+            return current.bearerToken;
         }
 
-        return bearerToken;
+        try {
+            refreshAsync().join();
+        } catch (Exception e) {
+            System.err.println("Error waiting for token refresh: " + e.getMessage());
+        }
+
+        return tokens.get().bearerToken;
+    }
+    
+    /**
+     * The bearer token without parking the calling thread: completed right away whenever
+     * getBearerToken() would not block, and otherwise once the shared refresh finishes.
+     */
+    public CompletableFuture<String> getBearerTokenAsync() {
+        TokenSnapshot current = tokens.get();
+        long now = Instant.now().getEpochSecond();
+        
+        if (current.isTrusted(now)) {
+            return CompletableFuture.completedFuture(current.bearerToken);
+        }
+        
+        if (current.isUsable(now)) {
+            refreshAsync();
+            return CompletableFuture.completedFuture(current.bearerToken);
+        }
+        
+        return refreshAsync().thenApply(refreshed -> tokens.get().bearerToken);
+    }
+    
+    /**
+     * Starts a refresh unless one is already running, and returns the future every caller shares.
+     */
+    public CompletableFuture<Boolean> refreshAsync() {
+        return runSingleFlight(this::performUpdate);
+    }
+    
+    private CompletableFuture<Boolean> runSingleFlight(Supplier<Boolean> work) {
+        while (true) {
+            CompletableFuture<Boolean> existing = refreshInFlight.get();
+            
+            if (existing != null) {
+                return existing;
+            }
+            
+            CompletableFuture<Boolean> created = new CompletableFuture<>();
+            
+            if (!refreshInFlight.compareAndSet(null, created)) {
+                continue;
+            }
+            
+            REFRESHER.execute(() -> {
+                boolean result = false;
+                
+                try {
+                    result = work.get();
+                } catch (Exception e) {
+                    System.err.println("Error updating tokens: " + e.getMessage());
+                } finally {
+                    refreshInFlight.compareAndSet(created, null);
+                    created.complete(result);
+                }
+            });
+            
+            return created;
+        }
+    }
+    
+    private void markValidated(TokenSnapshot validated) {
+        if (validated.expiresAt == null) {
+            return;
+        }
+        
+        long newValidatedUntil = validated.expiresAt - EXPIRY_BUFFER_SECONDS;
+        
+        // Only mark the snapshot that was validated; a newer token swapped in meanwhile keeps its own state
+        tokens.compareAndSet(validated, validated.withValidatedUntil(newValidatedUntil));
+        scheduleRevalidation();
+    }
+    
+    /**
+     * Drops the cached validation so the next getBearerToken() checks the token with Twitch again.
+     * Called when Helix rejects the token with a 401.
+     */
+    public void invalidateValidation() {
+        tokens.updateAndGet(current -> current.withValidatedUntil(0));
+    }
+    
+    private synchronized void scheduleRevalidation() {
+        if (revalidationTask != null) {
+            return;
+        }
+        
+        // The scheduler only hands the /validate call over, so a slow one cannot hold up the proactive refresh
+        revalidationTask = SCHEDULER.scheduleAtFixedRate(() -> REFRESHER.execute(this::revalidate), 
+                REVALIDATION_INTERVAL_SECONDS, REVALIDATION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+    
+    private void revalidate() {
+        if (!tokens.get().hasBearerToken()) {
+            return;
+        }
+        
+        if (!isTokenValid()) {
+            System.out.println("Background validation rejected the token");
+            invalidateValidation();
+        }
+    }
+    
+    private synchronized void scheduleProactiveRefresh(Long newExpiresAt) {
+        if (proactiveRefreshTask != null) {
+            proactiveRefreshTask.cancel(false);
+            proactiveRefreshTask = null;
+        }
+        
+        if (newExpiresAt == null) {
+            return;
+        }
+        
+        long delay = newExpiresAt - EXPIRY_BUFFER_SECONDS - REFRESH_AHEAD_SECONDS - Instant.now().getEpochSecond();
+        
+        if (delay <= 0) {
+            return;
+        }
+        
+        proactiveRefreshTask = SCHEDULER.schedule(() -> runSingleFlight(this::refreshBearerToken), 
+                delay, TimeUnit.SECONDS);
     }
     
-    private boolean exchangeCodeForToken(String code) throws Exception {
+    private CompletableFuture<Boolean> exchangeCodeForTokenAsync(String code) {
         String url = "https://id.twitch.tv/oauth2/token" +
                 "?client_id=" + URLEncoder.encode(clientInfo.getClientID(), StandardCharsets.UTF_8) +
                 "&client_secret=" + URLEncoder.encode(clientInfo.getClientSecret(), StandardCharsets.UTF_8) +
@@ -244,20 +445,17 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
 
         Long requestTime = Instant.now().getEpochSecond();
 
-        HttpClient client = HttpClient.newHttpClient();
-        HttpRequest req = HttpRequest.newBuilder()
-                .uri(URI.create(url))
-                .POST(HttpRequest.BodyPublishers.noBody())
-                .build();
-
-        HttpResponse<String> res = client.send(req, HttpResponse.BodyHandlers.ofString());
-
-        if (res.statusCode() != 200) {
-            throw new Exception("Token exchange failed with status: " + res.statusCode() + " - " + res.body());
-        }
+        return http.post(URI.create(url), null).thenApply(res -> {
+            if (res.getStatusCode() != 200) {
+                throw new IllegalStateException("Token exchange failed with status: " + res.getStatusCode() + " - " + res.getBody());
+            }
 
-        JSONObject body = new JSONObject(res.body());
-        return handleTokenResponse(body, requestTime);
+            try {
+                return handleTokenResponse(new JSONObject(res.getBody()), requestTime);
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        });
     }
 
   
@@ -319,12 +517,20 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
         return false;
     }
 
-    public synchronized boolean updateTokens() {
+    public boolean updateTokens() {
+        return refreshAsync().join();
+    }
+    
+    private boolean performUpdate() {
         try {
             if (isClientInformationBlank()) {
                 System.err.println("Client information is not configured");
                 return false;
             }
+            
+            if (tokens.get().isTrusted(Instant.now().getEpochSecond())) {
+                return true;
+            }
     
             if (isTokenValid()) {
                 return true;
@@ -374,6 +580,7 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
         String newRefreshToken = response.getString("refresh_token");
         
         setTokens(newBearerToken, newExpiresAt, newRefreshToken);
+        markValidated(tokens.get());
         
         System.out.println("Tokens updated successfully. Expires at: " + 
             java.time.Instant.ofEpochSecond(newExpiresAt));
@@ -390,10 +597,17 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
                 throw new Exception("No authorization code received");
             }
             
-            exchangeCodeForToken(code);
+            // Completes the auth future without holding the callback server's thread
+            exchangeCodeForTokenAsync(code).whenComplete((exchanged, error) -> {
+                if (error != null) {
+                    System.err.println("Error exchanging authorization code: " + error.getMessage());
+                    authFuture.complete(false);
+                    return;
+                }
 
-            authFuture.complete(true);
-            System.out.println("Successfully authenticated user");
+                authFuture.complete(exchanged);
+                System.out.println("Successfully authenticated user");
+            });
         } catch (Exception e) {
             System.err.println("Error processing authorization code: " + e.getMessage());
             e.printStackTrace();
@@ -414,11 +628,12 @@ public class TokenManager extends FileWriter implements OAuthCallbackListener {
     
     
     public synchronized void clearTokens() {
+        invalidateValidation();
         setTokens(null, -1L, null);
         System.out.println("Tokens cleared");
     }
 
     public boolean hasTokens() {
-        return bearerToken != null && !bearerToken.isEmpty();
+        return tokens.get().hasBearerToken();
     }
 }
@@ -3,19 +3,19 @@ package songs;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
 import org.apache.http.HttpResponse;
+import org.apache.http.StatusLine;
 import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.utils.URIBuilder;
-import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.json.JSONArray;
 import org.json.JSONObject;
 
-public class TwitchAPI extends WebClient {
+public class TwitchAPI extends EventSubClient {
 	
 	/** [[VALUES TO CHANGE]] **/
 	
@@ -27,54 +27,87 @@ public class TwitchAPI extends WebClient {
 	//DO NOT CHANGE THE VALUES BELOW
 	
 	final static CloseableHttpClient httpclient = HttpClientSingleton.getInstance();
+	AsyncHttpEngine http = AsyncHttpEngine.getShared();
     private static final int PORT = 8060;
+    
+    // The Helix lookups behind the prefetch are blocking calls
+    private static final ExecutorService PREFETCH_EXECUTOR = BlockingWorkExecutor.getShared();
 
 
 	private String startTime = null;
-	private int streamerID = -1;
+	private volatile int streamerID = -1;
+	
+	// Set when this streamer shares pooled EventSub sessions instead of owning a socket
+	private EventSubSessionManager sessionManager = null;
+	
+	private BroadcasterIdCache idCache = null;
 	
-	private String sessionId = "";
+	// Started by connect() so the id and token are ready by the time the session is welcomed
+	private volatile CompletableFuture<Void> prefetched = null;
 	
 	private static String redirectUri = "http://localhost:" + PORT + "/callback";
 	
 //	private Instant expirationTime = null;
 	
-    private final List<StreamObserver> observers = new ArrayList<>();
+    // Observers run on their own threads so the websocket thread only enqueues
+    private final StreamEventBus eventBus = new StreamEventBus();
 
-	private static final String TOKENFILENAME = "Tokens.txt";
-	private final static String TWITCHURI = "wss://eventsub.wss.twitch.tv/ws";
+	static final String TOKENFILENAME = "Tokens.txt";
+	final static String TWITCHURI = "wss://eventsub.wss.twitch.tv/ws";
 	private final static String HELIXURI = "https://api.twitch.tv/helix";
+	private final static String SUBSCRIPTIONSURI = HELIXURI + "/eventsub/subscriptions";
     
     public void addObserver(StreamObserver observer) {
     	if(isStreamerLive()) {
     		observer.onStreamStart(startTime);
     	}
     	
-        observers.add(observer);
+        eventBus.subscribe(observer);
     }
 
     public void removeObserver(StreamObserver observer) {
-        observers.remove(observer);
+        eventBus.unsubscribe(observer);
     }
 
     private void notifyStreamWentLive() {
-        for (StreamObserver obs : observers) {
-            obs.onStreamStart(startTime);
-        }
+    	String wentLiveAt = startTime;
+        eventBus.publish(obs -> obs.onStreamStart(wentLiveAt));
     }
 
     private void notifyStreamEnded() {
     	startTime = null;
-        for (StreamObserver obs : observers) {
-            obs.onStreamEnd();
-        }
+        eventBus.publish(StreamObserver::onStreamEnd);
+    }
+    
+    /**
+     * Queue depth, lag and dropped events for every observer.
+     */
+    Map<StreamObserver, StreamEventBus.ObserverStats> getObserverStats() {
+    	return eventBus.getAllStats();
     }
 	
 	public TwitchAPI(String streamerName) throws URISyntaxException, IOException {
 		this(redirectUri, streamerName, new ClientInfo());
 	}
 
+	public TwitchAPI(String streamerName, BroadcasterIdCache idCache) throws URISyntaxException, IOException {
+		this(redirectUri, streamerName, new ClientInfo(), idCache);
+	}
+
 	public TwitchAPI(String redirectUri, String streamerName, ClientInfo clientInfo) throws URISyntaxException, IOException {
+		this(redirectUri, streamerName, clientInfo, null);
+	}
+
+	public TwitchAPI(String streamerName, BroadcasterIdCache idCache, SubscriptionRegistry registry) throws URISyntaxException, IOException {
+		this(redirectUri, streamerName, new ClientInfo(), idCache, registry);
+	}
+
+	public TwitchAPI(String redirectUri, String streamerName, ClientInfo clientInfo, BroadcasterIdCache idCache) throws URISyntaxException, IOException {
+		this(redirectUri, streamerName, clientInfo, idCache, null);
+	}
+
+	public TwitchAPI(String redirectUri, String streamerName, ClientInfo clientInfo, BroadcasterIdCache idCache, 
+			SubscriptionRegistry registry) throws URISyntaxException, IOException {
 		super(new URI(TWITCHURI), TOKENFILENAME, clientInfo);
 		
 		if (streamerName == null || streamerName.isBlank()) {
@@ -82,14 +115,161 @@ public class TwitchAPI extends WebClient {
 		}
 		
 		broadcaster = streamerName;
+		this.idCache = idCache;
+		this.registry = registry;
 		
 //			startCallbackServer();
 //	        fetchAppToken();
 //	        subscribe("stream.online");
 //	        subscribe("stream.offline");
 	}
+	
+	public TwitchAPI(String streamerName, EventSubSessionManager sessionManager) throws URISyntaxException, IOException {
+		super(new URI(TWITCHURI), sessionManager.getTokenManager(), sessionManager.getClientInfo(), 
+				sessionManager.getCallbackServer());
+		
+		if (streamerName == null || streamerName.isBlank()) {
+			throw new IllegalArgumentException("The broadcaster must be supplied");
+		}
+		
+		broadcaster = streamerName;
+		this.sessionManager = sessionManager;
+		this.idCache = sessionManager.getIdCache();
+		this.registry = sessionManager.getSubscriptionRegistry();
+	}
+	
+	@Override
+	public void connect() {
+		if (sessionManager == null) {
+			// The lookups overlap the websocket handshake instead of following the welcome
+			prefetch();
+			super.connect();
+			return;
+		}
+		
+		// registerAll resolves ids before any pooled session is opened
+		sessionManager.register(this);
+	}
+	
+	/**
+	 * Validates the token and resolves the broadcaster id in the background. Runs once;
+	 * later calls return the same future, which never completes exceptionally.
+	 */
+	synchronized CompletableFuture<Void> prefetch() {
+		if (prefetched == null) {
+			// Chained on the refresh rather than joining it, so a prefetch never holds a shared
+			// worker while the token refresh it waits for is still queued
+			prefetched = super.getBearerTokenAsync().thenRunAsync(() -> {
+				resolveStreamerID();
+			}, PREFETCH_EXECUTOR).exceptionally(e -> {
+				e.printStackTrace();
+				return null;
+			});
+		}
+		
+		return prefetched;
+	}
+	
+	@Override
+	public void close() {
+		try {
+			if (sessionManager == null) {
+				super.close();
+			} else {
+				sessionManager.unregister(this);
+			}
+		} finally {
+			// Observer threads finish what is queued, then stop
+			eventBus.close();
+		}
+	}
+	
+	CompletableFuture<Integer> resolveStreamerIDAsync() {
+		if (streamerID != -1) {
+			return CompletableFuture.completedFuture(streamerID);
+		}
+		
+		if (sessionManager == null || (idCache != null && idCache.hasTwitchId(broadcaster))) {
+			return CompletableFuture.completedFuture(getStreamerID());
+		}
+		
+		return sessionManager.getHelixBatcher().lookupUserId(broadcaster).thenApply(id -> {
+			if (id != -1) {
+				streamerID = id;
+				
+				if (idCache != null) {
+					idCache.getTwitchId(broadcaster, () -> id);
+				}
+			}
+			
+			return id;
+		});
+	}
+	
+	private int getBatchedStreamerID() {
+		try {
+			return sessionManager.getHelixBatcher().lookupUserId(broadcaster).join();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		return -1;
+	}
+	
+	private boolean isBatchedStreamerLive() {
+		try {
+			String startedAt = sessionManager.getHelixBatcher().lookupStartTime(broadcaster).join();
+			
+			if (startedAt == null) {
+				return false;
+			}
+			
+			startTime = startedAt;
+			return true;
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		
+		return false;
+	}
+	
+	int resolveStreamerID() {
+		if (streamerID == -1) {
+			getStreamerID();
+		}
+		
+		return streamerID;
+	}
+	
+	String getBroadcaster() {
+		return broadcaster;
+	}
 
 	private int getStreamerID() {
+		if (idCache == null) {
+			return lookupStreamerID();
+		}
+		
+		int cachedID = idCache.getTwitchId(broadcaster, this::lookupStreamerID);
+		
+		if (cachedID != -1) {
+			streamerID = cachedID;
+		}
+		
+		return cachedID;
+	}
+	
+	private int lookupStreamerID() {
+		if (sessionManager != null) {
+			int batchedID = getBatchedStreamerID();
+			
+			if (batchedID != -1) {
+				streamerID = batchedID;
+			}
+			
+			return batchedID;
+		}
+		
 		try {
 			URI uri = new URIBuilder(HELIXURI + "/users")
 			                    .addParameter("login", broadcaster)
@@ -99,9 +279,10 @@ public class TwitchAPI extends WebClient {
 			get.setHeader("Client-Id", clientInfo.getClientID());
 			get.setHeader("Authorization", "Bearer " + super.getBearerToken());
 			
-			HttpResponse response = httpclient.execute(get);
-
-			JSONObject responseObject = new JSONObject(EntityUtils.toString(response.getEntity()));
+			JSONObject responseObject = HttpResponses.execute(httpclient, get, response -> {
+				checkAuthorization(response);
+				return new JSONObject(EntityUtils.toString(response.getEntity()));
+			});
 			
 			if (responseObject.has("error")) {
 				throw new Exception(responseObject.optString("error") + ", "
@@ -143,6 +324,21 @@ public class TwitchAPI extends WebClient {
 		return -1;
 	}
 
+	private void checkAuthorization(HttpResponse response) {
+		StatusLine status = response.getStatusLine();
+		
+		if (status != null) {
+			checkAuthorization(status.getStatusCode());
+		}
+	}
+	
+	private void checkAuthorization(int statusCode) {
+		// Helix rejected the token, so the cached validation can no longer be trusted
+		if (statusCode == 401) {
+			super.invalidateBearerToken();
+		}
+	}
+
 	private JSONObject getStreamerDataFromStreamers(JSONArray streamers) {
 		
 		if(streamerID == -1) {
@@ -169,6 +365,10 @@ public class TwitchAPI extends WebClient {
 	}
 
 	public boolean isStreamerLive() {
+		if (sessionManager != null) {
+			return isBatchedStreamerLive();
+		}
+		
 		try {
 			// TODO: Call the twitch Kraken/Streamer endpoint.
 			// NOTE: JSON will be empty if the streamer is not live.
@@ -184,9 +384,10 @@ public class TwitchAPI extends WebClient {
 			get.setHeader("Client-Id", clientInfo.getClientID());
 			get.setHeader("Authorization", "Bearer " + super.getBearerToken()); 
 
-			HttpResponse response = httpclient.execute(get);
-
-			JSONObject responseObject = new JSONObject(EntityUtils.toString(response.getEntity()));
+			JSONObject responseObject = HttpResponses.execute(httpclient, get, response -> {
+				checkAuthorization(response);
+				return new JSONObject(EntityUtils.toString(response.getEntity()));
+			});
 
 			if (responseObject.has("error")) {
 				if (responseObject.has("status") && responseObject.optInt("status") == 400) {
@@ -236,53 +437,6 @@ public class TwitchAPI extends WebClient {
 		return false;
 	}
 
-	private boolean parseForID(JSONObject response) {
-		JSONObject payload = response.optJSONObject("payload");
-
-		if (payload == null) {
-			return false;
-		}
-
-		JSONObject session = payload.optJSONObject("session");
-
-		if (session == null) {
-			return false;
-		}
-
-		sessionId = session.optString("id");
-		
-		return true;
-	}
-	
-	private boolean handleReconnect(JSONObject reconnectResponse) {
-
-		//TODO: Fill this information out
-			
-		JSONObject payload = reconnectResponse.optJSONObject("payload");
-		if (payload == null || payload.isEmpty()) {
-			throw new IllegalArgumentException();
-		}
-
-		JSONObject session = payload.optJSONObject("session");
-		if (session == null || session.isEmpty()) {
-			throw new IllegalArgumentException();
-		}
-
-		String reconnectUrl = session.optString("reconnect_url");
-		if (reconnectUrl != null && !reconnectUrl.isEmpty()) {
-			System.out.println("Reconnecting to: " + reconnectUrl);
-			try {
-				 URI reconnectUri = new URI(reconnectUrl);
-				 
-		        super.updateURI(reconnectUri);
-			} catch (Exception e) {
-				e.printStackTrace();
-			}
-		}
-		
-		return true;
-	}
-	
 	private boolean confirmSubscription(JSONObject response, String event) {
 		if (!response.has("data")) {
 			return false;
@@ -318,15 +472,24 @@ public class TwitchAPI extends WebClient {
 		return false;
 	}
 	
-	private boolean subscribeToEvent(String event) {
-		try {
-			if(streamerID == -1) {
-				getStreamerID();
+	private CompletableFuture<Boolean> subscribeToEvent(String event, String sessionId) {
+		CompletableFuture<Void> ready = prefetched != null ? prefetched : CompletableFuture.completedFuture(null);
+		
+		return ready.thenCompose(ignored -> resolveStreamerIDAsync()).thenCompose(id -> {
+			if (id == -1) {
+				throw new IllegalStateException("Unable to resolve the broadcaster id for " + broadcaster);
 			}
-			// Construct the subscription message for stream.online event
-
+			
+			String broadcasterId = Integer.toString(id);
+			
+			if (registry != null && registry.isSubscribed(sessionId, event, broadcasterId)) {
+				System.out.println("Reusing the " + event + " subscription for " + broadcaster);
+				return CompletableFuture.completedFuture(true);
+			}
+			
+			// Construct the subscription message for the event
 			JSONObject condition = new JSONObject();
-			condition.put("broadcaster_user_id", Integer.toString(streamerID)); 
+			condition.put("broadcaster_user_id", broadcasterId); 
 			
 			JSONObject transport = new JSONObject();
 			transport.put("method", "websocket");
@@ -338,88 +501,59 @@ public class TwitchAPI extends WebClient {
 			eventSub.put("type", event);
 			eventSub.put("version", "1");
 
-			// Send the subscription message to Twitch
-			// Post to https://api.twitch.tv/helix/eventsub/subscriptions
-			// session_id
-			// type
-			// version
-			// condition
-			// transport
-
-			HttpPost post = new HttpPost("https://api.twitch.tv/helix/eventsub/subscriptions");
-
-			post.setHeader("Content-type", "application/json");
-			post.setHeader("Client-Id", clientInfo.getClientID());
-			post.setHeader("Authorization", "Bearer " + super.getBearerToken());
-
-			StringEntity entity = new StringEntity(eventSub.toString());
-			post.setEntity(entity);
-
-			HttpResponse response = httpclient.execute(post);
+			// Send the subscription message to Twitch, waiting on a refresh without blocking a thread
+			return super.getBearerTokenAsync().thenCompose(token -> http.post(URI.create(SUBSCRIPTIONSURI),
+					eventSub.toString(),
+					"Content-type", "application/json",
+					"Client-Id", clientInfo.getClientID(),
+					"Authorization", "Bearer " + token)).thenApply(response -> {
+				checkAuthorization(response.getStatusCode());
 
-			boolean success = confirmSubscription(
-					new JSONObject(EntityUtils.toString(response.getEntity())), event);
+				JSONObject body = new JSONObject(response.getBody());
+				boolean success = confirmSubscription(body, event);
 
-			if (!success) {
-				throw new Exception("Server declined to subscribe to event");
-			}
-			
-			System.out.println("Subscribed to event " + event);
-		} catch (Exception e) {
+				if (!success) {
+					throw new IllegalStateException("Server declined to subscribe to event " + event);
+				}
+				
+				if (registry != null) {
+					registry.recordCreated(sessionId, event, broadcasterId, body);
+				}
+				
+				return true;
+			});
+		}).exceptionally(e -> {
 			e.printStackTrace();
-		}
-
-		return false;
+			return false;
+		});
 	}
 	
+	CompletableFuture<Boolean> subscribeToSession(String sessionId) {
+		return subscribeToSession(sessionId, getSubscriptionPipeline());
+	}
 	
-	private boolean handleWelcome(JSONObject jsonMessage) {
-		boolean parsedID = parseForID(jsonMessage);
+	/**
+	 * Subscribes to stream.online and stream.offline on the session through the session's pipeline.
+	 * Both requests run concurrently with stream.online queued first, and neither blocks the
+	 * calling websocket thread.
+	 */
+	CompletableFuture<Boolean> subscribeToSession(String sessionId, SubscriptionPipeline pipeline) {
+		CompletableFuture<Boolean> subscribedOnline = pipeline.submit(broadcaster + " stream.online",
+				SubscriptionPipeline.PRIORITY_ONLINE, () -> subscribeToEvent("stream.online", sessionId));
+		CompletableFuture<Boolean> subscribedOffline = pipeline.submit(broadcaster + " stream.offline",
+				SubscriptionPipeline.PRIORITY_OFFLINE, () -> subscribeToEvent("stream.offline", sessionId));
 		
-		if(parsedID == false) {
-			return false;
-		}
-
-		boolean subscribedOnline = subscribeToEvent("stream.online");
-		boolean subscribedOffline = subscribeToEvent("stream.offline");
-		
-		return subscribedOnline && subscribedOffline;
+		return subscribedOnline.thenCombine(subscribedOffline, (online, offline) -> online && offline);
 	}
 	
 	@Override
-	public void onMessage(String message) {
-		JSONObject jsonMessage = new JSONObject(message);
-
-		JSONObject metadata = jsonMessage.optJSONObject("metadata");
-
-		if (metadata == null || metadata.isEmpty()) {
-			return;
-		}
-		// Check for "session_welcome" message type
-		String message_type = metadata.optString("message_type");
-
-		// Just a message to keep the connection alive
-		if (message_type.equalsIgnoreCase("session_keepalive")) {
-			return;
-		}
-
-		if (message_type.equalsIgnoreCase("session_reconnect")) {
-			handleReconnect(jsonMessage);
-			return;
-		}
-
-		System.out.println("Received: " + message);
-
-		// Parse the message to extract the session ID
-		if (message_type.equalsIgnoreCase("session_welcome")) {
-			handleWelcome(jsonMessage);
-		}
-
-		JSONObject payload = jsonMessage.optJSONObject("payload");
-		if (payload == null || payload.isEmpty()) {
-			return;
-		}
-
+	protected boolean onWelcome(String sessionId) {
+		reconcileAfter(subscribeToSession(sessionId));
+		return true;
+	}
+	
+	@Override
+	protected void onNotification(JSONObject payload) {
 		JSONObject subscription = payload.optJSONObject("subscription");
 		if (subscription == null || subscription.isEmpty()) {
 			return;
@@ -435,7 +569,12 @@ public class TwitchAPI extends WebClient {
 		
 		if (type.equalsIgnoreCase("stream.online")) {
 			
-			startTime = createdAt;
+			// The event's started_at is what /streams reports after a restart, so the songlist
+			// journal is keyed the same way on both paths; created_at is when the subscription was made
+			JSONObject event = payload.optJSONObject("event");
+			String startedAt = event == null ? "" : event.optString("started_at");
+			
+			startTime = startedAt.isEmpty() ? createdAt : startedAt;
 			notifyStreamWentLive();
 			
 		}
@@ -1,6 +1,7 @@
 package songs;
 
 import java.net.URI;
+import java.util.concurrent.CompletableFuture;
 
 import org.java_websocket.client.WebSocketClient;
 import org.java_websocket.handshake.ServerHandshake;
@@ -12,7 +13,10 @@ public class WebClient {
 
 	private final TokenManager tokenManager;
 	
-	private WebSocketClient client;
+	private volatile WebSocketClient client;
+	
+	// Second socket opened next to client during a handover, until it is promoted
+	private WebSocketClient replacement;
 	
 	public WebClient(URI serverURI, String tokenFileName) {
 		this(serverURI, tokenFileName, new ClientInfo());	
@@ -23,9 +27,13 @@ public class WebClient {
 	}
 	
 	public WebClient(URI serverURI, String tokenFileName, ClientInfo clientInfo, CallbackServer callbackServer) {
-		if(tokenFileName == null || tokenFileName.isBlank()) { 
-            throw new IllegalArgumentException(); 
-        }
+		this(serverURI, createTokenManager(tokenFileName, clientInfo, callbackServer), clientInfo, callbackServer);
+	}
+	
+	public WebClient(URI serverURI, TokenManager tokenManager, ClientInfo clientInfo, CallbackServer callbackServer) {
+		if(tokenManager == null) {
+			throw new IllegalArgumentException("TokenManager can not be null");
+		}
 		
 		if(clientInfo == null) {
 			throw new IllegalArgumentException("ClientInfo can not be null");
@@ -34,10 +42,22 @@ public class WebClient {
 		this.clientInfo = clientInfo;
 		this.callbackServer = callbackServer;
 		
-		tokenManager = new TokenManager(tokenFileName, clientInfo, callbackServer);
+		this.tokenManager = tokenManager;
         this.client = createWebSocketClient(serverURI);
 	}
 	
+	private static TokenManager createTokenManager(String tokenFileName, ClientInfo clientInfo, CallbackServer callbackServer) {
+		if(tokenFileName == null || tokenFileName.isBlank()) { 
+            throw new IllegalArgumentException(); 
+        }
+		
+		if(clientInfo == null) {
+			throw new IllegalArgumentException("ClientInfo can not be null");
+		}
+		
+		return new TokenManager(tokenFileName, clientInfo, callbackServer);
+	}
+	
 	 private WebSocketClient createWebSocketClient(URI serverURI) {
         return new WebSocketClient(serverURI) {
             
@@ -53,7 +73,7 @@ public class WebClient {
             
             @Override
             public void onClose(int code, String reason, boolean remote) {
-                WebClient.this.onClose(code, reason, remote);
+                WebClient.this.handleSocketClosed(this, code, reason, remote);
             }
             
             @Override
@@ -63,10 +83,64 @@ public class WebClient {
         };
     }
 	 
-	protected void updateURI(URI newUri) throws Exception {
-	    client.close();
-	    client = createWebSocketClient(newUri);
-	    client.connectBlocking();
+	
+	/**
+	 * Opens a second socket to newUri without touching the current one. Messages from both
+	 * reach onMessage until promoteReplacement() makes the new socket current and closes the old.
+	 */
+	protected void openReplacement(URI newUri) {
+		WebSocketClient opened = createWebSocketClient(newUri);
+		WebSocketClient abandoned;
+		
+		synchronized (this) {
+			abandoned = replacement;
+			replacement = opened;
+		}
+		
+		if (abandoned != null) {
+			abandoned.close();
+		}
+		
+		opened.connect();
+	}
+	
+	/**
+	 * Swaps in the socket from openReplacement() and closes the previous one.
+	 * Returns false if there was no replacement to promote.
+	 */
+	protected boolean promoteReplacement() {
+		WebSocketClient previous;
+		
+		synchronized (this) {
+			if (replacement == null) {
+				return false;
+			}
+			
+			previous = client;
+			client = replacement;
+			replacement = null;
+		}
+		
+		previous.close();
+		return true;
+	}
+	
+	private void handleSocketClosed(WebSocketClient socket, int code, String reason, boolean remote) {
+		synchronized (this) {
+			if (socket == replacement) {
+				// The new socket failed before it could take over, so keep using the current one
+				replacement = null;
+				System.err.println("Replacement socket closed before taking over: " + reason);
+				return;
+			}
+			
+			if (socket != client) {
+				// The socket that was handed over from
+				return;
+			}
+		}
+		
+		onClose(code, reason, remote);
 	}
 	   
 	public void connect() {
@@ -78,6 +152,17 @@ public class WebClient {
     }
     
     public void close() {
+    	WebSocketClient pending;
+    	
+    	synchronized (this) {
+    		pending = replacement;
+    		replacement = null;
+    	}
+    	
+    	if (pending != null) {
+    		pending.close();
+    	}
+    	
     	client.close();
     }
     
@@ -106,4 +191,16 @@ public class WebClient {
 		
 		return tokenManager.getBearerToken();
 	}
+	
+	protected CompletableFuture<String> getBearerTokenAsync() {
+		return tokenManager.getBearerTokenAsync();
+	}
+	
+	protected void invalidateBearerToken() {
+		tokenManager.invalidateValidation();
+	}
+	
+	protected TokenManager getTokenManager() {
+		return tokenManager;
+	}
 }
@@ -0,0 +1,137 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+class AsyncHttpEngineTest {
+
+	private HttpServer server;
+	private URI baseUri;
+	private AsyncHttpEngine engine;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+		server.setExecutor(Executors.newCachedThreadPool());
+
+		server.createContext("/echo", exchange -> {
+			String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+			String clientId = exchange.getRequestHeaders().getFirst("Client-Id");
+			respond(exchange, 200, exchange.getRequestMethod() + " " + clientId + " " + body);
+		});
+
+		server.createContext("/missing", exchange -> respond(exchange, 404, "{\"error\":\"Not Found\"}"));
+
+		server.start();
+		baseUri = URI.create("http://localhost:" + server.getAddress().getPort());
+		engine = new AsyncHttpEngine(2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		engine.close();
+		server.stop(0);
+	}
+
+	private void respond(HttpExchange exchange, int status, String body) throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.sendResponseHeaders(status, bytes.length);
+
+		try (OutputStream os = exchange.getResponseBody()) {
+			os.write(bytes);
+		}
+	}
+
+	@Test
+	void testGet_ReturnsStatusAndBody() throws Exception {
+		AsyncHttpEngine.Response response = engine.get(baseUri.resolve("/echo"), "Client-Id", "abc")
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals(200, response.getStatusCode());
+		assertEquals("GET abc ", response.getBody());
+	}
+
+	@Test
+	void testPost_SendsBody() throws Exception {
+		AsyncHttpEngine.Response response = engine.post(baseUri.resolve("/echo"), "{\"type\":\"stream.online\"}",
+				"Client-Id", "abc").get(5, TimeUnit.SECONDS);
+
+		assertEquals("POST abc {\"type\":\"stream.online\"}", response.getBody());
+	}
+
+	@Test
+	void testDelete_SendsDeleteMethod() throws Exception {
+		AsyncHttpEngine.Response response = engine.delete(baseUri.resolve("/echo"), "Client-Id", "abc")
+				.get(5, TimeUnit.SECONDS);
+
+		assertEquals("DELETE abc ", response.getBody());
+	}
+
+	@Test
+	void testErrorStatus_CompletesNormally() throws Exception {
+		AsyncHttpEngine.Response response = engine.get(baseUri.resolve("/missing")).get(5, TimeUnit.SECONDS);
+
+		assertEquals(404, response.getStatusCode());
+	}
+
+	@Test
+	void testManyConcurrentRequests_AllComplete() throws Exception {
+		List<CompletableFuture<AsyncHttpEngine.Response>> futures = new ArrayList<>();
+
+		for (int i = 0; i < 100; i++) {
+			futures.add(engine.post(baseUri.resolve("/echo"), Integer.toString(i)));
+		}
+
+		for (int i = 0; i < 100; i++) {
+			assertEquals("POST null " + i, futures.get(i).get(10, TimeUnit.SECONDS).getBody());
+		}
+
+		assertEquals(0, engine.getInFlightCount());
+	}
+
+	@Test
+	void testConnectionRefused_CompletesExceptionally() throws Exception {
+		server.stop(0);
+
+		CompletableFuture<AsyncHttpEngine.Response> future = engine.get(baseUri.resolve("/echo"));
+
+		assertThrows(Exception.class, () -> future.get(10, TimeUnit.SECONDS));
+		assertEquals(0, engine.getInFlightCount());
+	}
+
+	@Test
+	void testClose_ShutsDownOnlyThePoolItCreated() {
+		ExecutorService external = Executors.newSingleThreadExecutor();
+
+		try (AsyncHttpEngine borrowing = new AsyncHttpEngine(external)) {
+			assertSame(external, borrowing.getExecutor());
+		}
+
+		assertFalse(external.isShutdown());
+		external.shutdown();
+
+		engine.close();
+		assertEquals(!BlockingWorkExecutor.isVirtual(), engine.getExecutor().isShutdown());
+
+		AsyncHttpEngine.getShared().close();
+		assertFalse(AsyncHttpEngine.getShared().getExecutor().isShutdown());
+	}
+}
@@ -0,0 +1,73 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class BlockingWorkExecutorTest {
+
+	@AfterEach
+	void tearDown() {
+		System.clearProperty(BlockingWorkExecutor.VIRTUAL_PROPERTY);
+		System.clearProperty(BlockingWorkExecutor.POOL_SIZE_PROPERTY);
+	}
+
+	@Test
+	void testIsVirtual_FollowsTheRunningJdk() {
+		assertEquals(ThreadFactories.isVirtualThreadSupported(), BlockingWorkExecutor.isVirtual());
+
+		System.setProperty(BlockingWorkExecutor.VIRTUAL_PROPERTY, "false");
+		assertFalse(BlockingWorkExecutor.isVirtual());
+	}
+
+	@Test
+	void testPlatformMode_IsBoundedAndDaemon() throws Exception {
+		System.setProperty(BlockingWorkExecutor.VIRTUAL_PROPERTY, "false");
+		System.setProperty(BlockingWorkExecutor.POOL_SIZE_PROPERTY, "3");
+
+		ExecutorService executor = BlockingWorkExecutor.create("blocking-test");
+		Set<Thread> threads = ConcurrentHashMap.newKeySet();
+		CountDownLatch done = new CountDownLatch(50);
+
+		try {
+			for (int i = 0; i < 50; i++) {
+				executor.execute(() -> {
+					threads.add(Thread.currentThread());
+
+					try {
+						Thread.sleep(2);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+
+					done.countDown();
+				});
+			}
+
+			assertTrue(done.await(5, TimeUnit.SECONDS));
+			assertTrue(threads.size() <= 3, "threads: " + threads.size());
+
+			for (Thread thread : threads) {
+				assertTrue(thread.isDaemon());
+				assertTrue(thread.getName().startsWith("blocking-test-"));
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testShared_RunsTasks() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		BlockingWorkExecutor.getShared().execute(ran::countDown);
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+	}
+}
@@ -0,0 +1,98 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class BroadcasterIdCacheTest {
+
+	private static final String CACHE_FILE = "test_broadcaster_ids.txt";
+
+	@BeforeEach
+	void setUp() {
+		new File(CACHE_FILE).delete();
+	}
+
+	@AfterEach
+	void tearDown() {
+		new File(CACHE_FILE).delete();
+	}
+
+	@Test
+	void testGetTwitchId_ResolvesOnceThenServesFromCache() {
+		BroadcasterIdCache cache = new BroadcasterIdCache(CACHE_FILE);
+		AtomicInteger calls = new AtomicInteger();
+
+		assertEquals(12345, cache.getTwitchId("Streamer", () -> { calls.incrementAndGet(); return 12345; }));
+		assertEquals(12345, cache.getTwitchId("streamer", () -> { calls.incrementAndGet(); return 99999; }));
+		assertEquals(1, calls.get());
+	}
+
+	@Test
+	void testCache_PersistsAcrossInstances() {
+		BroadcasterIdCache first = new BroadcasterIdCache(CACHE_FILE);
+		first.getTwitchId("streamer", () -> 12345);
+		first.getSonglistId("streamer", () -> 678);
+
+		BroadcasterIdCache second = new BroadcasterIdCache(CACHE_FILE);
+
+		assertTrue(second.hasTwitchId("STREAMER"));
+		assertEquals(12345, second.getTwitchId("streamer", () -> { throw new AssertionError("Should not resolve"); }));
+		assertEquals(678, second.getSonglistId("streamer", () -> { throw new AssertionError("Should not resolve"); }));
+	}
+
+	@Test
+	void testGetTwitchId_UnresolvedIdIsNotCached() {
+		BroadcasterIdCache cache = new BroadcasterIdCache(CACHE_FILE);
+
+		assertEquals(-1, cache.getTwitchId("missing", () -> -1));
+		assertFalse(cache.hasTwitchId("missing"));
+		assertEquals(42, cache.getTwitchId("missing", () -> 42));
+	}
+
+	@Test
+	void testStaleEntry_ReturnsCachedValueAndRevalidatesInBackground() throws Exception {
+		BroadcasterIdCache cache = new BroadcasterIdCache(CACHE_FILE, Duration.ZERO);
+		cache.getTwitchId("streamer", () -> 1);
+
+		assertEquals(1, cache.getTwitchId("streamer", () -> 2));
+
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+		while (System.nanoTime() < deadline && Files.readString(Path.of(CACHE_FILE)).contains("\t1\t")) {
+			TimeUnit.MILLISECONDS.sleep(10);
+		}
+
+		assertEquals(2, cache.getTwitchId("streamer", () -> 2));
+	}
+
+	@Test
+	void testLoad_SkipsMalformedLines() throws Exception {
+		Files.writeString(Path.of(CACHE_FILE), "garbage\nstreamer\t1\tnotanumber\t2\t0\nother\t5\t0\t-1\t0");
+
+		BroadcasterIdCache cache = new BroadcasterIdCache(CACHE_FILE);
+
+		assertFalse(cache.hasTwitchId("streamer"));
+		assertTrue(cache.hasTwitchId("other"));
+	}
+
+	@Test
+	void testGetTwitchId_BlankLogin_Throws() {
+		BroadcasterIdCache cache = new BroadcasterIdCache(CACHE_FILE);
+
+		assertThrows(IllegalArgumentException.class, () -> cache.getTwitchId(" ", () -> 1));
+	}
+
+	@Test
+	void testExtendsFileWriter() {
+		assertTrue(FileWriter.class.isAssignableFrom(BroadcasterIdCache.class));
+	}
+}
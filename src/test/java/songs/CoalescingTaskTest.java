@@ -0,0 +1,160 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class CoalescingTaskTest {
+
+	private ScheduledExecutorService executor;
+
+	@BeforeEach
+	void setUp() {
+		executor = Executors.newSingleThreadScheduledExecutor();
+	}
+
+	@AfterEach
+	void tearDown() {
+		executor.shutdownNow();
+	}
+
+	private void awaitIdle() throws Exception {
+		// The executor is single threaded, so once this runs every earlier run has finished
+		executor.schedule(() -> {}, 0, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void testBurstWithinDebounce_RunsOnce() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch ran = new CountDownLatch(1);
+		CoalescingTask task = new CoalescingTask(executor, () -> { runs.incrementAndGet(); ran.countDown(); },
+				Duration.ofMillis(100));
+
+		for (int i = 0; i < 10; i++) {
+			task.request();
+		}
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		TimeUnit.MILLISECONDS.sleep(200);
+		awaitIdle();
+
+		assertEquals(1, runs.get());
+		assertEquals(10, task.getRequestCount());
+		assertEquals(9, task.getCoalescedCount());
+	}
+
+	@Test
+	void testRequestNow_SkipsTheDebounce() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		CoalescingTask task = new CoalescingTask(executor, ran::countDown, Duration.ofSeconds(30));
+
+		task.requestNow();
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testRequestNow_BringsAPendingRunForward() throws Exception {
+		CountDownLatch ran = new CountDownLatch(1);
+		CoalescingTask task = new CoalescingTask(executor, ran::countDown, Duration.ofSeconds(30));
+
+		task.request();
+		task.requestNow();
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		assertEquals(1, task.getCoalescedCount());
+	}
+
+	@Test
+	void testRequestNow_RunsRightAfterTheRunInFlight() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CompletableFuture<Void> firstRun = new CompletableFuture<>();
+		CountDownLatch secondRun = new CountDownLatch(1);
+
+		CoalescingTask task = new CoalescingTask(executor, () -> {
+			if (runs.incrementAndGet() == 1) {
+				return firstRun;
+			}
+
+			secondRun.countDown();
+			return CompletableFuture.completedFuture(null);
+		}, Duration.ofSeconds(30));
+
+		task.requestNow();
+		awaitIdle();
+
+		// Pending behind the run in flight, first with the debounce and then without it
+		task.request();
+		task.requestNow();
+		firstRun.complete(null);
+
+		assertTrue(secondRun.await(5, TimeUnit.SECONDS));
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	void testRequestsDuringRun_AtMostOnePending() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+
+		CoalescingTask task = new CoalescingTask(executor, () -> {
+			if (runs.incrementAndGet() == 1) {
+				started.countDown();
+				try {
+					release.await(5, TimeUnit.SECONDS);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		}, Duration.ZERO);
+
+		task.request();
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 5; i++) {
+			task.request();
+		}
+
+		release.countDown();
+		TimeUnit.MILLISECONDS.sleep(100);
+		awaitIdle();
+
+		assertEquals(2, runs.get());
+		assertEquals(4, task.getCoalescedCount());
+	}
+
+	@Test
+	void testFailingTask_DoesNotBlockLaterRuns() throws Exception {
+		AtomicInteger runs = new AtomicInteger();
+		CoalescingTask task = new CoalescingTask(executor, () -> {
+			runs.incrementAndGet();
+			throw new IllegalArgumentException("boom");
+		}, Duration.ZERO);
+
+		task.request();
+		TimeUnit.MILLISECONDS.sleep(50);
+		awaitIdle();
+		task.request();
+		TimeUnit.MILLISECONDS.sleep(50);
+		awaitIdle();
+
+		assertEquals(2, runs.get());
+	}
+
+	@Test
+	void testNegativeDebounce_Throws() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new CoalescingTask(executor, () -> {}, Duration.ofMillis(-1)));
+	}
+}
@@ -0,0 +1,288 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import org.java_websocket.WebSocket;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class EventSubClientTest {
+
+	private StubServer oldServer;
+	private StubServer newServer;
+	private RecordingClient client;
+
+	/**
+	 * Local EventSub endpoint that welcomes every connection and remembers it.
+	 */
+	private static class StubServer extends WebSocketServer {
+		final String sessionId;
+		final List<WebSocket> connections = new CopyOnWriteArrayList<>();
+		final CountDownLatch closed = new CountDownLatch(1);
+		final CountDownLatch started = new CountDownLatch(1);
+
+		StubServer(String sessionId) {
+			super(new InetSocketAddress("localhost", 0));
+			this.sessionId = sessionId;
+			setReuseAddr(true);
+		}
+
+		URI getUri() {
+			return URI.create("ws://localhost:" + getPort());
+		}
+
+		@Override
+		public void onOpen(WebSocket conn, ClientHandshake handshake) {
+			connections.add(conn);
+			conn.send(welcome(sessionId));
+		}
+
+		@Override
+		public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+			closed.countDown();
+		}
+
+		@Override
+		public void onMessage(WebSocket conn, String message) {
+		}
+
+		@Override
+		public void onError(WebSocket conn, Exception ex) {
+		}
+
+		@Override
+		public void onStart() {
+			started.countDown();
+		}
+	}
+
+	private static class RecordingClient extends EventSubClient {
+		final List<String> welcomes = new CopyOnWriteArrayList<>();
+		final List<JSONObject> notifications = new CopyOnWriteArrayList<>();
+
+		RecordingClient(URI uri) {
+			super(uri, mock(TokenManager.class), new ClientInfo(), null);
+		}
+
+		@Override
+		protected boolean onWelcome(String sessionId) {
+			welcomes.add(sessionId);
+			return true;
+		}
+
+		@Override
+		protected void onNotification(JSONObject payload) {
+			notifications.add(payload);
+		}
+	}
+
+	private static String metadata(String messageId, String type) {
+		return metadata(messageId, type, Instant.now());
+	}
+
+	private static String metadata(String messageId, String type, Instant timestamp) {
+		return "\"metadata\":{\"message_id\":\"" + messageId + "\",\"message_type\":\"" + type
+				+ "\",\"message_timestamp\":\"" + timestamp + "\"}";
+	}
+
+	private static String welcome(String sessionId) {
+		return "{" + metadata("welcome-" + sessionId, "session_welcome")
+				+ ",\"payload\":{\"session\":{\"id\":\"" + sessionId + "\",\"status\":\"connected\"}}}";
+	}
+
+	private static String welcome(String sessionId, int keepaliveTimeoutSeconds) {
+		return "{" + metadata("welcome-" + sessionId, "session_welcome")
+				+ ",\"payload\":{\"session\":{\"id\":\"" + sessionId + "\",\"status\":\"connected\","
+				+ "\"keepalive_timeout_seconds\":" + keepaliveTimeoutSeconds + "}}}";
+	}
+
+	private static String keepalive() {
+		return "{" + metadata("keepalive-1", "session_keepalive") + ",\"payload\":{}}";
+	}
+
+	private static String reconnect(URI reconnectUri) {
+		return "{" + metadata("reconnect-1", "session_reconnect")
+				+ ",\"payload\":{\"session\":{\"id\":\"old\",\"status\":\"reconnecting\",\"reconnect_url\":\""
+				+ reconnectUri + "\"}}}";
+	}
+
+	private static String notification(String messageId) {
+		return "{" + metadata(messageId, "notification")
+				+ ",\"payload\":{\"subscription\":{\"type\":\"stream.online\",\"created_at\":\"2024-12-09T10:30:00Z\"}}}";
+	}
+
+	private static void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertTrue(condition.getAsBoolean());
+	}
+
+	@AfterEach
+	void tearDown() throws Exception {
+		if (client != null) {
+			client.close();
+		}
+
+		for (StubServer server : new StubServer[] { oldServer, newServer }) {
+			if (server != null) {
+				server.stop(1000);
+			}
+		}
+	}
+
+	private void startServers() throws Exception {
+		oldServer = new StubServer("old");
+		newServer = new StubServer("new");
+		oldServer.start();
+		newServer.start();
+		assertTrue(oldServer.started.await(5, TimeUnit.SECONDS));
+		assertTrue(newServer.started.await(5, TimeUnit.SECONDS));
+
+		client = new RecordingClient(oldServer.getUri());
+		client.connectBlocking();
+		await(() -> client.getSessionId().equals("old"));
+	}
+
+	@Test
+	void testReconnect_ClosesOldSocketOnlyAfterNewWelcome() throws Exception {
+		startServers();
+
+		oldServer.connections.get(0).send(reconnect(newServer.getUri()));
+
+		await(() -> client.getSessionId().equals("new"));
+		assertTrue(oldServer.closed.await(5, TimeUnit.SECONDS), "The old socket should be closed after the handover");
+
+		await(() -> client.getHandoverCount() == 1);
+		assertTrue(client.getLastHandoverMillis() >= 0);
+		assertTrue(client.isOpen());
+
+		// Only the first session subscribes; the handover keeps its subscriptions
+		assertEquals(List.of("old"), client.welcomes);
+	}
+
+	@Test
+	void testReconnect_OldSocketStillDeliversDuringHandover() throws Exception {
+		startServers();
+
+		// Hold back the welcome on the new socket so the handover stays open
+		newServer.stop(1000);
+		newServer = new StubServer("new") {
+			@Override
+			public void onOpen(WebSocket conn, ClientHandshake handshake) {
+				connections.add(conn);
+			}
+		};
+		newServer.start();
+		assertTrue(newServer.started.await(5, TimeUnit.SECONDS));
+
+		oldServer.connections.get(0).send(reconnect(newServer.getUri()));
+		await(() -> newServer.connections.size() == 1);
+
+		oldServer.connections.get(0).send(notification("n-1"));
+		await(() -> client.notifications.size() == 1);
+
+		newServer.connections.get(0).send(welcome("new"));
+		await(() -> client.getSessionId().equals("new"));
+		await(() -> client.getHandoverCount() == 1);
+	}
+
+	@Test
+	void testDuplicateNotifications_DeliveredOnce() throws Exception {
+		client = new RecordingClient(URI.create("ws://localhost:1"));
+
+		client.onMessage(notification("n-1"));
+		client.onMessage(notification("n-1"));
+		client.onMessage(notification("n-2"));
+
+		assertEquals(2, client.notifications.size());
+		assertEquals(1, client.getDuplicateMessageCount());
+	}
+
+	@Test
+	void testStaleNotification_Dropped() {
+		client = new RecordingClient(URI.create("ws://localhost:1"));
+		String stale = "{" + metadata("n-old", "notification", Instant.now().minus(Duration.ofMinutes(11)))
+				+ ",\"payload\":{\"subscription\":{\"type\":\"stream.online\",\"created_at\":\"2024-12-09T10:30:00Z\"}}}";
+
+		client.onMessage(stale);
+
+		assertTrue(client.notifications.isEmpty());
+		assertEquals(1, client.getStaleMessageCount());
+	}
+
+	@Test
+	void testNoHandover_MetricsStartEmpty() {
+		client = new RecordingClient(URI.create("ws://localhost:1"));
+
+		assertEquals(-1, client.getLastHandoverMillis());
+		assertEquals(0, client.getHandoverCount());
+	}
+
+	@Test
+	void testKeepalive_ExpiresOnlyAfterNegotiatedTimeout() {
+		client = new RecordingClient(URI.create("ws://localhost:1"));
+		client.watchdog = new KeepaliveWatchdog(TimeUnit.HOURS.toMillis(1));
+
+		assertFalse(client.isKeepaliveExpired(System.nanoTime() + TimeUnit.HOURS.toNanos(1)),
+				"Nothing should expire before the welcome says how long to wait");
+
+		client.onMessage(welcome("s1", 10));
+		assertTrue(client.watchdog.isWatching(client));
+
+		long now = System.nanoTime();
+		assertFalse(client.isKeepaliveExpired(now + TimeUnit.SECONDS.toNanos(10)));
+		assertTrue(client.isKeepaliveExpired(now + TimeUnit.SECONDS.toNanos(15)));
+
+		client.onMessage(keepalive());
+		assertFalse(client.isKeepaliveExpired(now + TimeUnit.SECONDS.toNanos(5)), "A keepalive should reset the timer");
+
+		client.close();
+		assertFalse(client.watchdog.isWatching(client));
+	}
+
+	@Test
+	void testKeepalive_SilentSessionIsReplacedAndResubscribed() throws Exception {
+		// Welcomes every connection with its own session id, then never sends another frame
+		oldServer = new StubServer("silent") {
+			@Override
+			public void onOpen(WebSocket conn, ClientHandshake handshake) {
+				connections.add(conn);
+				conn.send(welcome("s" + connections.size(), 1));
+			}
+		};
+		oldServer.start();
+		assertTrue(oldServer.started.await(5, TimeUnit.SECONDS));
+
+		client = new RecordingClient(oldServer.getUri());
+		client.watchdog = new KeepaliveWatchdog(100);
+		client.connectBlocking();
+
+		await(() -> client.welcomes.size() == 2);
+
+		// Read before the replacement, which is just as silent, has time to lapse as well
+		long expired = client.getExpiredSessionCount();
+		assertTrue(oldServer.closed.await(5, TimeUnit.SECONDS), "The silent socket should be closed");
+
+		assertEquals(1, expired);
+		assertEquals(List.of("s1", "s2"), client.welcomes.subList(0, 2));
+		assertTrue(client.isOpen());
+	}
+}
@@ -0,0 +1,81 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+class EventSubMessageTest {
+
+	private static final String KEEPALIVE = "{\"metadata\":{\"message_id\":\"84c1e79a-2a4b-4c13-ba0b-4312293e9308\","
+			+ "\"message_type\":\"session_keepalive\",\"message_timestamp\":\"2023-07-19T10:11:12.634234626Z\"},\"payload\":{}}";
+
+	@Test
+	void testClassify_Keepalive() {
+		assertEquals(EventSubMessage.Type.SESSION_KEEPALIVE, EventSubMessage.classify(KEEPALIVE));
+	}
+
+	@Test
+	void testClassify_AllKnownTypes() {
+		assertEquals(EventSubMessage.Type.SESSION_WELCOME, EventSubMessage.classify(frame("session_welcome")));
+		assertEquals(EventSubMessage.Type.SESSION_RECONNECT, EventSubMessage.classify(frame("session_reconnect")));
+		assertEquals(EventSubMessage.Type.NOTIFICATION, EventSubMessage.classify(frame("notification")));
+		assertEquals(EventSubMessage.Type.REVOCATION, EventSubMessage.classify(frame("revocation")));
+	}
+
+	@Test
+	void testClassify_IsCaseInsensitive() {
+		assertEquals(EventSubMessage.Type.NOTIFICATION, EventSubMessage.classify(frame("Notification")));
+	}
+
+	@Test
+	void testClassify_ToleratesWhitespace() {
+		String pretty = "{\n  \"metadata\" : {\n    \"message_type\" :  \"session_keepalive\"\n  }\n}";
+
+		assertEquals(EventSubMessage.Type.SESSION_KEEPALIVE, EventSubMessage.classify(pretty));
+	}
+
+	@Test
+	void testClassify_PrefixOfKnownTypeIsUnknown() {
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify(frame("session_keep")));
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify(frame("notifications")));
+	}
+
+	@Test
+	void testClassify_MalformedInput() {
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify(null));
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify("not valid json {{{"));
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify("{\"metadata\":{}}"));
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify("{\"message_type\":42}"));
+		assertEquals(EventSubMessage.Type.UNKNOWN, EventSubMessage.classify("{\"message_type\":\"notification"));
+	}
+
+	@Test
+	void testReadMessageIdAndTimestamp() {
+		assertEquals("84c1e79a-2a4b-4c13-ba0b-4312293e9308", EventSubMessage.readMessageId(KEEPALIVE));
+		assertEquals("2023-07-19T10:11:12.634234626Z", EventSubMessage.readMessageTimestamp(KEEPALIVE));
+		assertNull(EventSubMessage.readMessageId("{\"metadata\":{}}"));
+	}
+
+	@Test
+	void testPayloadBeforeMetadata_ReadsTheMetadataNotThePayload() {
+		String reordered = "{\"payload\":{\"event\":{\"message_id\":\"chat-1\",\"message_type\":\"session_keepalive\","
+				+ "\"message_timestamp\":\"2020-01-01T00:00:00Z\"}},"
+				+ "\"metadata\":{\"message_id\":\"meta-1\",\"message_type\":\"notification\","
+				+ "\"message_timestamp\":\"2023-07-19T10:11:12.634234626Z\"}}";
+
+		assertEquals(EventSubMessage.Type.NOTIFICATION, EventSubMessage.classify(reordered));
+		assertEquals("meta-1", EventSubMessage.readMessageId(reordered));
+		assertEquals("2023-07-19T10:11:12.634234626Z", EventSubMessage.readMessageTimestamp(reordered));
+	}
+
+	@Test
+	void testMetadataFirst_MissingKeyIsNotTakenFromThePayload() {
+		String frame = "{\"metadata\":{\"message_type\":\"notification\"},\"payload\":{\"message_id\":\"chat-1\"}}";
+
+		assertNull(EventSubMessage.readMessageId(frame));
+	}
+
+	private String frame(String messageType) {
+		return "{\"metadata\":{\"message_id\":\"id\",\"message_type\":\"" + messageType + "\"},\"payload\":{}}";
+	}
+}
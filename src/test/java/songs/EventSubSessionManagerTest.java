@@ -0,0 +1,125 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EventSubSessionManagerTest {
+
+	private static final String TOKEN_FILE = "test_session_tokens.txt";
+
+	private EventSubSessionManager manager;
+
+	@BeforeEach
+	void setUp() {
+		manager = spy(new EventSubSessionManager(TOKEN_FILE, new ClientInfo(), null));
+	}
+
+	@AfterEach
+	void tearDown() {
+		new File(TOKEN_FILE).delete();
+	}
+
+	private TwitchAPI mockStreamer(int id) {
+		TwitchAPI streamer = mock(TwitchAPI.class);
+		when(streamer.resolveStreamerID()).thenReturn(id);
+		return streamer;
+	}
+
+	@Test
+	void testConstructor_NullClientInfo_Throws() {
+		assertThrows(IllegalArgumentException.class, () -> new EventSubSessionManager(TOKEN_FILE, null, null));
+	}
+
+	@Test
+	void testRegister_ReusesSessionWithCapacity() {
+		EventSubSession session = mock(EventSubSession.class);
+		when(session.tryAdd(anyString(), any())).thenReturn(true);
+		doReturn(session).when(manager).createSession();
+
+		manager.register(mockStreamer(1));
+		manager.register(mockStreamer(2));
+		manager.register(mockStreamer(3));
+
+		assertEquals(1, manager.getSessionCount());
+		verify(manager, times(1)).createSession();
+		verify(session, times(1)).connect();
+	}
+
+	@Test
+	void testRegister_OpensNewSessionWhenFull() {
+		EventSubSession full = mock(EventSubSession.class);
+		when(full.tryAdd(anyString(), any())).thenReturn(true).thenReturn(false);
+		EventSubSession fresh = mock(EventSubSession.class);
+		when(fresh.tryAdd(anyString(), any())).thenReturn(true);
+		doReturn(full).doReturn(fresh).when(manager).createSession();
+
+		manager.register(mockStreamer(1));
+		manager.register(mockStreamer(2));
+
+		assertEquals(2, manager.getSessionCount());
+		verify(fresh).tryAdd(eq("2"), any());
+	}
+
+	@Test
+	void testRegister_AllSessionsFull_Throws() {
+		EventSubSession full = mock(EventSubSession.class);
+		when(full.tryAdd(anyString(), any())).thenReturn(true).thenReturn(false);
+		doReturn(full).when(manager).createSession();
+
+		for (int i = 0; i < EventSubSessionManager.MAX_SESSIONS; i++) {
+			manager.register(mockStreamer(i));
+		}
+
+		assertThrows(IllegalStateException.class, () -> manager.register(mockStreamer(99)));
+	}
+
+	@Test
+	void testRegister_UnresolvedStreamer_Throws() {
+		assertThrows(IllegalArgumentException.class, () -> manager.register(mockStreamer(-1)));
+		assertEquals(0, manager.getSessionCount());
+	}
+
+	@Test
+	void testRegister_SlowLookupDoesNotHoldUpOtherStreamers() throws Exception {
+		EventSubSession session = mock(EventSubSession.class);
+		when(session.tryAdd(anyString(), any())).thenReturn(true);
+		doReturn(session).when(manager).createSession();
+
+		CountDownLatch looking = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		TwitchAPI slow = mock(TwitchAPI.class);
+		when(slow.resolveStreamerID()).thenAnswer(invocation -> {
+			looking.countDown();
+			release.await(5, TimeUnit.SECONDS);
+			return 1;
+		});
+
+		Thread registering = new Thread(() -> manager.register(slow));
+		registering.start();
+
+		try {
+			assertTrue(looking.await(5, TimeUnit.SECONDS));
+
+			Thread other = new Thread(() -> manager.register(mockStreamer(2)));
+			other.start();
+			other.join(5_000);
+
+			assertFalse(other.isAlive());
+			verify(session).tryAdd(eq("2"), any());
+		} finally {
+			release.countDown();
+			registering.join(5_000);
+		}
+
+		verify(session).tryAdd(eq("1"), any());
+	}
+}
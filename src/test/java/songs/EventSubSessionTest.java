@@ -0,0 +1,177 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class EventSubSessionTest {
+
+	private EventSubSession session;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		TokenManager tokenManager = mock(TokenManager.class);
+		when(tokenManager.getBearerTokenAsync()).thenReturn(CompletableFuture.completedFuture("token"));
+		session = new EventSubSession(new URI("ws://localhost:8070"), tokenManager, new ClientInfo(), null);
+	}
+
+	/** Capacity Tests **/
+
+	@Test
+	void testTryAdd_FillsUpToSubscriptionLimit() {
+		int maxStreamers = EventSubSession.MAX_SUBSCRIPTIONS_PER_SESSION / EventSubSession.SUBSCRIPTIONS_PER_STREAMER;
+
+		for (int i = 0; i < maxStreamers; i++) {
+			assertTrue(session.tryAdd(Integer.toString(i), mock(TwitchAPI.class)));
+		}
+
+		assertFalse(session.hasCapacity());
+		assertFalse(session.tryAdd("overflow", mock(TwitchAPI.class)));
+		assertEquals(maxStreamers, session.getStreamerCount());
+	}
+
+	@Test
+	void testTryAdd_SameBroadcasterTwice_CountsOnce() {
+		TwitchAPI streamer = mock(TwitchAPI.class);
+
+		assertTrue(session.tryAdd("1", streamer));
+		assertTrue(session.tryAdd("1", streamer));
+		assertEquals(1, session.getStreamerCount());
+	}
+
+	@Test
+	void testRemove_FreesCapacity() {
+		session.tryAdd("1", mock(TwitchAPI.class));
+
+		assertTrue(session.remove("1"));
+		assertFalse(session.remove("1"));
+		assertEquals(0, session.getStreamerCount());
+	}
+
+	/** Welcome Tests **/
+
+	@Test
+	void testWelcome_SubscribesEveryStreamer() {
+		TwitchAPI first = subscribingStreamer();
+		TwitchAPI second = subscribingStreamer();
+		session.tryAdd("1", first);
+		session.tryAdd("2", second);
+
+		session.onMessage(createWelcomeMessage("session-abc"));
+
+		verify(first).subscribeToSession(eq("session-abc"), same(session.getSubscriptionPipeline()));
+		verify(second).subscribeToSession(eq("session-abc"), same(session.getSubscriptionPipeline()));
+		assertEquals("session-abc", session.getSessionId());
+	}
+
+	@Test
+	void testTryAdd_AfterWelcome_SubscribesImmediately() {
+		session.onMessage(createWelcomeMessage("session-abc"));
+
+		TwitchAPI late = mock(TwitchAPI.class);
+		session.tryAdd("3", late);
+
+		verify(late).subscribeToSession(eq("session-abc"), same(session.getSubscriptionPipeline()));
+	}
+
+	@Test
+	void testWelcome_SubscribesFirstAndReconcilesAfterwards() {
+		SubscriptionRegistry registry = new SubscriptionRegistry();
+		StubHttpEngine http = StubHttpEngine.sequence("{\"data\":[],\"total_cost\":0,\"max_total_cost\":10000,\"pagination\":{}}");
+		registry.http = http;
+		session.setSubscriptionRegistry(registry);
+		session.clientInfo.setClientId("client");
+
+		CompletableFuture<Boolean> subscribed = new CompletableFuture<>();
+		TwitchAPI streamer = mock(TwitchAPI.class);
+		when(streamer.subscribeToSession(anyString(), any())).thenReturn(subscribed);
+		session.tryAdd("1", streamer);
+
+		session.onMessage(createWelcomeMessage("session-abc"));
+
+		// Subscribing does not wait for the listing, which only starts once it is done
+		verify(streamer).subscribeToSession(eq("session-abc"), same(session.getSubscriptionPipeline()));
+		assertEquals(0, http.getRequests().size());
+
+		subscribed.complete(true);
+
+		assertEquals(1, http.getRequests().size());
+		assertEquals(10000, registry.getMaxTotalCost());
+	}
+
+	/** Routing Tests **/
+
+	@Test
+	void testNotification_RoutedByBroadcasterId() {
+		TwitchAPI first = mock(TwitchAPI.class);
+		TwitchAPI second = mock(TwitchAPI.class);
+		session.tryAdd("111", first);
+		session.tryAdd("222", second);
+
+		session.onMessage(createNotification("stream.online", "222"));
+
+		verify(second).onNotification(any(JSONObject.class));
+		verify(first, never()).onNotification(any(JSONObject.class));
+	}
+
+	@Test
+	void testNotification_UnknownBroadcaster_Ignored() {
+		TwitchAPI first = mock(TwitchAPI.class);
+		session.tryAdd("111", first);
+
+		assertDoesNotThrow(() -> session.onMessage(createNotification("stream.offline", "999")));
+		verify(first, never()).onNotification(any(JSONObject.class));
+	}
+
+	/** Helper Methods **/
+
+	private static TwitchAPI subscribingStreamer() {
+		TwitchAPI streamer = mock(TwitchAPI.class);
+		when(streamer.subscribeToSession(anyString(), any())).thenReturn(CompletableFuture.completedFuture(true));
+		return streamer;
+	}
+
+	private String createWelcomeMessage(String sessionId) {
+		JSONObject session = new JSONObject();
+		session.put("id", sessionId);
+
+		JSONObject metadata = new JSONObject();
+		metadata.put("message_type", "session_welcome");
+
+		JSONObject message = new JSONObject();
+		message.put("metadata", metadata);
+		message.put("payload", new JSONObject().put("session", session));
+
+		return message.toString();
+	}
+
+	private String createNotification(String type, String broadcasterId) {
+		JSONObject subscription = new JSONObject();
+		subscription.put("type", type);
+		subscription.put("created_at", "2024-12-09T10:30:00Z");
+		subscription.put("condition", new JSONObject().put("broadcaster_user_id", broadcasterId));
+
+		JSONObject event = new JSONObject();
+		event.put("broadcaster_user_id", broadcasterId);
+
+		JSONObject payload = new JSONObject();
+		payload.put("subscription", subscription);
+		payload.put("event", event);
+
+		JSONObject metadata = new JSONObject();
+		metadata.put("message_type", "notification");
+
+		JSONObject message = new JSONObject();
+		message.put("metadata", metadata);
+		message.put("payload", payload);
+
+		return message.toString();
+	}
+}
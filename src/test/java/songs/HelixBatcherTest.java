@@ -0,0 +1,219 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+class HelixBatcherTest {
+
+	@Mock
+	private TokenManager mockTokenManager;
+
+	private HelixBatcher batcher;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		MockitoAnnotations.openMocks(this);
+		when(mockTokenManager.getBearerToken()).thenReturn("test_bearer_token");
+		when(mockTokenManager.getBearerTokenAsync()).thenReturn(CompletableFuture.completedFuture("test_bearer_token"));
+
+		batcher = new HelixBatcher(new ClientInfo("id", "secret"), mockTokenManager);
+	}
+
+	/**
+	 * Answers /users with an id of 1000 + n for every login named "streamer_n", and /streams
+	 * with a live entry for every even n.
+	 */
+	private StubHttpEngine setupEchoResponses() {
+		StubHttpEngine engine = new StubHttpEngine(request -> {
+			List<NameValuePair> params = URLEncodedUtils.parse(request.uri(), StandardCharsets.UTF_8);
+			boolean streams = request.uri().getPath().endsWith("/streams");
+
+			JSONArray data = new JSONArray();
+			for (NameValuePair param : params) {
+				int n = Integer.parseInt(param.getValue().substring("streamer_".length()));
+
+				if (streams && n % 2 == 0) {
+					data.put(new JSONObject().put("user_login", param.getValue()).put("started_at", "2024-12-09T10:30:00Z"));
+				} else if (!streams) {
+					data.put(new JSONObject().put("login", param.getValue()).put("id", Integer.toString(1000 + n)));
+				}
+			}
+
+			return StubHttpEngine.ok(new JSONObject().put("data", data).toString());
+		});
+
+		batcher.http = engine;
+		return engine;
+	}
+
+	@Test
+	void testLookupUserId_BatchesIntoHundredWideRequests() throws Exception {
+		StubHttpEngine engine = setupEchoResponses();
+
+		List<CompletableFuture<Integer>> lookups = new ArrayList<>();
+		for (int i = 0; i < 250; i++) {
+			lookups.add(batcher.lookupUserId("streamer_" + i));
+		}
+
+		for (int i = 0; i < 250; i++) {
+			assertEquals(1000 + i, lookups.get(i).get(5, TimeUnit.SECONDS).intValue());
+		}
+
+		assertEquals(3, batcher.getRequestCount());
+		assertEquals(3, engine.getRequests().size());
+	}
+
+	@Test
+	void testLookupUserId_FullBatchQueuesOneFlush() throws Exception {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		batcher = new HelixBatcher(new ClientInfo("id", "secret"), mockTokenManager, executor);
+		StubHttpEngine engine = setupEchoResponses();
+
+		// Hold the batcher thread so every lookup is enqueued before anything is flushed
+		CountDownLatch held = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		executor.execute(() -> {
+			held.countDown();
+
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		assertTrue(held.await(5, TimeUnit.SECONDS));
+
+		try {
+			List<CompletableFuture<Integer>> lookups = new ArrayList<>();
+			for (int i = 0; i < 250; i++) {
+				lookups.add(batcher.lookupUserId("streamer_" + i));
+			}
+
+			// The linger timer and a single flush, not one flush per lookup past the hundredth
+			assertEquals(2, executor.getQueue().size());
+
+			release.countDown();
+
+			for (CompletableFuture<Integer> lookup : lookups) {
+				lookup.get(5, TimeUnit.SECONDS);
+			}
+
+			assertEquals(3, engine.getRequests().size());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testLookupUserId_TokenRefreshDoesNotHoldTheBatcherThread() throws Exception {
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		batcher = new HelixBatcher(new ClientInfo("id", "secret"), mockTokenManager, executor);
+		StubHttpEngine engine = setupEchoResponses();
+		CompletableFuture<String> refresh = new CompletableFuture<>();
+		when(mockTokenManager.getBearerTokenAsync()).thenReturn(refresh);
+
+		try {
+			List<CompletableFuture<Integer>> lookups = new ArrayList<>();
+			for (int i = 0; i < 150; i++) {
+				lookups.add(batcher.lookupUserId("streamer_" + i));
+			}
+
+			// Both flushes have run while the refresh is still out
+			CountDownLatch ran = new CountDownLatch(1);
+			executor.schedule(ran::countDown, 100, TimeUnit.MILLISECONDS);
+			assertTrue(ran.await(5, TimeUnit.SECONDS));
+			assertEquals(0, engine.getRequests().size());
+
+			refresh.complete("refreshed_token");
+
+			for (CompletableFuture<Integer> lookup : lookups) {
+				lookup.get(5, TimeUnit.SECONDS);
+			}
+
+			assertEquals(2, engine.getRequests().size());
+			assertEquals("Bearer refreshed_token",
+					engine.getRequests().get(0).headers().firstValue("Authorization").orElse(""));
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	void testLookupUserId_SendsClientIdAndBearer() throws Exception {
+		StubHttpEngine engine = setupEchoResponses();
+
+		batcher.lookupUserId("streamer_1").get(5, TimeUnit.SECONDS);
+
+		assertEquals("id", engine.getRequests().get(0).headers().firstValue("Client-Id").orElse(null));
+		assertEquals("Bearer test_bearer_token",
+				engine.getRequests().get(0).headers().firstValue("Authorization").orElse(null));
+	}
+
+	@Test
+	void testLookupUserId_DuplicateLoginsShareOneSlot() throws Exception {
+		setupEchoResponses();
+
+		CompletableFuture<Integer> first = batcher.lookupUserId("streamer_7");
+		CompletableFuture<Integer> second = batcher.lookupUserId("STREAMER_7");
+
+		assertEquals(1007, first.get(5, TimeUnit.SECONDS).intValue());
+		assertEquals(1007, second.get(5, TimeUnit.SECONDS).intValue());
+		assertEquals(1, batcher.getRequestCount());
+	}
+
+	@Test
+	void testLookupStartTime_OfflineStreamerCompletesWithNull() throws Exception {
+		setupEchoResponses();
+
+		CompletableFuture<String> live = batcher.lookupStartTime("streamer_2");
+		CompletableFuture<String> offline = batcher.lookupStartTime("streamer_3");
+
+		assertEquals("2024-12-09T10:30:00Z", live.get(5, TimeUnit.SECONDS));
+		assertNull(offline.get(5, TimeUnit.SECONDS));
+		assertEquals(1, batcher.getRequestCount());
+	}
+
+	@Test
+	void testLookupUserId_ErrorResponseFailsEveryCaller() throws Exception {
+		batcher.http = StubHttpEngine.sequence("{\"error\":\"Unauthorized\",\"message\":\"Invalid OAuth token\"}");
+
+		CompletableFuture<Integer> first = batcher.lookupUserId("streamer_1");
+		CompletableFuture<Integer> second = batcher.lookupUserId("streamer_2");
+
+		assertThrows(Exception.class, () -> first.get(5, TimeUnit.SECONDS));
+		assertThrows(Exception.class, () -> second.get(5, TimeUnit.SECONDS));
+	}
+
+	@Test
+	void testLookupUserId_UnauthorizedInvalidatesToken() throws Exception {
+		batcher.http = new StubHttpEngine(request -> StubHttpEngine.status(401,
+				"{\"error\":\"Unauthorized\",\"status\":401,\"message\":\"Invalid OAuth token\"}"));
+
+		CompletableFuture<Integer> lookup = batcher.lookupUserId("streamer_1");
+
+		assertThrows(Exception.class, () -> lookup.get(5, TimeUnit.SECONDS));
+		verify(mockTokenManager).invalidateValidation();
+	}
+
+	@Test
+	void testLookupUserId_BlankLogin_Throws() {
+		assertThrows(IllegalArgumentException.class, () -> batcher.lookupUserId(" "));
+	}
+}
@@ -0,0 +1,65 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class HttpConnectionPoolTest {
+
+	private static final String PROPERTY = "songs.http.testSetting";
+
+	@AfterEach
+	void tearDown() {
+		System.clearProperty(PROPERTY);
+	}
+
+	@Test
+	void testReadSetting_Unset_ReturnsDefault() {
+		assertEquals(7, HttpConnectionPool.readSetting(PROPERTY, 7));
+	}
+
+	@Test
+	void testReadSetting_Valid_ReturnsValue() {
+		System.setProperty(PROPERTY, " 25 ");
+		assertEquals(25, HttpConnectionPool.readSetting(PROPERTY, 7));
+	}
+
+	@Test
+	void testReadSetting_InvalidOrNonPositive_ReturnsDefault() {
+		System.setProperty(PROPERTY, "lots");
+		assertEquals(7, HttpConnectionPool.readSetting(PROPERTY, 7));
+
+		System.setProperty(PROPERTY, "0");
+		assertEquals(7, HttpConnectionPool.readSetting(PROPERTY, 7));
+	}
+
+	@Test
+	void testSingletonUsesPool() {
+		HttpClientSingleton.getInstance();
+
+		PoolStats total = HttpConnectionPool.getTotalStats();
+
+		assertTrue(total.getMax() > 2, "The pool should allow more than the Apache default");
+		assertEquals(0, total.getLeased());
+		assertNotNull(HttpConnectionPool.getRouteStats());
+	}
+
+	@Test
+	void testKeepAlive_UsesServerHeaderOrFallback() {
+		ConnectionKeepAliveStrategy strategy = HttpConnectionPool.keepAliveStrategy();
+
+		HttpResponse withHeader = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		withHeader.addHeader("Keep-Alive", "timeout=5");
+		assertEquals(5000, strategy.getKeepAliveDuration(withHeader, new BasicHttpContext()));
+
+		HttpResponse withoutHeader = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+		assertEquals(30000, strategy.getKeepAliveDuration(withoutHeader, new BasicHttpContext()));
+	}
+}
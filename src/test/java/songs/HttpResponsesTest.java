@@ -0,0 +1,77 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.BasicHttpEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.util.EntityUtils;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HttpResponsesTest {
+
+	private CloseableHttpClient client;
+	private CloseableHttpResponse response;
+	private AtomicBoolean streamClosed;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		client = mock(CloseableHttpClient.class);
+		response = mock(CloseableHttpResponse.class);
+		streamClosed = new AtomicBoolean(false);
+
+		BasicHttpEntity entity = new BasicHttpEntity();
+		entity.setContent(new ByteArrayInputStream("{\"data\": []}".getBytes(StandardCharsets.UTF_8)) {
+			@Override
+			public void close() throws IOException {
+				streamClosed.set(true);
+				super.close();
+			}
+		});
+
+		when(response.getEntity()).thenReturn(entity);
+		when(client.execute(any(HttpUriRequest.class))).thenReturn(response);
+	}
+
+	@Test
+	void testExecute_ReturnsReaderResultAndReleases() throws Exception {
+		String body = HttpResponses.execute(client, new HttpGet("http://localhost/"),
+				r -> EntityUtils.toString(r.getEntity()));
+
+		assertEquals("{\"data\": []}", body);
+		verify(response).close();
+	}
+
+	@Test
+	void testExecute_UnreadEntity_IsConsumed() throws Exception {
+		Integer result = HttpResponses.execute(client, new HttpGet("http://localhost/"), r -> 1);
+
+		assertEquals(1, result);
+		assertTrue(streamClosed.get(), "The entity should be consumed even when the reader ignores it");
+		verify(response).close();
+	}
+
+	@Test
+	void testExecute_ReaderThrows_StillReleases() throws Exception {
+		assertThrows(IllegalArgumentException.class, () -> HttpResponses.execute(client,
+				new HttpGet("http://localhost/"), r -> { throw new IllegalArgumentException("boom"); }));
+
+		assertTrue(streamClosed.get());
+		verify(response).close();
+	}
+
+	@Test
+	void testRelease_NullResponse_DoesNothing() {
+		assertDoesNotThrow(() -> HttpResponses.release(null));
+	}
+}
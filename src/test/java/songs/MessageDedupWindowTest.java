@@ -0,0 +1,87 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+class MessageDedupWindowTest {
+
+	private static final long NOW = Instant.parse("2024-12-09T10:30:00Z").toEpochMilli();
+	private static final String RECENT = "2024-12-09T10:29:00.123456789Z";
+
+	private final MessageDedupWindow window = new MessageDedupWindow(4, Duration.ofMinutes(10));
+
+	@Test
+	void testAccept_RejectsRepeatedId() {
+		assertTrue(window.accept("a", RECENT, NOW));
+		assertFalse(window.accept("a", RECENT, NOW));
+		assertTrue(window.accept("b", RECENT, NOW));
+		assertEquals(1, window.getDuplicateCount());
+	}
+
+	@Test
+	void testAccept_ForgetsOldestOnceFull() {
+		for (String id : new String[] { "a", "b", "c", "d", "e" }) {
+			assertTrue(window.accept(id, RECENT, NOW));
+		}
+
+		assertTrue(window.accept("a", RECENT, NOW), "The oldest id should have been pushed out of the window");
+		assertFalse(window.accept("e", RECENT, NOW));
+	}
+
+	@Test
+	void testAccept_RejectsMessagesPastTheAgeLimit() {
+		assertFalse(window.accept("a", "2024-12-09T10:19:59Z", NOW));
+		assertTrue(window.accept("b", "2024-12-09T10:20:01Z", NOW));
+		assertEquals(1, window.getStaleCount());
+	}
+
+	@Test
+	void testAccept_MissingOrUnreadableFieldsSkipTheirCheck() {
+		assertTrue(window.accept(null, RECENT, NOW));
+		assertTrue(window.accept("", RECENT, NOW));
+		assertTrue(window.accept("a", null, NOW));
+		assertTrue(window.accept("b", "yesterday", NOW));
+		assertFalse(window.accept("a", null, NOW));
+	}
+
+	@Test
+	void testAccept_MatchesSimpleModelUnderChurn() {
+		// Small alphabet and window so probe runs collide and evictions shift entries
+		int capacity = 16;
+		MessageDedupWindow churned = new MessageDedupWindow(capacity, Duration.ofMinutes(10));
+		Deque<String> model = new ArrayDeque<>();
+		Set<String> modelSet = new HashSet<>();
+		Random random = new Random(42);
+
+		for (int i = 0; i < 20000; i++) {
+			String id = "id-" + random.nextInt(64);
+			boolean expected = !modelSet.contains(id);
+
+			if (expected) {
+				model.addLast(id);
+				modelSet.add(id);
+
+				if (model.size() > capacity) {
+					modelSet.remove(model.removeFirst());
+				}
+			}
+
+			assertEquals(expected, churned.accept(id, null, NOW), "Mismatch at step " + i + " for " + id);
+		}
+	}
+
+	@Test
+	void testConstructor_RejectsBadArguments() {
+		assertThrows(IllegalArgumentException.class, () -> new MessageDedupWindow(0, Duration.ofMinutes(10)));
+		assertThrows(IllegalArgumentException.class, () -> new MessageDedupWindow(4, Duration.ofMinutes(-1)));
+	}
+}
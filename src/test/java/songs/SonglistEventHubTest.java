@@ -0,0 +1,200 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+import io.socket.emitter.Emitter;
+
+class SonglistEventHubTest {
+
+	private SonglistRuntime runtime;
+	private RecordingHub hub;
+
+	/**
+	 * Hands out mock sockets and keeps the listeners registered on them, so tests can fire events.
+	 */
+	static class RecordingHub extends SonglistEventHub {
+		final List<Socket> sockets = new ArrayList<>();
+		final Map<Socket, Map<String, Emitter.Listener>> listeners = new ConcurrentHashMap<>();
+
+		RecordingHub(SonglistRuntime runtime, int connections) {
+			super(runtime, connections);
+		}
+
+		@Override
+		Socket openSocket(Connection connection, IO.Options options) {
+			Socket socket = mock(Socket.class);
+			Map<String, Emitter.Listener> socketListeners = new ConcurrentHashMap<>();
+
+			when(socket.on(anyString(), any(Emitter.Listener.class))).thenAnswer(invocation -> {
+				socketListeners.put(invocation.getArgument(0), invocation.getArgument(1));
+				return socket;
+			});
+
+			sockets.add(socket);
+			listeners.put(socket, socketListeners);
+			return socket;
+		}
+
+		void fire(int socketIndex, String event, Object... args) {
+			listeners.get(sockets.get(socketIndex)).get(event).call(args);
+		}
+	}
+
+	@BeforeEach
+	void setUp() {
+		runtime = new SonglistRuntime(1);
+		hub = new RecordingHub(runtime, 1);
+	}
+
+	@AfterEach
+	void tearDown() {
+		runtime.shutdown();
+	}
+
+	@Test
+	void testJoin_OpensOneConnectionForEveryRoom() {
+		hub.join(1, () -> {});
+		hub.join(2, () -> {});
+		hub.join(3, () -> {});
+
+		assertEquals(1, hub.sockets.size());
+		assertEquals(3, hub.getRoomCount());
+		verify(hub.sockets.get(0), times(1)).connect();
+	}
+
+	@Test
+	void testConnect_JoinsEveryRoomAndAgainAfterReconnect() {
+		hub.join(1, () -> {});
+		hub.join(2, () -> {});
+		Socket socket = hub.sockets.get(0);
+
+		hub.fire(0, Socket.EVENT_CONNECT);
+		verify(socket).emit("join-room", 1);
+		verify(socket).emit("join-room", 2);
+
+		hub.fire(0, Socket.EVENT_DISCONNECT, "transport close");
+		hub.join(3, () -> {});
+		verify(socket, never()).emit("join-room", 3);
+
+		// The server forgot every room, so the reconnect joins all three at once
+		hub.fire(0, Socket.EVENT_CONNECT);
+		verify(socket, times(2)).emit("join-room", 1);
+		verify(socket, times(2)).emit("join-room", 2);
+		verify(socket, times(1)).emit("join-room", 3);
+		assertEquals(2, hub.getRejoinCount());
+	}
+
+	@Test
+	void testJoin_WhileConnectedJoinsRightAway() {
+		hub.join(1, () -> {});
+		hub.fire(0, Socket.EVENT_CONNECT);
+
+		hub.join(2, () -> {});
+
+		verify(hub.sockets.get(0)).emit("join-room", 2);
+	}
+
+	@Test
+	void testNewPlayHistory_GoesToTheRoomInThePayload() {
+		AtomicInteger first = new AtomicInteger();
+		AtomicInteger second = new AtomicInteger();
+		hub.join(1, first::incrementAndGet);
+		hub.join(2, second::incrementAndGet);
+
+		hub.fire(0, "new-playhistory", new JSONObject().put("streamerId", 2).put("id", 48213907));
+		hub.fire(0, "new-playhistory", 1);
+		hub.fire(0, "new-playhistory", new JSONObject().put("streamer", new JSONObject().put("id", 2)));
+		hub.fire(0, "new-playhistory", 99);
+
+		assertEquals(1, first.get());
+		assertEquals(2, second.get());
+		assertEquals(1, hub.getForeignCount());
+		assertEquals(3, hub.getDeliveredCount());
+	}
+
+	@Test
+	void testNewPlayHistory_WithoutAnIdGoesToEveryRoom() {
+		AtomicInteger first = new AtomicInteger();
+		AtomicInteger second = new AtomicInteger();
+		hub.join(1, first::incrementAndGet);
+		hub.join(2, second::incrementAndGet);
+
+		hub.fire(0, "new-playhistory");
+		hub.fire(0, "new-playhistory", new JSONObject().put("note", "no id"));
+
+		assertEquals(2, first.get());
+		assertEquals(2, second.get());
+		assertEquals(2, hub.getUnroutedCount());
+	}
+
+	@Test
+	void testClose_LeavesTheRoomOnceTheLastListenerGoes() {
+		SonglistEventHub.Registration a = hub.join(1, () -> {});
+		SonglistEventHub.Registration b = hub.join(1, () -> {});
+		SonglistEventHub.Registration other = hub.join(2, () -> {});
+		Socket socket = hub.sockets.get(0);
+		hub.fire(0, Socket.EVENT_CONNECT);
+
+		a.close();
+		verify(socket, never()).emit("leave-room", 1);
+
+		b.close();
+		b.close();
+		verify(socket, times(1)).emit("leave-room", 1);
+		assertEquals(1, hub.getRoomCount());
+
+		other.close();
+		verify(socket).close();
+		assertEquals(0, hub.getOpenConnectionCount());
+
+		// The next join starts a fresh connection
+		hub.join(3, () -> {});
+		assertEquals(2, hub.sockets.size());
+	}
+
+	@Test
+	void testRooms_AreSpreadOverConnections() {
+		RecordingHub spread = new RecordingHub(runtime, 2);
+
+		for (int id = 0; id < 10; id++) {
+			spread.join(id, () -> {});
+		}
+
+		assertEquals(2, spread.sockets.size());
+		assertEquals(2, spread.getOpenConnectionCount());
+		assertNotSame(spread.connectionFor(1), spread.connectionFor(2));
+		assertSame(spread.connectionFor(1), spread.connectionFor(3));
+	}
+
+	@Test
+	void testReadRoomId_AcceptsTheShapesSeenOnTheWire() {
+		assertEquals(5, SonglistEventHub.readRoomId(5));
+		assertEquals(5, SonglistEventHub.readRoomId("5"));
+		assertEquals(5, SonglistEventHub.readRoomId("{\"streamerId\":\"5\"}"));
+		assertEquals(5, SonglistEventHub.readRoomId(new JSONObject().put("room", 5)));
+		assertEquals(-1, SonglistEventHub.readRoomId("not an id"));
+		assertEquals(-1, SonglistEventHub.readRoomId((Object[]) null));
+	}
+
+	@Test
+	void testJoin_RejectsInvalidArguments() {
+		assertThrows(IllegalArgumentException.class, () -> hub.join(-1, () -> {}));
+		assertThrows(IllegalArgumentException.class, () -> hub.join(1, null));
+		assertThrows(IllegalArgumentException.class, () -> new SonglistEventHub(runtime, 0));
+	}
+}
@@ -0,0 +1,105 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SonglistExporterTest {
+
+	private static final Instant START = Instant.parse("2024-01-15T10:30:00Z");
+
+	@TempDir
+	Path directory;
+
+	private static SonglistExporter.SongSource songs(int count, Duration spacing) {
+		return consumer -> {
+			for (int i = 1; i <= count; i++) {
+				consumer.accept("Song " + i, spacing.multipliedBy(i));
+			}
+		};
+	}
+
+	private static String render(SonglistExporter.SongSource songs) throws Exception {
+		StringWriter writer = new StringWriter();
+		SonglistExporter.export(writer, START, songs);
+		return writer.toString();
+	}
+
+	@Test
+	void testExport_StampsEachSongWithThePreviousPlay() throws Exception {
+		assertEquals("Song 1: 10:30:00\nSong 2: 00:05:00\nSong 3: 00:10:00",
+				render(songs(3, Duration.ofMinutes(5))));
+	}
+
+	@Test
+	void testExport_HoursContinuePastOneDay() throws Exception {
+		String rendered = render(consumer -> {
+			consumer.accept("Early", Duration.ofHours(23).plusMinutes(59).plusSeconds(59));
+			consumer.accept("Late", Duration.ofHours(25).plusSeconds(7));
+			consumer.accept("Marathon", Duration.ofHours(150));
+		});
+
+		assertEquals("Early: 10:30:00\nLate: 23:59:59\nMarathon: 25:00:07", rendered);
+	}
+
+	@Test
+	void testExport_EmptySourceWritesEmptyFile() throws Exception {
+		Path output = directory.resolve("empty.txt");
+
+		assertEquals(0, SonglistExporter.export(output, START, consumer -> {}));
+		assertEquals("", Files.readString(output));
+	}
+
+	@Test
+	void testExport_ReplacesExistingFile() throws Exception {
+		Path output = directory.resolve("songs.txt");
+		Files.writeString(output, "a much longer list that was written before the stream ended");
+
+		assertEquals(2, SonglistExporter.export(output, START, songs(2, Duration.ofMinutes(1))));
+		assertEquals("Song 1: 10:30:00\nSong 2: 00:01:00", Files.readString(output));
+	}
+
+	@Test
+	void testExport_ConcurrentExportsDoNotInterfere() throws Exception {
+		String expected = render(songs(2000, Duration.ofSeconds(61)));
+		ExecutorService pool = Executors.newFixedThreadPool(8);
+
+		try {
+			List<Future<String>> results = new ArrayList<>();
+
+			for (int i = 0; i < 16; i++) {
+				Path output = directory.resolve("streamer-" + i + ".txt");
+				results.add(pool.submit(() -> {
+					SonglistExporter.export(output, START, songs(2000, Duration.ofSeconds(61)));
+					return Files.readString(output);
+				}));
+			}
+
+			for (Future<String> result : results) {
+				assertEquals(expected, result.get());
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	@Test
+	void testExport_RejectsMissingArguments() {
+		assertThrows(IllegalArgumentException.class,
+				() -> SonglistExporter.export((Path) null, START, consumer -> {}));
+		assertThrows(IllegalArgumentException.class,
+				() -> SonglistExporter.export(directory.resolve("x.txt"), null, consumer -> {}));
+	}
+}
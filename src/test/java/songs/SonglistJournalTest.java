@@ -0,0 +1,152 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SonglistJournalTest {
+
+	@TempDir
+	Path directory;
+
+	private List<SonglistJournal.Entry> replay(Path path) throws IOException {
+		List<SonglistJournal.Entry> entries = new ArrayList<>();
+		SonglistJournal.replay(path, entries::add);
+		return entries;
+	}
+
+	@Test
+	void testAppend_ReplaysInOrder() throws Exception {
+		Path path = directory.resolve("stream.journal");
+
+		try (SonglistJournal journal = SonglistJournal.open(path, SonglistJournal.FsyncPolicy.OS, Duration.ZERO)) {
+			journal.append(Duration.ofSeconds(90), "1", "First");
+			journal.append(Duration.ofHours(25), "2", "Second");
+		}
+
+		List<SonglistJournal.Entry> entries = replay(path);
+
+		assertEquals(2, entries.size());
+		assertEquals("First", entries.get(0).title);
+		assertEquals("1", entries.get(0).itemId);
+		assertEquals(Duration.ofSeconds(90), entries.get(0).offset);
+		assertEquals(Duration.ofHours(25), entries.get(1).offset);
+	}
+
+	@Test
+	void testAppend_EscapesSeparatorsInTitles() throws Exception {
+		Path path = directory.resolve("stream.journal");
+		String title = "Tab\there\nnew line \\ backslash\r";
+
+		try (SonglistJournal journal = SonglistJournal.open(path, SonglistJournal.FsyncPolicy.OS, Duration.ZERO)) {
+			journal.append(Duration.ZERO, null, title);
+		}
+
+		List<SonglistJournal.Entry> entries = replay(path);
+
+		assertEquals(1, entries.size());
+		assertEquals(title, entries.get(0).title);
+		assertEquals("", entries.get(0).itemId);
+	}
+
+	@Test
+	void testAppend_VisibleBeforeClose() throws Exception {
+		Path path = directory.resolve("stream.journal");
+
+		try (SonglistJournal journal = SonglistJournal.open(path, SonglistJournal.FsyncPolicy.OS, Duration.ZERO)) {
+			journal.append(Duration.ZERO, "1", "First");
+
+			// Nothing is held back in the buffer, so a process crash here loses nothing
+			assertEquals(1, replay(path).size());
+		}
+	}
+
+	@Test
+	void testOpen_DropsTornLastLineAndKeepsAppending() throws Exception {
+		Path path = directory.resolve("stream.journal");
+		Files.writeString(path, "1000\t1\tFirst\n2000\t2\tSec", StandardCharsets.UTF_8);
+
+		assertEquals(1, replay(path).size(), "A torn line must not be replayed");
+
+		try (SonglistJournal journal = SonglistJournal.open(path, SonglistJournal.FsyncPolicy.OS, Duration.ZERO)) {
+			journal.append(Duration.ofSeconds(3), "3", "Third");
+		}
+
+		assertEquals("1000\t1\tFirst\n3000\t3\tThird\n", Files.readString(path));
+	}
+
+	@Test
+	void testReplay_SkipsMalformedLines() throws Exception {
+		Path path = directory.resolve("stream.journal");
+		Files.writeString(path, "garbage\nabc\t1\tBad offset\n1000\t1\tFirst\n", StandardCharsets.UTF_8,
+				StandardOpenOption.CREATE);
+
+		List<SonglistJournal.Entry> entries = replay(path);
+
+		assertEquals(1, entries.size());
+		assertEquals("First", entries.get(0).title);
+	}
+
+	@Test
+	void testReplay_MissingFileIsEmpty() throws Exception {
+		assertTrue(replay(directory.resolve("missing.journal")).isEmpty());
+	}
+
+	@Test
+	void testFsyncPolicy_AlwaysSyncsEveryAppend() throws Exception {
+		Path path = directory.resolve("stream.journal");
+
+		try (SonglistJournal journal = SonglistJournal.open(path, SonglistJournal.FsyncPolicy.ALWAYS, Duration.ZERO)) {
+			journal.append(Duration.ZERO, "1", "First");
+			journal.append(Duration.ZERO, "2", "Second");
+
+			assertEquals(2, journal.getSyncCount());
+		}
+	}
+
+	@Test
+	void testFsyncPolicy_IntervalSyncsAtMostOncePerInterval() throws Exception {
+		Path path = directory.resolve("stream.journal");
+		SonglistJournal journal = SonglistJournal.open(path, SonglistJournal.FsyncPolicy.INTERVAL, Duration.ofHours(1));
+
+		journal.append(Duration.ZERO, "1", "First");
+		journal.append(Duration.ZERO, "2", "Second");
+		assertEquals(0, journal.getSyncCount());
+
+		journal.close();
+		assertEquals(1, journal.getSyncCount(), "Closing should sync what is outstanding");
+		assertEquals(2, journal.getAppendCount());
+	}
+
+	@Test
+	void testAppend_AfterCloseThrows() throws Exception {
+		SonglistJournal journal = SonglistJournal.open(directory.resolve("stream.journal"),
+				SonglistJournal.FsyncPolicy.OS, Duration.ZERO);
+		journal.close();
+
+		assertThrows(IOException.class, () -> journal.append(Duration.ZERO, "1", "First"));
+	}
+
+	@Test
+	void testFsyncPolicy_FromProperty() {
+		try {
+			System.setProperty(SonglistJournal.FSYNC_PROPERTY, "always");
+			assertEquals(SonglistJournal.FsyncPolicy.ALWAYS, SonglistJournal.FsyncPolicy.fromProperty());
+
+			System.setProperty(SonglistJournal.FSYNC_PROPERTY, "sometimes");
+			assertEquals(SonglistJournal.FsyncPolicy.INTERVAL, SonglistJournal.FsyncPolicy.fromProperty());
+		} finally {
+			System.clearProperty(SonglistJournal.FSYNC_PROPERTY);
+		}
+	}
+}
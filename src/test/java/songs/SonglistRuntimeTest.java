@@ -0,0 +1,133 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import io.socket.client.IO;
+import io.socket.client.Socket;
+
+class SonglistRuntimeTest {
+
+	private SonglistRuntime runtime;
+
+	@BeforeEach
+	void setUp() {
+		runtime = new SonglistRuntime(2);
+	}
+
+	@AfterEach
+	void tearDown() {
+		runtime.shutdown();
+	}
+
+	private static IO.Options options() {
+		IO.Options options = new IO.Options();
+		options.transports = new String[] { "websocket" };
+		options.reconnection = false;
+		return options;
+	}
+
+	@Test
+	void testClose_ReleasesTheHandleAndItsSocket() throws Exception {
+		Object owner = new Object();
+		SonglistRuntime.Handle handle = runtime.lease(owner, "streamer");
+		Socket socket = handle.openSocket("http://localhost:1", options());
+
+		assertSame(socket, handle.getSocket());
+		assertEquals(1, runtime.getOpenHandleCount());
+		assertEquals(1, runtime.getOpenSocketCount());
+
+		handle.close();
+		handle.close();
+
+		assertTrue(handle.isClosed());
+		assertNull(handle.getSocket());
+		assertEquals(0, runtime.getOpenHandleCount());
+		assertEquals(0, runtime.getOpenSocketCount());
+		assertEquals(0, runtime.getLeakedCount());
+		assertThrows(IllegalStateException.class, () -> handle.openSocket("http://localhost:1", options()));
+	}
+
+	@Test
+	void testAttached_IsClosedWithTheHandle() throws Exception {
+		SonglistRuntime.Handle handle = runtime.lease(this, "streamer");
+		AtomicInteger closed = new AtomicInteger();
+
+		handle.attach(closed::incrementAndGet);
+		handle.close();
+		handle.attach(closed::incrementAndGet);
+
+		assertEquals(2, closed.get());
+	}
+
+	@Test
+	void testOpenSocket_ReplacesThePreviousSocket() throws Exception {
+		SonglistRuntime.Handle handle = runtime.lease(this, "streamer");
+		Socket first = handle.openSocket("http://localhost:1", options());
+		Socket second = handle.openSocket("http://localhost:1", options());
+
+		assertNotSame(first, second);
+		assertEquals(1, runtime.getOpenSocketCount());
+
+		handle.close();
+	}
+
+	@Test
+	void testDroppedOwner_IsReleasedAndCountedAsLeaked() throws Exception {
+		leaseAndForget();
+
+		long deadline = System.currentTimeMillis() + 10_000;
+
+		while (runtime.getLeakedCount() == 0 && System.currentTimeMillis() < deadline) {
+			System.gc();
+			Thread.sleep(20);
+		}
+
+		assertEquals(1, runtime.getLeakedCount());
+		assertEquals(0, runtime.getOpenHandleCount());
+		assertEquals(0, runtime.getOpenSocketCount());
+	}
+
+	private void leaseAndForget() throws Exception {
+		runtime.lease(new Object(), "forgotten").openSocket("http://localhost:1", options());
+	}
+
+	@Test
+	void testManySessions_ShareAFixedNumberOfThreads() throws Exception {
+		int sessions = 200;
+		CountDownLatch ran = new CountDownLatch(sessions);
+		List<Object> owners = new ArrayList<>();
+
+		for (int i = 0; i < sessions; i++) {
+			Object owner = new Object();
+			owners.add(owner);
+
+			SonglistRuntime.Handle handle = runtime.lease(owner, "streamer" + i);
+			handle.openSocket("http://localhost:1", options());
+			runtime.getScheduler().schedule(ran::countDown, 1, TimeUnit.MILLISECONDS);
+			handle.close();
+		}
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		assertEquals(sessions, runtime.getLeasedCount());
+		assertEquals(0, runtime.getOpenHandleCount());
+		assertEquals(0, runtime.getOpenSocketCount());
+		assertEquals(0, runtime.getLeakedCount());
+		assertTrue(runtime.getThreadCount() <= 2, "threads: " + runtime.getThreadCount());
+	}
+
+	@Test
+	void testLease_RequiresOwnerAndStreamer() {
+		assertThrows(IllegalArgumentException.class, () -> runtime.lease(null, "streamer"));
+		assertThrows(IllegalArgumentException.class, () -> runtime.lease(this, null));
+	}
+}
@@ -0,0 +1,153 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SonglistSinkPipelineTest {
+
+	private static final Instant START = Instant.parse("2024-01-15T10:30:00Z");
+
+	@TempDir
+	Path directory;
+
+	private SonglistSinkPipeline pipeline;
+
+	@BeforeEach
+	void setUp() {
+		pipeline = new SonglistSinkPipeline("songlist-sink-test");
+	}
+
+	@AfterEach
+	void tearDown() {
+		pipeline.stop();
+	}
+
+	private static List<SonglistSink> allFormats() {
+		List<SonglistSink> sinks = new ArrayList<>();
+
+		for (SonglistFormat format : SonglistFormat.values()) {
+			sinks.add(format.newSink());
+		}
+
+		return sinks;
+	}
+
+	@Test
+	void testClose_WritesEveryFormat() throws Exception {
+		SonglistSinkPipeline.Session session = pipeline.open(directory.resolve("nested"), "streamer-1", START, allFormats());
+		session.record("First", Duration.ofMinutes(5));
+		session.record("Second", Duration.ofMinutes(10));
+		session.close().get(5, TimeUnit.SECONDS);
+
+		List<Path> paths = session.getPaths();
+
+		assertEquals(4, paths.size());
+		assertEquals(directory.resolve("nested").resolve("streamer-1.txt"), paths.get(0));
+		assertEquals("First: 10:30:00\nSecond: 00:05:00", Files.readString(paths.get(0)));
+		assertEquals(3, Files.readAllLines(paths.get(1)).size());
+		assertEquals(2, Files.readAllLines(paths.get(2)).size());
+		assertEquals(List.of("0:00 Stream start", "5:00 First", "10:00 Second"), Files.readAllLines(paths.get(3)));
+		assertEquals(2, pipeline.getSongCount());
+		assertEquals(0, pipeline.getErrorCount());
+	}
+
+	@Test
+	void testFlush_MakesRecordedSongsVisible() throws Exception {
+		SonglistSinkPipeline.Session session = pipeline.open(directory, "streamer", START, List.of(new SonglistSink.JsonLines()));
+		session.record("First", Duration.ofMinutes(1));
+		session.flush().get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, Files.readAllLines(session.getPaths().get(0)).size());
+
+		session.close().get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void testBurst_IsCommittedInFarFewerFlushesThanSongs() throws Exception {
+		List<SonglistSinkPipeline.Session> sessions = new ArrayList<>();
+
+		for (int s = 0; s < 8; s++) {
+			sessions.add(pipeline.open(directory, "streamer-" + s, START, allFormats()));
+		}
+
+		for (int i = 0; i < 500; i++) {
+			for (SonglistSinkPipeline.Session session : sessions) {
+				session.record("Song " + i, Duration.ofSeconds(i));
+			}
+		}
+
+		for (SonglistSinkPipeline.Session session : sessions) {
+			session.close().get(5, TimeUnit.SECONDS);
+		}
+
+		assertEquals(4000, pipeline.getSongCount());
+		assertTrue(pipeline.getFlushCount() < pipeline.getSongCount() / 4, "flushes: " + pipeline.getFlushCount());
+		assertTrue(pipeline.getMaxBatchSize() > 1);
+
+		for (SonglistSinkPipeline.Session session : sessions) {
+			assertEquals(500, Files.readAllLines(session.getPaths().get(0)).size());
+		}
+	}
+
+	@Test
+	void testFailingSink_DoesNotStopTheOthers() throws Exception {
+		SonglistSink broken = new SonglistSink() {
+			@Override
+			public String getExtension() {
+				return ".broken";
+			}
+
+			@Override
+			protected void song(StringBuilder line, Instant startTime, String title, Duration offset) {
+				throw new IllegalStateException("broken sink");
+			}
+		};
+
+		SonglistSinkPipeline.Session session = pipeline.open(directory, "streamer", START,
+				List.of(broken, new SonglistSink.Text()));
+		session.record("First", Duration.ofMinutes(1));
+		session.record("Second", Duration.ofMinutes(2));
+		session.close().get(5, TimeUnit.SECONDS);
+
+		assertEquals(1, pipeline.getErrorCount());
+		assertEquals("First: 10:30:00\nSecond: 00:01:00", Files.readString(session.getPaths().get(1)));
+	}
+
+	@Test
+	void testRecordAfterClose_IsIgnored() throws Exception {
+		SonglistSinkPipeline.Session session = pipeline.open(directory, "streamer", START, List.of(new SonglistSink.Text()));
+		session.record("First", Duration.ofMinutes(1));
+		session.close().get(5, TimeUnit.SECONDS);
+
+		session.record("Late", Duration.ofMinutes(2));
+		session.flush().get(5, TimeUnit.SECONDS);
+
+		assertEquals("First: 10:30:00", Files.readString(session.getPaths().get(0)));
+	}
+
+	@Test
+	void testStop_EndsTheWriterThread() throws Exception {
+		SonglistSinkPipeline stopped = new SonglistSinkPipeline("songlist-sink-stop");
+		stopped.stop();
+
+		long deadline = System.currentTimeMillis() + 5000;
+
+		while (stopped.isRunning() && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertFalse(stopped.isRunning());
+	}
+}
@@ -0,0 +1,89 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class SonglistSinkTest {
+
+	private static final Instant START = Instant.parse("2024-01-15T10:30:00Z");
+
+	private static String render(SonglistSink sink, Object... songs) throws Exception {
+		StringWriter writer = new StringWriter();
+		sink.writeBegin(writer, START);
+
+		for (int i = 0; i < songs.length; i += 2) {
+			sink.writeSong(writer, START, (String) songs[i], (Duration) songs[i + 1]);
+		}
+
+		sink.writeEnd(writer);
+		return writer.toString();
+	}
+
+	@Test
+	void testText_MatchesTheExporter() throws Exception {
+		StringWriter exported = new StringWriter();
+		SonglistExporter.export(exported, START, consumer -> {
+			consumer.accept("First", Duration.ofMinutes(5));
+			consumer.accept("Second", Duration.ofHours(26));
+			consumer.accept("Third", Duration.ofHours(27));
+		});
+
+		String rendered = render(new SonglistSink.Text(),
+				"First", Duration.ofMinutes(5), "Second", Duration.ofHours(26), "Third", Duration.ofHours(27));
+
+		assertEquals(exported.toString(), rendered);
+	}
+
+	@Test
+	void testCsv_QuotesTitlesThatNeedIt() throws Exception {
+		String rendered = render(new SonglistSink.Csv(),
+				"Plain", Duration.ofSeconds(65), "Hello, \"World\"", Duration.ofHours(25));
+
+		assertEquals("offset,offset_seconds,played_at,title\r\n"
+				+ "00:01:05,65,2024-01-15T10:31:05Z,Plain\r\n"
+				+ "25:00:00,90000,2024-01-16T11:30:00Z,\"Hello, \"\"World\"\"\"\r\n", rendered);
+	}
+
+	@Test
+	void testJsonLines_EscapesTitles() throws Exception {
+		String rendered = render(new SonglistSink.JsonLines(), "Say \"hi\"", Duration.ofMinutes(1));
+
+		assertEquals("{\"title\":\"Say \\\"hi\\\"\",\"offset_seconds\":60,\"played_at\":\"2024-01-15T10:31:00Z\"}\n", rendered);
+	}
+
+	@Test
+	void testYouTubeChapters_StartAtZero() throws Exception {
+		String rendered = render(new SonglistSink.YouTubeChapters(),
+				"First", Duration.ofSeconds(95), "Second", Duration.ofHours(1).plusSeconds(7));
+
+		assertEquals("0:00 Stream start\n1:35 First\n1:00:07 Second\n", rendered);
+	}
+
+	@Test
+	void testYouTubeChapters_NoExtraChapterWhenFirstSongStartsTheStream() throws Exception {
+		assertEquals("0:00 Opener\n", render(new SonglistSink.YouTubeChapters(), "Opener", Duration.ZERO));
+	}
+
+	@Test
+	void testFormatParse_SkipsUnknownAndRepeatedNames() {
+		assertEquals(List.of(SonglistFormat.CSV, SonglistFormat.YOUTUBE_CHAPTERS),
+				SonglistFormat.parse(" CSV, chapters,csv, mp3 "));
+		assertTrue(SonglistFormat.parse("").isEmpty());
+		assertTrue(SonglistFormat.parse(null).isEmpty());
+	}
+
+	@Test
+	void testFormatNewSink_GivesAFreshSinkEachTime() {
+		for (SonglistFormat format : SonglistFormat.values()) {
+			assertNotSame(format.newSink(), format.newSink());
+		}
+
+		assertEquals(".jsonl", SonglistFormat.JSONL.newSink().getExtension());
+	}
+}
@@ -0,0 +1,135 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.StringWriter;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+class SonglistStoreTest {
+
+	@Test
+	void testAdd_KeepsPlayOrderAndRejectsRepeats() {
+		SonglistStore store = new SonglistStore();
+
+		assertTrue(store.add("First", Duration.ofMinutes(1)));
+		assertTrue(store.add("Second", Duration.ofMinutes(2)));
+		assertFalse(store.add("First", Duration.ofMinutes(3)));
+
+		assertEquals(2, store.size());
+		assertTrue(store.contains("Second"));
+		assertEquals(Duration.ofMinutes(1), store.get("First"));
+		assertNull(store.get("Missing"));
+		assertEquals("Second", store.snapshot().get(1).title);
+	}
+
+	@Test
+	void testAdd_GrowsAcrossManyChunks() {
+		SonglistStore store = new SonglistStore();
+
+		for (int i = 0; i < 10_000; i++) {
+			store.add("Song " + i, Duration.ofSeconds(i));
+		}
+
+		SonglistStore.Snapshot snapshot = store.snapshot();
+		int i = 0;
+
+		for (SonglistStore.Song song : snapshot) {
+			assertEquals("Song " + i, song.title);
+			assertEquals(Duration.ofSeconds(i), song.offset);
+			i++;
+		}
+
+		assertEquals(10_000, i);
+	}
+
+	@Test
+	void testSnapshot_IsUnchangedByLaterAddsAndClear() {
+		SonglistStore store = new SonglistStore();
+		store.add("First", Duration.ofMinutes(1));
+
+		SonglistStore.Snapshot snapshot = store.snapshot();
+		store.add("Second", Duration.ofMinutes(2));
+		store.clear();
+
+		assertEquals(1, snapshot.size());
+		assertEquals("First", snapshot.get(0).title);
+		assertThrows(IndexOutOfBoundsException.class, () -> snapshot.get(1));
+		assertTrue(store.isEmpty());
+		assertFalse(store.contains("First"));
+		assertTrue(store.add("First", Duration.ofMinutes(5)));
+	}
+
+	@Test
+	void testSnapshot_CanBeExported() throws Exception {
+		SonglistStore store = new SonglistStore();
+		store.add("First", Duration.ofMinutes(5));
+		store.add("Second", Duration.ofMinutes(10));
+
+		StringWriter writer = new StringWriter();
+		SonglistExporter.export(writer, Instant.parse("2024-01-15T10:30:00Z"), store.snapshot()::forEachSong);
+
+		assertEquals("First: 10:30:00\nSecond: 00:05:00", writer.toString());
+	}
+
+	@Test
+	void testReaders_NeverSeeATornViewWhileTheWriterAppends() throws Exception {
+		SonglistStore store = new SonglistStore();
+		AtomicBoolean done = new AtomicBoolean();
+		CountDownLatch started = new CountDownLatch(4);
+		ExecutorService readers = Executors.newFixedThreadPool(4);
+		List<Future<Integer>> results = new ArrayList<>();
+
+		try {
+			for (int r = 0; r < 4; r++) {
+				results.add(readers.submit(() -> {
+					started.countDown();
+					int snapshots = 0;
+
+					while (!done.get()) {
+						SonglistStore.Snapshot snapshot = store.snapshot();
+						int i = 0;
+
+						for (SonglistStore.Song song : snapshot) {
+							if (song == null || !song.title.equals("Song " + i)) {
+								throw new AssertionError("Torn view at " + i + " of " + snapshot.size());
+							}
+
+							i++;
+						}
+
+						snapshots++;
+					}
+
+					return snapshots;
+				}));
+			}
+
+			started.await(5, TimeUnit.SECONDS);
+
+			for (int i = 0; i < 50_000; i++) {
+				store.add("Song " + i, Duration.ofSeconds(i));
+			}
+
+			done.set(true);
+
+			for (Future<Integer> result : results) {
+				assertTrue(result.get(5, TimeUnit.SECONDS) > 0);
+			}
+		} finally {
+			readers.shutdownNow();
+		}
+
+		assertEquals(50_000, store.size());
+	}
+}
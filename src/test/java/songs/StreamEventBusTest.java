@@ -0,0 +1,223 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class StreamEventBusTest {
+
+	private StreamEventBus bus;
+
+	@AfterEach
+	void tearDown() {
+		if (bus != null) {
+			bus.close();
+		}
+	}
+
+	/**
+	 * Blocks in onStreamStart until released, and records every start time it is handed.
+	 */
+	private static class BlockingObserver implements StreamObserver {
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final List<String> startTimes = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void onStreamStart(String startTime) {
+			startTimes.add(startTime);
+			started.countDown();
+
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		@Override
+		public void onStreamEnd() {
+		}
+	}
+
+	@Test
+	void testPublish_DeliversOnObserverThread() throws Exception {
+		bus = new StreamEventBus();
+		Thread publisher = Thread.currentThread();
+		CountDownLatch delivered = new CountDownLatch(1);
+		List<Thread> deliveryThreads = new CopyOnWriteArrayList<>();
+
+		bus.subscribe(new StreamObserver() {
+			@Override
+			public void onStreamStart(String startTime) {
+				deliveryThreads.add(Thread.currentThread());
+				delivered.countDown();
+			}
+
+			@Override
+			public void onStreamEnd() {
+			}
+		});
+
+		bus.publish(observer -> observer.onStreamStart("t"));
+
+		assertTrue(delivered.await(5, TimeUnit.SECONDS));
+		assertNotSame(publisher, deliveryThreads.get(0));
+	}
+
+	@Test
+	void testSlowObserver_DoesNotDelayOthers() throws Exception {
+		bus = new StreamEventBus();
+		BlockingObserver slow = new BlockingObserver();
+		StreamObserver fast = mock(StreamObserver.class);
+
+		bus.subscribe(slow);
+		bus.subscribe(fast);
+
+		bus.publish(observer -> observer.onStreamStart("t"));
+
+		verify(fast, timeout(1000)).onStreamStart("t");
+		assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+		slow.release.countDown();
+	}
+
+	@Test
+	void testDefaultPolicy_NeverDropsAnEvent() throws Exception {
+		bus = new StreamEventBus(2, StreamEventBus.SlowObserverPolicy.KEEP_ALL, false);
+		BlockingObserver slow = new BlockingObserver();
+		bus.subscribe(slow);
+
+		bus.publish(observer -> observer.onStreamStart("first"));
+		assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 5; i++) {
+			String startTime = "queued-" + i;
+			bus.publish(observer -> observer.onStreamStart(startTime));
+		}
+
+		// Past the capacity, but nothing is lost
+		assertEquals(5, bus.getStats(slow).getQueueDepth());
+		assertEquals(0, bus.getStats(slow).getDropped());
+
+		slow.release.countDown();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (bus.getStats(slow).getDelivered() < 6 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(List.of("first", "queued-0", "queued-1", "queued-2", "queued-3", "queued-4"), slow.startTimes);
+	}
+
+	@Test
+	void testDefaultBus_KeepsEveryEvent() {
+		System.clearProperty(StreamEventBus.SLOW_POLICY_PROPERTY);
+
+		assertEquals(StreamEventBus.SlowObserverPolicy.KEEP_ALL, new StreamEventBus().getPolicy());
+	}
+
+	@Test
+	void testDropOldest_KeepsLatestEvents() throws Exception {
+		bus = new StreamEventBus(2, StreamEventBus.SlowObserverPolicy.DROP_OLDEST, false);
+		BlockingObserver slow = new BlockingObserver();
+		bus.subscribe(slow);
+
+		bus.publish(observer -> observer.onStreamStart("first"));
+		assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+
+		for (int i = 0; i < 5; i++) {
+			String startTime = "queued-" + i;
+			bus.publish(observer -> observer.onStreamStart(startTime));
+		}
+
+		StreamEventBus.ObserverStats stats = bus.getStats(slow);
+		assertEquals(2, stats.getQueueDepth());
+		assertEquals(3, stats.getDropped());
+
+		slow.release.countDown();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (bus.getStats(slow).getDelivered() < 3 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertEquals(List.of("first", "queued-3", "queued-4"), slow.startTimes);
+	}
+
+	@Test
+	void testDropNewest_DiscardsPublishedEvent() throws Exception {
+		bus = new StreamEventBus(1, StreamEventBus.SlowObserverPolicy.DROP_NEWEST, false);
+		BlockingObserver slow = new BlockingObserver();
+		bus.subscribe(slow);
+
+		bus.publish(observer -> observer.onStreamStart("first"));
+		assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+
+		bus.publish(observer -> observer.onStreamStart("kept"));
+		bus.publish(observer -> observer.onStreamStart("dropped"));
+
+		assertEquals(1, bus.getStats(slow).getDropped());
+		slow.release.countDown();
+	}
+
+	@Test
+	void testUnsubscribePolicy_RemovesSlowObserver() throws Exception {
+		bus = new StreamEventBus(1, StreamEventBus.SlowObserverPolicy.UNSUBSCRIBE, false);
+		BlockingObserver slow = new BlockingObserver();
+		bus.subscribe(slow);
+
+		bus.publish(observer -> observer.onStreamStart("first"));
+		assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+
+		bus.publish(observer -> observer.onStreamStart("queued"));
+		bus.publish(observer -> observer.onStreamStart("overflow"));
+
+		assertFalse(bus.isSubscribed(slow));
+		slow.release.countDown();
+	}
+
+	@Test
+	void testStats_RecordLag() throws Exception {
+		bus = new StreamEventBus();
+		BlockingObserver slow = new BlockingObserver();
+		bus.subscribe(slow);
+
+		bus.publish(observer -> observer.onStreamStart("first"));
+		assertTrue(slow.started.await(5, TimeUnit.SECONDS));
+		bus.publish(observer -> observer.onStreamStart("second"));
+
+		Thread.sleep(100);
+		slow.release.countDown();
+
+		long deadline = System.currentTimeMillis() + 5000;
+		while (bus.getStats(slow).getDelivered() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+
+		assertTrue(bus.getStats(slow).getMaxLagMillis() >= 100);
+	}
+
+	@Test
+	void testVirtualThreads_FallBackWhenUnsupported() {
+		bus = new StreamEventBus(4, StreamEventBus.SlowObserverPolicy.DROP_OLDEST, true);
+		StreamObserver observer = mock(StreamObserver.class);
+		bus.subscribe(observer);
+
+		bus.publish(o -> o.onStreamEnd());
+
+		verify(observer, timeout(1000)).onStreamEnd();
+	}
+
+	@Test
+	void testInvalidCapacity_Throws() {
+		assertThrows(IllegalArgumentException.class,
+				() -> new StreamEventBus(0, StreamEventBus.SlowObserverPolicy.DROP_OLDEST, false));
+	}
+}
@@ -0,0 +1,148 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class StreamScopeTest {
+
+	private ExecutorService executor;
+	private StreamScope scope;
+
+	@BeforeEach
+	void setUp() {
+		executor = BlockingWorkExecutor.newBoundedPool("stream-scope-test", 4);
+		scope = new StreamScope("streamer", executor);
+	}
+
+	@AfterEach
+	void tearDown() {
+		scope.close();
+		executor.shutdownNow();
+	}
+
+	@Test
+	void testFork_CompletesWithTheResult() throws Exception {
+		assertEquals("done", scope.fork(() -> "done").get(5, TimeUnit.SECONDS));
+		assertEquals(1, scope.getForkedCount());
+	}
+
+	@Test
+	void testFork_PassesFailuresThrough() {
+		CompletableFuture<Object> failed = scope.fork(() -> {
+			throw new IllegalStateException("boom");
+		});
+
+		ExecutionException e = assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+
+	@Test
+	void testJoin_WaitsForEveryTask() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Boolean> slow = scope.fork(() -> release.await(5, TimeUnit.SECONDS));
+
+		assertFalse(scope.join(50, TimeUnit.MILLISECONDS));
+		assertEquals(1, scope.getActiveCount());
+
+		release.countDown();
+
+		assertTrue(scope.join(5, TimeUnit.SECONDS));
+		assertTrue(slow.get());
+		assertEquals(0, scope.getActiveCount());
+	}
+
+	@Test
+	void testClose_InterruptsRunningTasks() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		AtomicBoolean interrupted = new AtomicBoolean();
+		CountDownLatch finished = new CountDownLatch(1);
+
+		CompletableFuture<Object> blocked = scope.fork(() -> {
+			started.countDown();
+
+			try {
+				Thread.sleep(60_000);
+			} catch (InterruptedException e) {
+				interrupted.set(true);
+			} finally {
+				finished.countDown();
+			}
+
+			return null;
+		});
+
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+		scope.close();
+
+		assertTrue(finished.await(5, TimeUnit.SECONDS));
+		assertTrue(interrupted.get());
+		assertTrue(blocked.isCancelled());
+		assertEquals(1, scope.getCancelledCount());
+		assertEquals(0, scope.getActiveCount());
+	}
+
+	@Test
+	void testTrack_JoinWaitsAndCloseCancels() throws Exception {
+		CompletableFuture<String> first = scope.track(new CompletableFuture<>());
+
+		assertFalse(scope.join(50, TimeUnit.MILLISECONDS));
+
+		first.complete("done");
+		assertTrue(scope.join(5, TimeUnit.SECONDS));
+
+		CompletableFuture<String> second = scope.track(new CompletableFuture<>());
+		scope.close();
+
+		assertTrue(second.isCancelled());
+		assertEquals(1, scope.getCancelledCount());
+		assertTrue(scope.track(new CompletableFuture<String>()).isCancelled());
+	}
+
+	@Test
+	void testForkAsync_IsInTheScopeBeforeTheWorkStarts() throws Exception {
+		CompletableFuture<String> request = new CompletableFuture<>();
+		AtomicBoolean trackedFirst = new AtomicBoolean();
+
+		CompletableFuture<String> fetch = scope.forkAsync(() -> {
+			trackedFirst.set(scope.getActiveCount() == 1);
+			return request;
+		});
+
+		assertTrue(trackedFirst.get());
+		assertFalse(scope.join(50, TimeUnit.MILLISECONDS));
+
+		request.complete("done");
+
+		assertTrue(scope.join(5, TimeUnit.SECONDS));
+		assertEquals("done", fetch.get());
+
+		scope.close();
+		AtomicBoolean started = new AtomicBoolean();
+		assertTrue(scope.forkAsync(() -> {
+			started.set(true);
+			return request;
+		}).isCancelled());
+		assertFalse(started.get());
+	}
+
+	@Test
+	void testFork_AfterCloseFails() {
+		scope.close();
+
+		CompletableFuture<String> late = scope.fork(() -> "late");
+
+		assertTrue(scope.isClosed());
+		ExecutionException e = assertThrows(ExecutionException.class, () -> late.get(5, TimeUnit.SECONDS));
+		assertTrue(e.getCause() instanceof IllegalStateException);
+	}
+}
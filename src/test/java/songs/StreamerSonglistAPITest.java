@@ -1,6 +1,7 @@
 package songs;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.*;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.CloseableHttpResponse;
@@ -16,7 +17,13 @@ import java.time.Duration;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
-import java.util.LinkedHashMap;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
@@ -42,9 +49,13 @@ class StreamerSonglistAPITest {
 
 	private StreamerSonglistAPI api;
 
+	@TempDir
+	Path journalDir;
+
 	@BeforeEach
 	void setUp() throws Exception {
 		MockitoAnnotations.openMocks(this);
+		System.setProperty(StreamerSonglistAPI.JOURNAL_DIR_PROPERTY, journalDir.toString());
 
 		mockedSingleton = mockStatic(HttpClientSingleton.class);
 		mockedSingleton.when(HttpClientSingleton::getInstance).thenReturn(mockHttpClient);
@@ -56,13 +67,26 @@ class StreamerSonglistAPITest {
 	void tearDown() {
 		if (api != null) {
 			api.stopListening();
+			api.clearSonglist();
 		}
 
+		System.clearProperty(StreamerSonglistAPI.JOURNAL_DIR_PROPERTY);
+
 		if (mockedSingleton != null) {
 			mockedSingleton.close();
 		}
 	}
 
+	private static List<String> titles(SonglistStore songlist) {
+		List<String> titles = new ArrayList<>();
+
+		for (SonglistStore.Song song : songlist.snapshot()) {
+			titles.add(song.title);
+		}
+
+		return titles;
+	}
+
 	private void setupSuccessfulHttpResponse(String jsonResponse) throws Exception {
 		when(mockHttpClient.execute(any(HttpGet.class))).thenReturn(mockResponse);
 		when(mockResponse.getStatusLine()).thenReturn(mockStatusLine);
@@ -216,7 +240,6 @@ class StreamerSonglistAPITest {
 		assertFalse(result);
 	}
 
-	@SuppressWarnings("unchecked")
 	@Test
 	void testClearSonglist() throws Exception {
 		setupSuccessfulHttpResponse("{\"id\": 12345}");
@@ -229,7 +252,7 @@ class StreamerSonglistAPITest {
 		Field songlistField = StreamerSonglistAPI.class.getDeclaredField("songlist");
 		songlistField.setAccessible(true);
 
-		LinkedHashMap<String, Duration> songlist = (LinkedHashMap<String, Duration>) songlistField.get(api);
+		SonglistStore songlist = (SonglistStore) songlistField.get(api);
 
 		assertTrue(songlist.isEmpty());
 	}
@@ -271,6 +294,81 @@ class StreamerSonglistAPITest {
 		});
 	}
 
+	@Test
+	void testSessions_ShareOneConnectionAndGiveEverythingBack() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		SonglistRuntime runtime = new SonglistRuntime(1);
+		SonglistEventHub hub = new SonglistEventHub(runtime, 1) {
+			@Override
+			Socket openSocket(Connection connection, io.socket.client.IO.Options options) {
+				return mockSocket;
+			}
+		};
+
+		List<StreamerSonglistAPI> sessions = new ArrayList<>();
+
+		try {
+			for (int i = 0; i < 20; i++) {
+				StreamerSonglistAPI session = new StreamerSonglistAPI("testStreamer", null, runtime, hub);
+				session.listenForUpdates();
+				session.listenForUpdates();
+				sessions.add(session);
+			}
+
+			assertEquals(20, runtime.getOpenHandleCount());
+			assertEquals(1, hub.getOpenConnectionCount());
+			assertEquals(1, hub.getRoomCount());
+			verify(mockSocket, times(1)).connect();
+
+			for (StreamerSonglistAPI session : sessions) {
+				session.stopListening();
+				session.stopListening();
+			}
+
+			assertEquals(20, runtime.getLeasedCount());
+			assertEquals(0, runtime.getOpenHandleCount());
+			assertEquals(0, hub.getRoomCount());
+			assertEquals(0, hub.getOpenConnectionCount());
+			verify(mockSocket).close();
+			assertTrue(runtime.getThreadCount() <= 1);
+		} finally {
+			runtime.shutdown();
+		}
+	}
+
+	@Test
+	void testDroppedSession_LeavesItsRoom() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		SonglistRuntime runtime = new SonglistRuntime(1);
+		SonglistEventHub hub = new SonglistEventHub(runtime, 1) {
+			@Override
+			Socket openSocket(Connection connection, io.socket.client.IO.Options options) {
+				return mockSocket;
+			}
+		};
+
+		try {
+			listenAndForget(runtime, hub);
+			assertEquals(1, hub.getRoomCount());
+
+			long deadline = System.currentTimeMillis() + 10_000;
+
+			while (runtime.getLeakedCount() == 0 && System.currentTimeMillis() < deadline) {
+				System.gc();
+				Thread.sleep(20);
+			}
+
+			assertEquals(1, runtime.getLeakedCount());
+			assertEquals(0, hub.getRoomCount());
+		} finally {
+			runtime.shutdown();
+		}
+	}
+
+	private static void listenAndForget(SonglistRuntime runtime, SonglistEventHub hub) {
+		new StreamerSonglistAPI("testStreamer", null, runtime, hub).listenForUpdates();
+	}
+
 	@Test
 	void testConstructorConvertsToLowercase() throws Exception {
 		setupSuccessfulHttpResponse("{\"id\": 12345}");
@@ -308,6 +406,72 @@ class StreamerSonglistAPITest {
 		assertEquals(-1, broadcasterID);
 	}
 
+	/** Play History Tests **/
+
+	private String playHistoryItem(int id, String title, String playedAt) {
+		return "{\"id\": " + id + ", \"playedAt\": \"" + playedAt + "\", \"song\": {\"title\": \"" + title + "\"}}";
+	}
+
+	private String playHistoryPage(String... items) {
+		return "{\"items\": [" + String.join(",", items) + "]}";
+	}
+
+	@Test
+	void testUpdateSonglist_StopsAtCursorWithOneRequest() throws Exception {
+		String first = playHistoryItem(1, "First", "2024-01-15T10:35:00Z");
+		String second = playHistoryItem(2, "Second", "2024-01-15T10:40:00Z");
+		String third = playHistoryItem(3, "Third", "2024-01-15T10:45:00Z");
+		String beforeStart = playHistoryItem(0, "Old", "2024-01-15T09:00:00Z");
+
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		StubHttpEngine engine = StubHttpEngine.sequence(
+				playHistoryPage(second, first, beforeStart),
+				playHistoryPage(third, second, first, beforeStart));
+
+		api = new StreamerSonglistAPI("testStreamer");
+		api.http = engine;
+		api.setStartTime("2024-01-15T10:30:00Z");
+
+		api.updateSonglistAsync().get(5, TimeUnit.SECONDS);
+		api.updateSonglistAsync().get(5, TimeUnit.SECONDS);
+
+		// Exactly one page per update
+		assertEquals(2, engine.getRequests().size());
+		assertTrue(engine.getRequests().get(0).uri().getQuery().contains("current=0"));
+
+		Field songlistField = StreamerSonglistAPI.class.getDeclaredField("songlist");
+		songlistField.setAccessible(true);
+		SonglistStore songlist = (SonglistStore) songlistField.get(api);
+
+		assertEquals(java.util.Arrays.asList("First", "Second", "Third"), titles(songlist));
+		assertEquals(Duration.ofMinutes(15), songlist.get("Third"));
+	}
+
+	@Test
+	void testUpdateSonglist_WalksPagesUntilKnownPlay() throws Exception {
+		StringBuilder fullPage = new StringBuilder();
+		for (int i = 0; i < 10; i++) {
+			if (i > 0) {
+				fullPage.append(",");
+			}
+			fullPage.append(playHistoryItem(100 - i, "Song " + (100 - i), "2024-01-15T11:" + (59 - i) + ":00Z"));
+		}
+
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		StubHttpEngine engine = StubHttpEngine.sequence(
+				"{\"items\": [" + fullPage + "]}",
+				playHistoryPage(playHistoryItem(1, "Old", "2024-01-15T09:00:00Z")));
+
+		api = new StreamerSonglistAPI("testStreamer");
+		api.http = engine;
+		api.setStartTime("2024-01-15T10:30:00Z");
+
+		api.updateSonglistAsync().get(5, TimeUnit.SECONDS);
+
+		assertEquals(2, engine.getRequests().size());
+		assertTrue(engine.getRequests().get(1).uri().getQuery().contains("current=1"));
+	}
+
 	@Test
 	void testHttpClientCalledWithCorrectURL() throws Exception {
 		setupSuccessfulHttpResponse("{\"id\": 12345}");
@@ -316,4 +480,293 @@ class StreamerSonglistAPITest {
 
 		verify(mockHttpClient, atLeastOnce()).execute(any(HttpGet.class));
 	}
-}
\ No newline at end of file
+
+	/** Journal Tests **/
+
+	@Test
+	void testRecordSong_AppendsToJournal() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		api = new StreamerSonglistAPI("testStreamer");
+		api.setStartTime("2024-01-15T10:30:00Z");
+
+		api.recordSong("First", Duration.ofMinutes(5));
+		api.recordSong("First", Duration.ofMinutes(6));
+		api.recordSong("Second", Duration.ofMinutes(10));
+
+		List<String> titles = new ArrayList<>();
+		SonglistJournal.replay(api.getJournalPath(), entry -> titles.add(entry.title));
+
+		assertTrue(api.getJournalPath().startsWith(journalDir));
+		assertEquals(List.of("First", "Second"), titles);
+	}
+
+	@Test
+	void testSetStartTime_RebuildsSonglistFromJournal() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		StreamerSonglistAPI crashed = new StreamerSonglistAPI("testStreamer");
+		crashed.setStartTime("2024-01-15T10:30:00Z");
+		crashed.recordSong("First", Duration.ofMinutes(5));
+		crashed.recordSong("Second", Duration.ofMinutes(10));
+		crashed.stopListening();
+
+		// A restart for the same stream picks up where the crashed process left off
+		api = new StreamerSonglistAPI("testStreamer");
+		api.setStartTime("2024-01-15T10:30:00Z");
+
+		Field songlistField = StreamerSonglistAPI.class.getDeclaredField("songlist");
+		songlistField.setAccessible(true);
+		SonglistStore songlist = (SonglistStore) songlistField.get(api);
+
+		assertEquals(List.of("First", "Second"), titles(songlist));
+		assertEquals(Duration.ofMinutes(10), songlist.get("Second"));
+		assertFalse(api.recordSong("First", Duration.ofMinutes(20)));
+
+		crashed.clearSonglist();
+	}
+
+	@Test
+	void testWriteSonglistToFile_StreamsFromJournal() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		api = new StreamerSonglistAPI("testStreamer");
+		api.setStartTime("2024-01-15T10:30:00Z");
+		api.recordSong("First", Duration.ofMinutes(5));
+		api.recordSong("Second", Duration.ofMinutes(10));
+
+		Path output = Path.of("teststreamer-01:15:2024");
+
+		try {
+			assertTrue(api.writeSonglistToFile());
+			assertEquals("First: 10:30:00\nSecond: 00:05:00", Files.readString(output));
+		} finally {
+			Files.deleteIfExists(output);
+		}
+	}
+
+	@Test
+	void testStopRecording_DeletesTheJournalOnlyAfterTheFinalExport() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		api = new StreamerSonglistAPI("testStreamer");
+		Path output = Path.of("teststreamer-01:15:2024");
+
+		try {
+			api.setStartTime("2024-01-15T10:30:00Z");
+			api.recordSong("First", Duration.ofMinutes(5));
+			assertTrue(api.writeSonglistToFile());
+
+			// A song after the export is only in the journal, so it has to survive
+			api.recordSong("Second", Duration.ofMinutes(10));
+			Path unexported = api.getJournalPath();
+			api.stopRecording();
+			assertTrue(Files.exists(unexported));
+
+			api.setStartTime("2024-01-15T10:30:00Z");
+			assertTrue(api.writeSonglistToFile());
+			Path exported = api.getJournalPath();
+			api.stopRecording();
+			assertFalse(Files.exists(exported));
+		} finally {
+			Files.deleteIfExists(output);
+		}
+	}
+
+	@Test
+	void testExportSonglistAsync_RunsOnTheStreamScope() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		api = new StreamerSonglistAPI("testStreamer");
+
+		assertThrows(java.util.concurrent.ExecutionException.class, () -> api.exportSonglistAsync().get(5, TimeUnit.SECONDS));
+
+		api.setStartTime("2024-01-15T10:30:00Z");
+		api.recordSong("First", Duration.ofMinutes(5));
+
+		StreamScope scope = api.getScope();
+		Path output = Path.of("teststreamer-01:15:2024");
+
+		try {
+			assertTrue(api.exportSonglistAsync().get(5, TimeUnit.SECONDS));
+			assertEquals("First: 10:30:00", Files.readString(output));
+			assertEquals(1, scope.getForkedCount());
+
+			// Clearing ends the stream and with it the scope
+			api.clearSonglist();
+			assertTrue(scope.isClosed());
+			assertNull(api.getScope());
+		} finally {
+			Files.deleteIfExists(output);
+		}
+	}
+
+	/** Sink Tests **/
+
+	@Test
+	void testSinks_WriteEveryFormatAndRecoveredSongs() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		StreamerSonglistAPI crashed = new StreamerSonglistAPI("testStreamer");
+		crashed.setStartTime("2024-01-15T10:30:00Z");
+		crashed.recordSong("First", Duration.ofMinutes(5));
+		crashed.stopListening();
+
+		api = new StreamerSonglistAPI("testStreamer");
+		api.sinkDirectory = journalDir.resolve("sinks");
+		api.sinkFormats = List.of(SonglistFormat.TEXT, SonglistFormat.CSV);
+		api.setStartTime("2024-01-15T10:30:00Z");
+		api.recordSong("Second", Duration.ofMinutes(10));
+
+		List<Path> paths = api.getSinkPaths();
+		api.clearSonglist();
+
+		assertEquals(2, paths.size());
+		assertEquals("First: 10:30:00\nSecond: 00:05:00", Files.readString(paths.get(0)));
+		assertEquals(3, Files.readAllLines(paths.get(1)).size());
+		assertTrue(api.getSinkPaths().isEmpty());
+
+		crashed.clearSonglist();
+	}
+
+	/** Warm Standby Tests **/
+
+	@Test
+	void testStandby_IgnoresPlayHistoryUntilRecording() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		String first = playHistoryItem(1, "First", "2024-01-15T10:35:00Z");
+		StubHttpEngine engine = StubHttpEngine.sequence(playHistoryPage(), playHistoryPage(first));
+		SonglistRuntime runtime = new SonglistRuntime(1);
+		SonglistEventHubTest.RecordingHub hub = new SonglistEventHubTest.RecordingHub(runtime, 1);
+
+		try {
+			api = new StreamerSonglistAPI("testStreamer", null, runtime, hub);
+			api.http = engine;
+			api.setDebounceWindow(Duration.ZERO);
+			api.standby();
+
+			// Joined and warmed up, but there is no stream to record yet
+			assertEquals(1, hub.getRoomCount());
+			assertEquals(1, engine.getRequests().size());
+
+			hub.fire(0, "new-playhistory", 12345);
+			runtime.getScheduler().schedule(() -> {}, 50, TimeUnit.MILLISECONDS).get(5, TimeUnit.SECONDS);
+
+			assertEquals(1, engine.getRequests().size());
+			assertFalse(api.isRecording());
+		} finally {
+			api.stopListening();
+			runtime.shutdown();
+		}
+	}
+
+	@Test
+	void testStartRecording_FetchesRightAwayAndMeasuresTheFirstSong() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		String first = playHistoryItem(1, "First", "2024-01-15T10:35:00Z");
+		StubHttpEngine engine = StubHttpEngine.sequence(playHistoryPage(), playHistoryPage(first));
+		SonglistRuntime runtime = new SonglistRuntime(1);
+		SonglistEventHubTest.RecordingHub hub = new SonglistEventHubTest.RecordingHub(runtime, 1);
+
+		try {
+			api = new StreamerSonglistAPI("testStreamer", null, runtime, hub);
+			api.http = engine;
+			api.standby();
+
+			assertEquals(-1, api.getFirstSongLatencyMillis());
+			assertTrue(api.startRecording("2024-01-15T10:30:00Z"));
+			assertTrue(api.isRecording());
+
+			// The default debounce is half a second; the first fetch must not wait for it
+			long deadline = System.currentTimeMillis() + 400;
+
+			while (api.getFirstSongLatencyMillis() < 0 && System.currentTimeMillis() < deadline) {
+				Thread.sleep(5);
+			}
+
+			assertTrue(api.getFirstSongLatencyMillis() >= 0);
+			assertTrue(api.getFirstSongLatencyMillis() < 400);
+			assertEquals(2, engine.getRequests().size());
+
+			api.stopRecording();
+
+			// Back on standby, still in the room and ready for the next stream
+			assertFalse(api.isRecording());
+			assertEquals(1, hub.getRoomCount());
+		} finally {
+			api.stopListening();
+			runtime.shutdown();
+		}
+	}
+
+	/**
+	 * Engine whose every request stays in flight until the test answers it.
+	 */
+	private static class HeldHttpEngine extends AsyncHttpEngine {
+		final CompletableFuture<AsyncHttpEngine.Response> response = new CompletableFuture<>();
+		final CountDownLatch sent = new CountDownLatch(1);
+
+		HeldHttpEngine() {
+			super(BlockingWorkExecutor.getShared());
+		}
+
+		@Override
+		CompletableFuture<AsyncHttpEngine.Response> send(java.net.http.HttpRequest request) {
+			sent.countDown();
+			return response;
+		}
+	}
+
+	@Test
+	void testStopRecording_WaitsForTheFetchInFlight() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		HeldHttpEngine engine = new HeldHttpEngine();
+		SonglistRuntime runtime = new SonglistRuntime(1);
+		SonglistEventHubTest.RecordingHub hub = new SonglistEventHubTest.RecordingHub(runtime, 1);
+
+		try {
+			api = new StreamerSonglistAPI("testStreamer", null, runtime, hub);
+			api.http = engine;
+			api.startRecording("2024-01-15T10:30:00Z");
+
+			assertTrue(engine.sent.await(5, TimeUnit.SECONDS));
+
+			Thread stopping = new Thread(api::stopRecording);
+			stopping.start();
+			stopping.join(200);
+
+			// Teardown holds off until the fetch it would otherwise pull the journal out from under is done
+			assertTrue(stopping.isAlive());
+			assertTrue(api.isRecording());
+
+			engine.response.complete(StubHttpEngine.ok(playHistoryPage(playHistoryItem(1, "First", "2024-01-15T10:35:00Z"))));
+			stopping.join(5_000);
+
+			assertFalse(stopping.isAlive());
+			assertFalse(api.isRecording());
+			assertNull(api.getJournalPath());
+		} finally {
+			api.stopListening();
+			runtime.shutdown();
+		}
+	}
+
+	@Test
+	void testUpdateSonglist_FetchFromTheLastStreamIsNotRecordedIntoTheNext() throws Exception {
+		setupSuccessfulHttpResponse("{\"id\": 12345}");
+		HeldHttpEngine engine = new HeldHttpEngine();
+
+		api = new StreamerSonglistAPI("testStreamer");
+		api.http = engine;
+		api.setStartTime("2024-01-15T10:30:00Z");
+
+		CompletableFuture<Void> lastStream = api.updateSonglistAsync();
+		assertTrue(engine.sent.await(5, TimeUnit.SECONDS));
+
+		api.setStartTime("2024-01-16T10:30:00Z");
+		engine.response.complete(StubHttpEngine.ok(playHistoryPage(playHistoryItem(1, "Late", "2024-01-16T10:35:00Z"))));
+		lastStream.get(5, TimeUnit.SECONDS);
+
+		Field songlistField = StreamerSonglistAPI.class.getDeclaredField("songlist");
+		songlistField.setAccessible(true);
+		SonglistStore songlist = (SonglistStore) songlistField.get(api);
+
+		assertTrue(songlist.isEmpty());
+
+		api.clearSonglist();
+	}
+}
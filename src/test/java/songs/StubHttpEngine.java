@@ -0,0 +1,55 @@
+package songs;
+
+import java.net.http.HttpRequest;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * AsyncHttpEngine that answers from a handler instead of the network and records every request.
+ */
+class StubHttpEngine extends AsyncHttpEngine {
+
+	private final Function<HttpRequest, AsyncHttpEngine.Response> handler;
+	private final List<HttpRequest> requests = new CopyOnWriteArrayList<>();
+
+	StubHttpEngine(Function<HttpRequest, AsyncHttpEngine.Response> handler) {
+		// Never sends, so it borrows the shared pool rather than starting one of its own
+		super(BlockingWorkExecutor.getShared());
+		this.handler = handler;
+	}
+
+	/**
+	 * Answers each request with the next body, all with a 200 status.
+	 */
+	static StubHttpEngine sequence(String... bodies) {
+		Iterator<String> responses = Arrays.asList(bodies).iterator();
+		return new StubHttpEngine(request -> ok(responses.next()));
+	}
+
+	static AsyncHttpEngine.Response ok(String body) {
+		return new AsyncHttpEngine.Response(200, body);
+	}
+
+	static AsyncHttpEngine.Response status(int statusCode, String body) {
+		return new AsyncHttpEngine.Response(statusCode, body);
+	}
+
+	@Override
+	CompletableFuture<AsyncHttpEngine.Response> send(HttpRequest request) {
+		requests.add(request);
+
+		try {
+			return CompletableFuture.completedFuture(handler.apply(request));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+	List<HttpRequest> getRequests() {
+		return requests;
+	}
+}
@@ -0,0 +1,109 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+class SubscriptionPipelineTest {
+
+	private final List<String> started = new ArrayList<>();
+	private final List<CompletableFuture<Boolean>> responses = new ArrayList<>();
+
+	private CompletableFuture<Boolean> submit(SubscriptionPipeline pipeline, String name, int priority) {
+		return pipeline.submit(name, priority, () -> {
+			CompletableFuture<Boolean> response = new CompletableFuture<>();
+			started.add(name);
+			responses.add(response);
+			return response;
+		});
+	}
+
+	@Test
+	void testSubmit_RunsUpToTheConcurrencyLimit() {
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(2, Duration.ofSeconds(10));
+
+		submit(pipeline, "a", SubscriptionPipeline.PRIORITY_ONLINE);
+		submit(pipeline, "b", SubscriptionPipeline.PRIORITY_ONLINE);
+		submit(pipeline, "c", SubscriptionPipeline.PRIORITY_ONLINE);
+
+		assertEquals(List.of("a", "b"), started);
+		assertEquals(2, pipeline.getInFlightCount());
+		assertEquals(1, pipeline.getQueuedCount());
+
+		responses.get(0).complete(true);
+
+		assertEquals(List.of("a", "b", "c"), started);
+	}
+
+	@Test
+	void testSubmit_OnlineQueuedAheadOfOffline() {
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(1, Duration.ofSeconds(10));
+
+		submit(pipeline, "first", SubscriptionPipeline.PRIORITY_OFFLINE);
+		submit(pipeline, "x offline", SubscriptionPipeline.PRIORITY_OFFLINE);
+		submit(pipeline, "y offline", SubscriptionPipeline.PRIORITY_OFFLINE);
+		submit(pipeline, "x online", SubscriptionPipeline.PRIORITY_ONLINE);
+		submit(pipeline, "y online", SubscriptionPipeline.PRIORITY_ONLINE);
+
+		for (int i = 0; i < 5; i++) {
+			responses.get(i).complete(true);
+		}
+
+		assertEquals(List.of("first", "x online", "y online", "x offline", "y offline"), started);
+		assertEquals(5, pipeline.getCompletedCount());
+	}
+
+	@Test
+	void testFinish_RecordsLatencyAndFirstSubscription() {
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(4, Duration.ofSeconds(10));
+		pipeline.onWelcome(System.nanoTime());
+
+		CompletableFuture<Boolean> result = submit(pipeline, "a", SubscriptionPipeline.PRIORITY_ONLINE);
+		responses.get(0).complete(true);
+
+		assertTrue(result.join());
+		assertTrue(pipeline.getLastLatencyMillis() >= 0);
+		assertTrue(pipeline.getFirstSubscriptionMillis() >= 0);
+		assertEquals(0, pipeline.getMissedDeadlineCount());
+	}
+
+	@Test
+	void testFinish_CountsSubscriptionsPastTheDeadline() {
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(4, Duration.ZERO);
+		pipeline.onWelcome(System.nanoTime() - 1);
+
+		submit(pipeline, "a", SubscriptionPipeline.PRIORITY_ONLINE);
+		responses.get(0).complete(true);
+
+		assertEquals(1, pipeline.getMissedDeadlineCount());
+	}
+
+	@Test
+	void testFailures_ReportFalseAndFreeTheSlot() {
+		SubscriptionPipeline pipeline = new SubscriptionPipeline(1, Duration.ofSeconds(10));
+
+		CompletableFuture<Boolean> failed = submit(pipeline, "a", SubscriptionPipeline.PRIORITY_ONLINE);
+		CompletableFuture<Boolean> thrown = pipeline.submit("b", SubscriptionPipeline.PRIORITY_ONLINE, () -> {
+			throw new IllegalStateException("boom");
+		});
+		submit(pipeline, "c", SubscriptionPipeline.PRIORITY_ONLINE);
+
+		responses.get(0).completeExceptionally(new IllegalStateException("declined"));
+
+		assertFalse(failed.join());
+		assertFalse(thrown.join());
+		assertEquals(List.of("a", "c"), started);
+		assertEquals(2, pipeline.getFailedCount());
+		assertEquals(-1, pipeline.getFirstSubscriptionMillis());
+	}
+
+	@Test
+	void testConstructor_RejectsZeroConcurrency() {
+		assertThrows(IllegalArgumentException.class, () -> new SubscriptionPipeline(0, Duration.ofSeconds(10)));
+	}
+}
@@ -0,0 +1,165 @@
+package songs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.net.http.HttpRequest;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SubscriptionRegistryTest {
+
+	private static final String REGISTRY_FILE = "test_subscriptions.txt";
+
+	private SubscriptionRegistry registry;
+
+	@BeforeEach
+	void setUp() {
+		new File(REGISTRY_FILE).delete();
+		registry = new SubscriptionRegistry(REGISTRY_FILE);
+	}
+
+	@AfterEach
+	void tearDown() {
+		new File(REGISTRY_FILE).delete();
+	}
+
+	private static String subscription(String id, String status, String type, String broadcasterId, String method, String sessionId) {
+		return "{\"id\":\"" + id + "\",\"status\":\"" + status + "\",\"type\":\"" + type + "\",\"version\":\"1\","
+				+ "\"condition\":{\"broadcaster_user_id\":\"" + broadcasterId + "\"},"
+				+ "\"transport\":{\"method\":\"" + method + "\",\"session_id\":\"" + sessionId + "\"},\"cost\":0}";
+	}
+
+	private static String page(String cursor, String... subscriptions) {
+		String pagination = cursor == null ? "{}" : "{\"cursor\":\"" + cursor + "\"}";
+
+		return "{\"data\":[" + String.join(",", subscriptions) + "],\"total\":" + subscriptions.length
+				+ ",\"total_cost\":3,\"max_total_cost\":10000,\"pagination\":" + pagination + "}";
+	}
+
+	private static List<String> requestLines(StubHttpEngine http) {
+		return http.getRequests().stream()
+				.map(r -> r.method() + " " + r.uri().getRawQuery())
+				.collect(Collectors.toList());
+	}
+
+	@Test
+	void testReconcile_KeepsLiveAndDeletesDeadTransportsAcrossPages() {
+		StubHttpEngine http = new StubHttpEngine(request -> {
+			if (request.method().equals("DELETE")) {
+				return StubHttpEngine.status(204, "");
+			}
+
+			if (request.uri().getRawQuery() == null) {
+				return StubHttpEngine.ok(page("next",
+						subscription("keep", "enabled", "stream.online", "1", "websocket", "live"),
+						subscription("stale", "websocket_disconnected", "stream.offline", "1", "websocket", "old")));
+			}
+
+			return StubHttpEngine.ok(page(null,
+					subscription("gone", "enabled", "stream.online", "2", "websocket", "other"),
+					subscription("hook", "enabled", "stream.online", "3", "webhook", "")));
+		});
+		registry.http = http;
+		registry.sessionStarted("live");
+
+		int deleted = registry.reconcile("client", "token").join();
+
+		assertEquals(1, deleted);
+		assertEquals(List.of("GET null", "GET after=next", "DELETE id=stale"), requestLines(http));
+
+		assertTrue(registry.isSubscribed("live", "stream.online", "1"));
+		assertEquals(1, registry.getSubscriptionCount());
+		assertEquals(3, registry.getTotalCost());
+		assertEquals(10000, registry.getMaxTotalCost());
+		assertEquals(1, registry.getDeletedCount());
+	}
+
+	@Test
+	void testReconcile_AfterRestartDeletesOnlyOurOwnLeftovers() {
+		registry.sessionStarted("before");
+		registry.recordCreated("before", "stream.online", "1", new JSONObject(page(null,
+				subscription("ours", "enabled", "stream.online", "1", "websocket", "before"))));
+
+		StubHttpEngine http = new StubHttpEngine(request -> {
+			if (request.method().equals("DELETE")) {
+				return StubHttpEngine.status(204, "");
+			}
+
+			return StubHttpEngine.ok(page(null,
+					subscription("ours", "enabled", "stream.online", "1", "websocket", "before"),
+					subscription("theirs", "enabled", "stream.online", "2", "websocket", "other")));
+		});
+
+		SubscriptionRegistry restarted = new SubscriptionRegistry(REGISTRY_FILE);
+		restarted.http = http;
+		restarted.sessionStarted("after");
+
+		assertEquals(1, restarted.getOwnedCount());
+		assertEquals(1, restarted.reconcile("client", "token").join());
+		assertEquals(List.of("GET null", "DELETE id=ours"), requestLines(http));
+		assertEquals(0, restarted.getOwnedCount());
+		assertEquals(0, new SubscriptionRegistry(REGISTRY_FILE).getOwnedCount());
+	}
+
+	@Test
+	void testReconcile_SendsCredentials() {
+		StubHttpEngine http = StubHttpEngine.sequence(page(null));
+		registry.http = http;
+
+		registry.reconcile("client", "token").join();
+
+		HttpRequest request = http.getRequests().get(0);
+		assertEquals("client", request.headers().firstValue("Client-Id").orElse(""));
+		assertEquals("Bearer token", request.headers().firstValue("Authorization").orElse(""));
+	}
+
+	@Test
+	void testReconcile_FailedListingCompletesExceptionally() {
+		registry.http = new StubHttpEngine(request -> StubHttpEngine.status(401, "{\"error\":\"Unauthorized\"}"));
+
+		assertThrows(CompletionException.class, () -> registry.reconcile("client", "token").join());
+	}
+
+	@Test
+	void testIsSubscribed_OnlyForTheSameLiveSession() {
+		registry.sessionStarted("live");
+		registry.recordCreated("live", "stream.online", "1", new JSONObject(page(null,
+				subscription("created", "enabled", "stream.online", "1", "websocket", "live"))));
+
+		assertTrue(registry.isSubscribed("live", "stream.online", "1"));
+		assertFalse(registry.isSubscribed("live", "stream.offline", "1"));
+		assertFalse(registry.isSubscribed("other", "stream.online", "1"));
+		assertEquals(1, registry.getReusedCount());
+		assertEquals(3, registry.getTotalCost());
+	}
+
+	@Test
+	void testSessionMoved_CarriesSubscriptionsOver() {
+		registry.sessionStarted("old");
+		registry.recordCreated("old", "stream.online", "1", new JSONObject(page(null,
+				subscription("created", "enabled", "stream.online", "1", "websocket", "old"))));
+
+		registry.sessionMoved("old", "new");
+
+		assertTrue(registry.isSubscribed("new", "stream.online", "1"));
+		assertFalse(registry.isSubscribed("old", "stream.online", "1"));
+	}
+
+	@Test
+	void testSessionEnded_ForgetsItsSubscriptions() {
+		registry.sessionStarted("live");
+		registry.recordCreated("live", "stream.online", "1", new JSONObject(page(null,
+				subscription("created", "enabled", "stream.online", "1", "websocket", "live"))));
+
+		registry.sessionEnded("live");
+
+		assertEquals(0, registry.getSubscriptionCount());
+	}
+}
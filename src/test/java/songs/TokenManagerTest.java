@@ -9,9 +9,17 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.mockito.MockedStatic;
+
 public class TokenManagerTest {
 
 	private String fileName;
@@ -259,6 +267,97 @@ public class TokenManagerTest {
 		assertTrue(FileWriter.class.isAssignableFrom(TokenManager.class));
 	}
 
+	/** Validation Cache Tests **/
+	@Test
+	void testGetBearerToken_ValidationIsCached() throws Exception {
+		CloseableHttpClient mockHttpClient = mock(CloseableHttpClient.class);
+		CloseableHttpResponse mockResponse = mock(CloseableHttpResponse.class);
+		when(mockResponse.getEntity()).thenReturn(new StringEntity("{\"client_id\":\"id\",\"expires_in\":7200}"));
+		when(mockHttpClient.execute(any(HttpUriRequest.class))).thenReturn(mockResponse);
+
+		try (MockedStatic<HttpClientSingleton> mockedSingleton = mockStatic(HttpClientSingleton.class)) {
+			mockedSingleton.when(HttpClientSingleton::getInstance).thenReturn(mockHttpClient);
+
+			String content = "cached_token\nrefresh_token\n" + (Instant.now().getEpochSecond() + 7200);
+			Files.writeString(Path.of(fileName), content);
+
+			TokenManager manager = new TokenManager(fileName, new ClientInfo("id", "secret"), mockCallbackServer);
+
+			assertEquals("cached_token", manager.getBearerToken());
+			assertEquals("cached_token", manager.getBearerToken());
+			assertEquals("cached_token", manager.getBearerToken());
+			verify(mockHttpClient, times(1)).execute(any(HttpUriRequest.class));
+
+			manager.invalidateValidation();
+			assertEquals("cached_token", manager.getBearerToken());
+			verify(mockHttpClient, times(2)).execute(any(HttpUriRequest.class));
+		}
+	}
+
+	@Test
+	void testGetBearerToken_ConcurrentCallersShareOneRefresh() throws Exception {
+		CloseableHttpClient mockHttpClient = mock(CloseableHttpClient.class);
+		CloseableHttpResponse mockResponse = mock(CloseableHttpResponse.class);
+		when(mockResponse.getEntity()).thenReturn(new StringEntity("{\"client_id\":\"id\",\"expires_in\":7200}"));
+		when(mockHttpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+			TimeUnit.MILLISECONDS.sleep(200);
+			return mockResponse;
+		});
+
+		try (MockedStatic<HttpClientSingleton> mockedSingleton = mockStatic(HttpClientSingleton.class)) {
+			mockedSingleton.when(HttpClientSingleton::getInstance).thenReturn(mockHttpClient);
+
+			String content = "shared_token\nrefresh_token\n" + (Instant.now().getEpochSecond() + 7200);
+			Files.writeString(Path.of(fileName), content);
+
+			TokenManager manager = new TokenManager(fileName, new ClientInfo("id", "secret"), mockCallbackServer);
+
+			List<CompletableFuture<String>> callers = new ArrayList<>();
+			for (int i = 0; i < 8; i++) {
+				callers.add(CompletableFuture.supplyAsync(manager::getBearerToken));
+			}
+
+			for (CompletableFuture<String> caller : callers) {
+				assertEquals("shared_token", caller.get(5, TimeUnit.SECONDS));
+			}
+
+			verify(mockHttpClient, times(1)).execute(any(HttpUriRequest.class));
+		}
+	}
+
+	@Test
+	void testGetBearerToken_CallersFillingTheSharedExecutorDoNotStarveTheRefresh() throws Exception {
+		CloseableHttpClient mockHttpClient = mock(CloseableHttpClient.class);
+		CloseableHttpResponse mockResponse = mock(CloseableHttpResponse.class);
+		when(mockResponse.getEntity()).thenReturn(new StringEntity("{\"client_id\":\"id\",\"expires_in\":7200}"));
+		when(mockHttpClient.execute(any(HttpUriRequest.class))).thenAnswer(invocation -> {
+			TimeUnit.MILLISECONDS.sleep(200);
+			return mockResponse;
+		});
+
+		try (MockedStatic<HttpClientSingleton> mockedSingleton = mockStatic(HttpClientSingleton.class)) {
+			mockedSingleton.when(HttpClientSingleton::getInstance).thenReturn(mockHttpClient);
+
+			String content = "shared_token\nrefresh_token\n" + (Instant.now().getEpochSecond() + 7200);
+			Files.writeString(Path.of(fileName), content);
+
+			TokenManager manager = new TokenManager(fileName, new ClientInfo("id", "secret"), mockCallbackServer);
+
+			// More blocked callers than the bounded fallback pool has threads
+			List<CompletableFuture<String>> callers = new ArrayList<>();
+			for (int i = 0; i < 100; i++) {
+				callers.add(CompletableFuture.supplyAsync(manager::getBearerToken, BlockingWorkExecutor.getShared()));
+			}
+			callers.add(manager.getBearerTokenAsync());
+
+			for (CompletableFuture<String> caller : callers) {
+				assertEquals("shared_token", caller.get(10, TimeUnit.SECONDS));
+			}
+
+			verify(mockHttpClient, times(1)).execute(any(HttpUriRequest.class));
+		}
+	}
+
 	/** Integration-style Tests (marked for manual execution) **/
 	@Test
 	@Tag("integration")
@@ -495,7 +495,7 @@ class TwitchAPITest {
 		String onlineMessage = createStreamOnlineMessage(STARTED_AT);
 		spy.onMessage(onlineMessage);
 
-		verify(mockObserver, never()).onStreamStart(anyString());
+		verify(mockObserver, after(200).never()).onStreamStart(anyString());
 	}
 
 	@Test
@@ -528,9 +528,55 @@ class TwitchAPITest {
 		String onlineMessage = createStreamOnlineMessage(STARTED_AT);
 		spy.onMessage(onlineMessage);
 
-		verify(observer1).onStreamStart(STARTED_AT);
-		verify(observer2).onStreamStart(STARTED_AT);
-		verify(observer3).onStreamStart(STARTED_AT);
+		verify(observer1, timeout(1000)).onStreamStart(STARTED_AT);
+		verify(observer2, timeout(1000)).onStreamStart(STARTED_AT);
+		verify(observer3, timeout(1000)).onStreamStart(STARTED_AT);
+	}
+
+	@Test
+	void testStreamOnline_StartTimeIsTheEventsStartedAt() throws Exception {
+		JSONObject user = new JSONObject();
+		user.put("id", String.valueOf(TEST_STREAMER_ID));
+		user.put("login", TEST_STREAMER);
+		JSONObject usersResponse = new JSONObject();
+		usersResponse.put("data", new JSONArray().put(user));
+
+		when(mockResponse.getEntity()).thenReturn(new StringEntity(usersResponse.toString()));
+		when(mockHttpClient.execute(any())).thenReturn(mockResponse);
+
+		TwitchAPI twitch = new TwitchAPI("http://localhost", TEST_STREAMER, mockClientInfo);
+		TwitchAPI spy = spy(twitch);
+		doReturn(TEST_BEARER_TOKEN).when(spy).getBearerToken();
+
+		// The same value /streams reports after a restart, not the subscription's creation time
+		spy.onMessage(createStreamOnlineMessage(STARTED_AT, "2024-12-09T10:30:07Z"));
+
+		assertEquals(STARTED_AT, spy.getStartTime());
+	}
+
+	@Test
+	void testClose_StopsTheObserverThreads() throws Exception {
+		TwitchAPI twitch = new TwitchAPI("http://localhost", TEST_STREAMER, mockClientInfo);
+		twitch.addObserver(mock(StreamObserver.class));
+		assertEquals(1, twitch.getObserverStats().size());
+
+		twitch.close();
+
+		assertTrue(twitch.getObserverStats().isEmpty());
+	}
+
+	@Test
+	void testClose_WithSessionManager_StopsTheObserverThreads() throws Exception {
+		EventSubSessionManager sessionManager = mock(EventSubSessionManager.class);
+		when(sessionManager.getTokenManager()).thenReturn(mock(TokenManager.class));
+		when(sessionManager.getClientInfo()).thenReturn(mockClientInfo);
+		TwitchAPI twitch = new TwitchAPI(TEST_STREAMER, sessionManager);
+		twitch.addObserver(mock(StreamObserver.class));
+
+		twitch.close();
+
+		verify(sessionManager).unregister(twitch);
+		assertTrue(twitch.getObserverStats().isEmpty());
 	}
 
 	/** onMessage Tests **/
@@ -549,19 +595,28 @@ class TwitchAPITest {
 		JSONObject subscriptionResponse = new JSONObject();
 		subscriptionResponse.put("data", new JSONArray().put(subscriptionData));
 
-		when(mockResponse.getEntity()).thenReturn(new StringEntity(usersResponse.toString()))
-				.thenReturn(new StringEntity(subscriptionResponse.toString()))
-				.thenReturn(new StringEntity(subscriptionResponse.toString()));
+		when(mockResponse.getEntity()).thenReturn(new StringEntity(usersResponse.toString()));
 		when(mockHttpClient.execute(any())).thenReturn(mockResponse);
 
+		StubHttpEngine engine = new StubHttpEngine(request -> StubHttpEngine.ok(subscriptionResponse.toString()));
+
 		TwitchAPI twitch = new TwitchAPI("http://localhost", TEST_STREAMER, mockClientInfo);
+		twitch.http = engine;
 		TwitchAPI spy = spy(twitch);
 		doReturn(TEST_BEARER_TOKEN).when(spy).getBearerToken();
 
 		String welcomeMessage = createWelcomeMessage("test-session-123");
 		spy.onMessage(welcomeMessage);
 
-		verify(mockHttpClient, atLeast(3)).execute(any());
+		assertEquals("test-session-123", spy.getSessionId());
+		verify(mockHttpClient, atLeastOnce()).execute(any());
+
+		// One subscription POST each for stream.online and stream.offline
+		long deadline = System.currentTimeMillis() + 5000;
+		while (engine.getRequests().size() < 2 && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		assertEquals(2, engine.getRequests().size());
 	}
 
 	@Test
@@ -589,7 +644,7 @@ class TwitchAPITest {
 		String onlineMessage = createStreamOnlineMessage(STARTED_AT);
 		spy.onMessage(onlineMessage);
 
-		verify(mockObserver).onStreamStart(STARTED_AT);
+		verify(mockObserver, timeout(1000)).onStreamStart(STARTED_AT);
 		assertEquals(STARTED_AT, spy.getStartTime());
 	}
 
@@ -622,7 +677,7 @@ class TwitchAPITest {
 		String offlineMessage = createStreamOfflineMessage();
 		spy.onMessage(offlineMessage);
 
-		verify(mockObserver).onStreamEnd();
+		verify(mockObserver, timeout(1000)).onStreamEnd();
 		assertNull(spy.getStartTime());
 	}
 
@@ -831,6 +886,10 @@ class TwitchAPITest {
 	}
 
 	private String createStreamOnlineMessage(String startedAt) {
+		return createStreamOnlineMessage(startedAt, startedAt);
+	}
+
+	private String createStreamOnlineMessage(String startedAt, String subscribedAt) {
 		JSONObject event = new JSONObject();
 		event.put("broadcaster_user_id", String.valueOf(TEST_STREAMER_ID));
 		event.put("broadcaster_user_login", TEST_STREAMER);
@@ -839,7 +898,7 @@ class TwitchAPITest {
 
 		JSONObject subscription = new JSONObject();
 		subscription.put("type", "stream.online");
-		subscription.put("created_at", startedAt);
+		subscription.put("created_at", subscribedAt);
 
 		JSONObject payload = new JSONObject();
 		payload.put("subscription", subscription);
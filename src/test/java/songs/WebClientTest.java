@@ -84,25 +84,26 @@ public class WebClientTest {
 		assertDoesNotThrow(() -> webClient.close());
 	}
 
-	/** updateURI Tests **/
+	/** Replacement Tests **/
 	@Test
-	void testUpdateURI_ChangesUri() throws Exception {
+	void testOpenReplacement_ChangesUri() throws Exception {
 		WebClient webClient = new WebClient(serverUri, tokenFileName);
-		assertDoesNotThrow(() -> webClient.updateURI(newServerUri));
+		assertDoesNotThrow(() -> webClient.openReplacement(newServerUri));
+		assertTrue(webClient.promoteReplacement());
 	}
 
 	@Test
-	void testUpdateURI_WithNullUri() {
+	void testOpenReplacement_WithNullUri() {
 		WebClient webClient = new WebClient(serverUri, tokenFileName);
-		assertThrows(Exception.class, () -> webClient.updateURI(null));
+		assertThrows(Exception.class, () -> webClient.openReplacement(null));
 	}
 
 	@Test
-	void testUpdateURI_MultipleTimes() throws Exception {
+	void testOpenReplacement_MultipleTimes() throws Exception {
 		WebClient webClient = new WebClient(serverUri, tokenFileName);
-		webClient.updateURI(newServerUri);
+		webClient.openReplacement(newServerUri);
 		URI thirdUri = new URI("ws://localhost:7070");
-		assertDoesNotThrow(() -> webClient.updateURI(thirdUri));
+		assertDoesNotThrow(() -> webClient.openReplacement(thirdUri));
 	}
 
 	/** Token Tests **/
@@ -285,7 +286,7 @@ public class WebClientTest {
 	}
 
 	@Test
-	void testUpdateURI_ReconnectsWithNewURI() throws Exception {
+	void testPromoteReplacement_ReconnectsWithNewURI() throws Exception {
 		final boolean[] onOpenCalled = { false };
 
 		WebClient webClient = new WebClient(serverUri, tokenFileName) {
@@ -296,7 +297,8 @@ public class WebClientTest {
 		};
 
 		try {
-			webClient.updateURI(newServerUri);
+			webClient.openReplacement(newServerUri);
+			webClient.promoteReplacement();
 		} catch (Exception e) {
 		}
 
@@ -333,7 +335,8 @@ public class WebClientTest {
 	@Test
 	void testFullLifecycle() throws Exception {
 		WebClient webClient = new WebClient(serverUri, tokenFileName);
-		webClient.updateURI(newServerUri);
+		webClient.openReplacement(newServerUri);
+		webClient.promoteReplacement();
 		webClient.close();
 		assertFalse(webClient.isOpen());
 	}